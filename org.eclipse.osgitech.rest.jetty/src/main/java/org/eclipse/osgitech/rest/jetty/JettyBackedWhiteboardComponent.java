@@ -13,26 +13,80 @@
  */
 package org.eclipse.osgitech.rest.jetty;
 
+import static java.util.stream.Collectors.toList;
+import static org.eclipse.osgitech.rest.provider.JerseyConstants.JERSEY_CONNECTOR_ACCEPTORS;
+import static org.eclipse.osgitech.rest.provider.JerseyConstants.JERSEY_CONNECTOR_ACCEPT_QUEUE_SIZE;
+import static org.eclipse.osgitech.rest.provider.JerseyConstants.JERSEY_CONNECTOR_IDLE_TIMEOUT;
+import static org.eclipse.osgitech.rest.provider.JerseyConstants.JERSEY_CONNECTOR_SELECTORS;
+import static org.eclipse.osgitech.rest.provider.JerseyConstants.JERSEY_CONTEXT_DRAIN_TIMEOUT;
 import static org.eclipse.osgitech.rest.provider.JerseyConstants.JERSEY_DISABLE_SESSION;
+import static org.eclipse.osgitech.rest.provider.JerseyConstants.JERSEY_ENDPOINTS;
+import static org.eclipse.osgitech.rest.provider.JerseyConstants.JERSEY_ENDPOINT_PREFIX;
+import static org.eclipse.osgitech.rest.provider.JerseyConstants.JERSEY_HTTP2;
+import static org.eclipse.osgitech.rest.provider.JerseyConstants.JERSEY_JMX;
+import static org.eclipse.osgitech.rest.provider.JerseyConstants.JERSEY_SHUTDOWN_TIMEOUT;
+import static org.eclipse.osgitech.rest.provider.JerseyConstants.JERSEY_SSL_KEYSTORE;
+import static org.eclipse.osgitech.rest.provider.JerseyConstants.JERSEY_SSL_KEYSTORE_PASSWORD;
+import static org.eclipse.osgitech.rest.provider.JerseyConstants.JERSEY_SSL_KEYSTORE_TYPE;
+import static org.eclipse.osgitech.rest.provider.JerseyConstants.JERSEY_THREADS_IDLE_TIMEOUT;
+import static org.eclipse.osgitech.rest.provider.JerseyConstants.JERSEY_THREADS_MAX;
+import static org.eclipse.osgitech.rest.provider.JerseyConstants.JERSEY_THREADS_MIN;
+import static org.eclipse.osgitech.rest.provider.JerseyConstants.JERSEY_THREADS_QUEUE_SIZE;
+import static org.eclipse.osgitech.rest.provider.JerseyConstants.JERSEY_THREADS_VIRTUAL;
 import static org.eclipse.osgitech.rest.provider.JerseyConstants.WHITEBOARD_DEFAULT_CONTEXT_PATH;
 import static org.eclipse.osgitech.rest.provider.JerseyConstants.WHITEBOARD_DEFAULT_HOST;
 import static org.eclipse.osgitech.rest.provider.JerseyConstants.WHITEBOARD_DEFAULT_PORT;
 import static org.eclipse.osgitech.rest.provider.JerseyConstants.WHITEBOARD_DEFAULT_SCHEMA;
 import static org.osgi.service.jakartars.runtime.JakartarsServiceRuntimeConstants.JAKARTA_RS_SERVICE_ENDPOINT;
 
+import java.lang.management.ManagementFactory;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory;
+import org.eclipse.jetty.http2.HTTP2Cipher;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
+import org.eclipse.jetty.io.ConnectionStatistics;
+import org.eclipse.jetty.jmx.MBeanContainer;
+import org.eclipse.jetty.server.ConnectionFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.HttpConnectionFactory;
+import org.eclipse.jetty.server.SecureRequestCustomizer;
 import org.eclipse.jetty.server.Server;
-import org.eclipse.jetty.server.handler.HandlerList;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.server.handler.ContextHandlerCollection;
+import org.eclipse.jetty.server.handler.StatisticsHandler;
 import org.eclipse.jetty.server.session.SessionHandler;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.BlockingArrayQueue;
+import org.eclipse.jetty.util.VirtualThreads;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.component.Graceful;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.osgitech.rest.annotations.ProvideRuntimeAdapter;
 import org.eclipse.osgitech.rest.helper.JakartarsHelper;
 import org.eclipse.osgitech.rest.helper.JerseyHelper;
@@ -42,6 +96,7 @@ import org.eclipse.osgitech.rest.runtime.WhiteboardServletContainer;
 import org.glassfish.jersey.server.ResourceConfig;
 import org.osgi.framework.BundleContext;
 import org.osgi.service.cm.ConfigurationException;
+import org.osgi.service.component.ComponentConstants;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
@@ -57,10 +112,16 @@ import org.osgi.service.component.annotations.Modified;
 
 @ProvideRuntimeAdapter("jetty")
 @Component(name = "JakartarsWhiteboardComponent", configurationPolicy = ConfigurationPolicy.REQUIRE)
+@ManagedObject("Jakartars whiteboard")
 public class JettyBackedWhiteboardComponent {
 
 	Logger logger = Logger.getLogger(JettyBackedWhiteboardComponent.class.getName());
 	
+	/** The name of the endpoint configured by the whiteboard properties */
+	public static final String DEFAULT_ENDPOINT = "default";
+	/** The JMX domain of the MBeans, followed by the component id */
+	public static final String JMX_DOMAIN = "org.eclipse.osgitech.rest.jetty";
+	
 	private JerseyServiceRuntime<WhiteboardServletContainer> serviceRuntime;
 
 	public enum State {
@@ -68,12 +129,37 @@ public class JettyBackedWhiteboardComponent {
 	}
 	private volatile Server jettyServer;
 	private Integer port = JerseyConstants.WHITEBOARD_DEFAULT_PORT;
-	private String contextPath = JerseyConstants.WHITEBOARD_DEFAULT_CONTEXT_PATH;
+	private volatile String contextPath = JerseyConstants.WHITEBOARD_DEFAULT_CONTEXT_PATH;
 	private String[] uris = {WHITEBOARD_DEFAULT_SCHEMA + "://" + WHITEBOARD_DEFAULT_HOST 
 			+ ":" + WHITEBOARD_DEFAULT_PORT + WHITEBOARD_DEFAULT_CONTEXT_PATH};
 	private boolean disableSession;
-	private final Map<String, ServletContextHandler> handlerMap = new HashMap<>();
-	private final HandlerList handlers = new HandlerList();
+	private ServerSettings serverSettings = new ServerSettings(Collections.emptyMap());
+	/** The endpoints by name, starting with the {@link #DEFAULT_ENDPOINT} */
+	private Map<String, Endpoint> endpoints = Collections.emptyMap();
+	/** The connectors of the endpoints, by the name of the endpoint. Rebuilt holding the {@link #serverLock} */
+	private final Map<String, ServerConnector> connectors = new ConcurrentHashMap<>();
+	private long drainTimeout = 5000;
+	private long shutdownTimeout;
+	private boolean jmx = true;
+	private String jmxDomain = JMX_DOMAIN;
+	private volatile StatisticsHandler requestStatistics;
+	private final AtomicLong droppedRequests = new AtomicLong();
+	private final Map<String, ServletContextHandler> handlerMap = new ConcurrentHashMap<>();
+	/** The deployed containers by path, which are moved to the contexts of a new server */
+	private final Map<String, WhiteboardServletContainer> containerMap = new ConcurrentHashMap<>();
+	/** 
+	 * Maps each request to the context with the longest matching path, using an index of the context paths. 
+	 * Adding or removing a context publishes a new index, requests use the index that was current when they arrived.
+	 * Created with each server, as it cannot be restarted once the server is destroyed
+	 */
+	private volatile ContextHandlerCollection handlers = new ContextHandlerCollection();
+	/** The removed contexts and retired connectors that are still completing their active requests */
+	private final Set<CompletableFuture<Void>> draining = ConcurrentHashMap.newKeySet();
+	/** 
+	 * Serializes the changes of the server, its connectors and contexts. Containers are deployed and destroyed 
+	 * on the dispatch thread of the runtime, while the configuration is changed on the thread of the component
+	 */
+	private final Object serverLock = new Object();
 
 	/**
 	 * Called on component activation
@@ -86,13 +172,17 @@ public class JettyBackedWhiteboardComponent {
 		serviceRuntime = new JerseyServiceRuntime<>(context, this::createContainerForPath, 
 				this::destroyContainer);
 		
-		doUpdateProperties(properties);
-		
-		createServerAndContext();
-		startServer();
-		
+		Map<String, Object> runtimeProperties;
+		synchronized (serverLock) {
+			doUpdateProperties(properties);
+			
+			createServerAndContext();
+			startServer();
+			updateUris();
+			runtimeProperties = getServiceRuntimeProperties(properties);
+		}
 		
-		serviceRuntime.start(getServiceRuntimeProperties(properties));
+		serviceRuntime.start(runtimeProperties);
 	}
 
 	private Map<String, Object> getServiceRuntimeProperties(Map<String, Object> properties) {
@@ -108,21 +198,33 @@ public class JettyBackedWhiteboardComponent {
 	 */
 	@Modified
 	public void modified(Map<String, Object> props) throws ConfigurationException {
-		
-		
-		Integer oldPort = port;
-		String oldContextPath = contextPath;
-		doUpdateProperties(props);
-		boolean portChanged = !this.port.equals(oldPort);
-		boolean pathChanged = !this.contextPath.equals(oldContextPath);
-		
-		if (pathChanged || portChanged) {
-			stopContextHandlers();
-			stopServer();
-			createServerAndContext();
-			startServer();
+		Map<String, Object> runtimeProperties;
+		synchronized (serverLock) {
+			String oldContextPath = contextPath;
+			ServerSettings oldServerSettings = serverSettings;
+			Map<String, Endpoint> oldEndpoints = endpoints;
+			doUpdateProperties(props);
+			boolean pathChanged = !this.contextPath.equals(oldContextPath);
+			boolean threadPoolChanged = !this.serverSettings.hasSameThreadPool(oldServerSettings);
+			
+			if (jettyServer == null || !jettyServer.isRunning() || !serverSettings.canResizeThreadPool(oldServerSettings)) {
+				replaceServer();
+			} else {
+				// The running contexts and their containers are kept
+				if (threadPoolChanged) {
+					serverSettings.resizeThreadPool((QueuedThreadPool) jettyServer.getThreadPool());
+					logger.info("Resized Jakartars whiteboard server thread pool to " + serverSettings);
+				}
+				if (pathChanged) {
+					updateContextPaths();
+				}
+				updateConnectors(oldEndpoints);
+				updateMBeans();
+			}
+			updateUris();
+			runtimeProperties = getServiceRuntimeProperties(props);
 		}
-		serviceRuntime.update(getServiceRuntimeProperties(props));
+		serviceRuntime.update(runtimeProperties);
 	}
 
 
@@ -133,15 +235,31 @@ public class JettyBackedWhiteboardComponent {
 	 */
 	@Deactivate
 	public void deactivate(ComponentContext context) {
+		synchronized (serverLock) {
+			shutdownServer();
+		}
+		// Not holding the lock, the runtime destroys its containers on its dispatch thread
 		serviceRuntime.teardown(5, TimeUnit.SECONDS);
-		stopContextHandlers();
-		stopServer();
+		synchronized (serverLock) {
+			stopContextHandlers();
+			stopServer();
+		}
+	}
+
+	/**
+	 * Returns the number of requests that were still active, when a graceful shutdown of the server timed out.
+	 * Published as an attribute of the MBean of this component
+	 * @return the number of dropped requests since the component was activated
+	 */
+	@ManagedAttribute("The number of active requests dropped after the shutdown timeout")
+	public long getDroppedRequestCount() {
+		return droppedRequests.get();
 	}
 
 	private String[] getURLs(Map<String, Object> props) {
 		StringBuilder sb = new StringBuilder();
 		String schema = JerseyHelper.getPropertyWithDefault(props, JerseyConstants.JERSEY_SCHEMA,
-				JerseyConstants.WHITEBOARD_DEFAULT_SCHEMA);
+				props.get(JERSEY_SSL_KEYSTORE) != null ? "https" : JerseyConstants.WHITEBOARD_DEFAULT_SCHEMA);
 		sb.append(schema);
 		sb.append("://");
 		String host = JerseyHelper.getPropertyWithDefault(props, JerseyConstants.JERSEY_HOST,
@@ -168,26 +286,38 @@ public class JettyBackedWhiteboardComponent {
 	 */
 	private WhiteboardServletContainer createContainerForPath(String path, ResourceConfig config) {
 		WhiteboardServletContainer container = new WhiteboardServletContainer(config);
-		ServletHolder servlet = new ServletHolder(container);
+		synchronized (serverLock) {
+			deployContainer(path, container);
+			containerMap.put(path, container);
+		}
+		return container;
+	}
+
+	/**
+	 * Serves a container from a new context of the current server. The context initializes the container,
+	 * which builds its application, or builds it again, when it was deployed to a previous server
+	 */
+	private void deployContainer(String path, WhiteboardServletContainer container) {
+		ServletHolder servlet = new ContainerHolder(container);
 		servlet.setAsyncSupported(true);
 		ServletContextHandler handler = createContext(path);
 		handler.addServlet(servlet, "/*");
-		if ("/".equals(path)) {
-			handlers.addHandler(handler);
-		} else {
-			handlers.prependHandler(handler);
-		}
 		try {
+			// The context is started before it is published, so that no request sees it starting
 			handler.start();
 		} catch (Exception e) {
 			logger.log(Level.SEVERE, "Cannot start server context handler for context: " + path, e);
 		}
-		return container;
+		handlers.addHandler(handler);
 	}
 
 	private void destroyContainer(String path, WhiteboardServletContainer container) {
-		removeContextHandler(path);
-		container.dispose();
+		CompletableFuture<Void> removed;
+		synchronized (serverLock) {
+			containerMap.remove(path, container);
+			removed = removeContextHandler(path);
+		}
+		removed.whenComplete((r, t) -> container.dispose());
 	}
 
 	/*
@@ -198,19 +328,86 @@ public class JettyBackedWhiteboardComponent {
 	 */
 	private void doUpdateProperties(Map<String, Object> props) {
 		this.disableSession = JerseyHelper.getPropertyWithDefault(props, JERSEY_DISABLE_SESSION, true);
-		this.uris = getURLs(props);
-		// This validates all of the supplied uris
-		URI[] uris = new URI[this.uris.length];
-		for (int i = 0; i < uris.length; i++) {
-			uris[i] = URI.create(this.uris[i]);
-		}
-		URI uri = uris[0];
-		if (uri.getPort() > 0) {
+		this.drainTimeout = getInt(props, JERSEY_CONTEXT_DRAIN_TIMEOUT, 5000);
+		this.shutdownTimeout = getInt(props, JERSEY_SHUTDOWN_TIMEOUT, 0);
+		Object jmxEnabled = props.get(JERSEY_JMX);
+		this.jmx = jmxEnabled == null || Boolean.parseBoolean(jmxEnabled.toString());
+		Object componentId = props.get(ComponentConstants.COMPONENT_ID);
+		this.jmxDomain = componentId == null ? JMX_DOMAIN : JMX_DOMAIN + "." + componentId;
+		this.serverSettings = new ServerSettings(props);
+		String defaultUri = getURLs(props)[0];
+		// This validates the supplied uri
+		URI uri = URI.create(defaultUri);
+		// Port 0 binds any free port
+		if (uri.getPort() >= 0) {
 			port = uri.getPort();
 		}
 		if (uri.getPath() != null) {
 			contextPath = uri.getPath();
 		}
+		Map<String, Endpoint> newEndpoints = new LinkedHashMap<>();
+		newEndpoints.put(DEFAULT_ENDPOINT, new Endpoint(defaultUri, port, serverSettings));
+		for (String name : getEndpointNames(props.get(JERSEY_ENDPOINTS))) {
+			if (newEndpoints.containsKey(name)) {
+				logger.log(Level.WARNING, "The Jakartars whiteboard endpoint " + name + " is configured more than once");
+				continue;
+			}
+			Map<String, Object> endpointProps = getEndpointProperties(props, name);
+			String endpointUri = getURLs(endpointProps)[0];
+			int endpointPort = URI.create(endpointUri).getPort();
+			if (endpointPort < 0) {
+				logger.log(Level.WARNING, "The Jakartars whiteboard endpoint " + name + " has no port, it is not served");
+				continue;
+			}
+			newEndpoints.put(name, new Endpoint(endpointUri, endpointPort, new ServerSettings(endpointProps)));
+		}
+		this.endpoints = newEndpoints;
+	}
+	
+	private static List<String> getEndpointNames(Object value) {
+		Collection<?> names;
+		if (value == null) {
+			return Collections.emptyList();
+		} else if (value instanceof String) {
+			names = Arrays.asList(((String) value).split(","));
+		} else if (value instanceof String[]) {
+			names = Arrays.asList((String[]) value);
+		} else if (value instanceof Collection) {
+			names = (Collection<?>) value;
+		} else {
+			names = Collections.singletonList(value);
+		}
+		List<String> result = new ArrayList<>();
+		for (Object name : names) {
+			String trimmed = String.valueOf(name).trim();
+			if (!trimmed.isEmpty()) {
+				result.add(trimmed);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the properties of an additional endpoint. These are the whiteboard properties, overridden by 
+	 * the ones with the prefix of the endpoint, without it. The port is not inherited, and the context path 
+	 * of the whiteboard is used by all endpoints, because they share the application contexts
+	 */
+	private static Map<String, Object> getEndpointProperties(Map<String, Object> props, String name) {
+		String prefix = JERSEY_ENDPOINT_PREFIX + name + ".";
+		Map<String, Object> endpointProps = new HashMap<>(props);
+		endpointProps.remove(JerseyConstants.JERSEY_PORT);
+		props.forEach((k, v) -> {
+			if (k.startsWith(prefix)) {
+				endpointProps.put("jersey." + k.substring(prefix.length()), v);
+			}
+		});
+		Object path = props.get(JerseyConstants.JERSEY_CONTEXT_PATH);
+		if (path == null) {
+			endpointProps.remove(JerseyConstants.JERSEY_CONTEXT_PATH);
+		} else {
+			endpointProps.put(JerseyConstants.JERSEY_CONTEXT_PATH, path);
+		}
+		return endpointProps;
 	}
 	
 	private String getContextPath(String path) {
@@ -232,6 +429,10 @@ public class JettyBackedWhiteboardComponent {
 		if(disableSession == false) {
 			contextHandler.setSessionHandler(new SessionHandler());
 		}
+		// Counts the active requests, including suspended asynchronous ones, to drain the context on removal
+		StatisticsHandler statisticsHandler = new StatisticsHandler();
+		statisticsHandler.setGracefulShutdownWaitsForRequests(true);
+		contextHandler.insertHandler(statisticsHandler);
 		contextHandler.setServer(jettyServer);
 		contextHandler.setContextPath(ctxPath);
 		if (!handlerMap.containsKey(path)) {
@@ -242,30 +443,82 @@ public class JettyBackedWhiteboardComponent {
 	}
 
 	/**
-	 * Stopps the Jetty context handler for the given context path;
+	 * Stopps the Jetty context handler for the given context path. The context receives no new requests, 
+	 * and is stopped when its active requests are completed, or the drain timeout has expired
+	 * @return a future that completes when the context handler is stopped
 	 */
-	private void removeContextHandler(String path) {
+	private CompletableFuture<Void> removeContextHandler(String path) {
 		ServletContextHandler handler = handlerMap.remove(path);
 		if (handler == null) {
 			logger.log(Level.WARNING, "Try to stop Jetty context handler for path " + path + ", but there is none");
-			return;
+			return CompletableFuture.completedFuture(null);
 		}
+		return retireContextHandler(path, handler);
+	}
+
+	/**
+	 * Removes a context handler from the server, and stops it when its active requests are completed, 
+	 * or the drain timeout has expired
+	 * @return a future that completes when the context handler is stopped
+	 */
+	private CompletableFuture<Void> retireContextHandler(String path, ServletContextHandler handler) {
 		if (handler.isStopped()) {
 			logger.log(Level.WARNING, "Try to stop Jetty context handler for path " + path + ", but it was already stopped");
-			return;
+			return CompletableFuture.completedFuture(null);
 		}
-		try {
-			handlers.removeHandler(handler);
-			handler.stop();
-			handler.destroy();
-			handler = null;
-		} catch (Exception e) {
-			logger.log(Level.SEVERE, "Error stopping Jetty context handler for path " + path, e);
+		// Removing a managed handler would stop it right away
+		if (handlers.isManaged(handler)) {
+			handlers.unmanage(handler);
 		}
+		handlers.removeHandler(handler);
+		StatisticsHandler statisticsHandler = handler.getChildHandlerByClass(StatisticsHandler.class);
+		CompletableFuture<Void> drained = statisticsHandler == null || drainTimeout <= 0 ? 
+				CompletableFuture.completedFuture(null) : 
+					statisticsHandler.shutdown().orTimeout(drainTimeout, TimeUnit.MILLISECONDS);
+		CompletableFuture<Void> stopped = drained.handleAsync((r, t) -> {
+			if (t != null) {
+				logger.log(Level.WARNING, "Stopping Jetty context handler for path " + path + " with " 
+						+ statisticsHandler.getRequestsActive() + " active requests after " + drainTimeout + " ms");
+			}
+			try {
+				handler.stop();
+				handler.destroy();
+			} catch (Exception e) {
+				logger.log(Level.SEVERE, "Error stopping Jetty context handler for path " + path, e);
+			}
+			return null;
+		});
+		draining.add(stopped);
+		stopped.whenComplete((r, t) -> draining.remove(stopped));
+		return stopped;
 	}
 	
+	/**
+	 * Removes all context handlers, and waits until they and the contexts and connectors removed before are stopped
+	 */
 	private void stopContextHandlers() {
-		handlerMap.keySet().forEach(this::removeContextHandler);
+		new ArrayList<>(handlerMap.keySet()).forEach(this::removeContextHandler);
+		try {
+			CompletableFuture.allOf(draining.toArray(new CompletableFuture<?>[0])).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			logger.log(Level.SEVERE, "Error stopping Jetty context handlers", e);
+		}
+	}
+
+	/**
+	 * Replaces the Jetty server, when its thread pool cannot be changed while it is running. The deployed 
+	 * containers are kept, and moved to the contexts of the new server. The applications are shut down with 
+	 * the old contexts, and each container starts a new instance of its application in the new one
+	 */
+	private void replaceServer() {
+		shutdownServer();
+		stopContextHandlers();
+		stopServer();
+		createServerAndContext();
+		startServer();
+		containerMap.forEach(this::deployContainer);
 	}
 
 	/**
@@ -276,16 +529,179 @@ public class JettyBackedWhiteboardComponent {
 			if (jettyServer != null && !jettyServer.isStopped()) {
 				logger.log(Level.WARNING,
 						"Stopping Jakartars whiteboard server on startup, but it wasn't exepected to run");
+				shutdownServer();
 				stopContextHandlers();
 				stopServer();
 			}
-			jettyServer = new Server(port);
-			jettyServer.setHandler(handlers);
+			jettyServer = new Server(serverSettings.createThreadPool());
+			updateMBeans();
+			connectors.clear();
+			for (Map.Entry<String, Endpoint> endpoint : endpoints.entrySet()) {
+				ServerConnector serverConnector = createConnector(jettyServer, endpoint.getKey(), endpoint.getValue());
+				jettyServer.addConnector(serverConnector);
+				connectors.put(endpoint.getKey(), serverConnector);
+			}
+			handlers = new ContextHandlerCollection();
+			// Counts the active requests of all contexts, for the graceful shutdown
+			requestStatistics = new StatisticsHandler();
+			requestStatistics.setGracefulShutdownWaitsForRequests(true);
+			requestStatistics.setHandler(handlers);
+			jettyServer.setHandler(requestStatistics);
 		} catch (Exception e) {
 			logger.log(Level.SEVERE, "Error starting Jakartars whiteboard because of an exception", e);
 		}
 	}
 
+	/**
+	 * Publishes the MBeans of the server, its connectors, selectors, thread pool and handlers, and the one of this 
+	 * component, if JMX is enabled. The MBean container registers the beans added to the server later on, and 
+	 * unregisters them when they are removed, or the server is destroyed
+	 */
+	private void updateMBeans() {
+		MBeanContainer mbeans = jettyServer.getBean(MBeanContainer.class);
+		if (mbeans != null && (!jmx || !mbeans.getDomain().equals(jmxDomain))) {
+			jettyServer.removeBean(this);
+			jettyServer.removeBean(mbeans);
+			mbeans.destroy();
+			mbeans = null;
+		}
+		if (jmx && mbeans == null) {
+			mbeans = new MBeanContainer(ManagementFactory.getPlatformMBeanServer());
+			mbeans.setDomain(jmxDomain);
+			jettyServer.addBean(mbeans);
+			jettyServer.addBean(this, false);
+		}
+	}
+
+	private ServerConnector createConnector(Server server, String name, Endpoint endpoint) {
+		ServerConnector serverConnector = endpoint.settings.createConnector(server, endpoint.port);
+		serverConnector.setName(name);
+		serverConnector.addBean(new ConnectionStatistics());
+		return serverConnector;
+	}
+
+	/**
+	 * Moves the deployed containers to the current context path. Each container is served by a new context at the 
+	 * new path first, and the context at the old path is retired afterwards, once its active requests are completed. 
+	 * The retired context keeps the container, which serves the new context
+	 */
+	private void updateContextPaths() {
+		new ArrayList<>(containerMap.entrySet()).forEach(e -> {
+			ServletContextHandler oldHandler = handlerMap.remove(e.getKey());
+			deployContainer(e.getKey(), e.getValue());
+			if (oldHandler != null) {
+				for (ServletHolder holder : oldHandler.getServletHandler().getServlets()) {
+					if (holder instanceof ContainerHolder) {
+						((ContainerHolder) holder).keepContainer();
+					}
+				}
+				retireContextHandler(e.getKey(), oldHandler);
+			}
+		});
+		logger.info("Moved Jakartars whiteboard server contexts to context: " + contextPath);
+	}
+
+	/**
+	 * Binds the connectors of new and changed endpoints alongside the running ones, and then retires the 
+	 * connectors of changed and removed endpoints. A changed endpoint that keeps its port, other than 0, is 
+	 * retired first, as the port cannot be bound twice. If a connector cannot be bound, the endpoint keeps its 
+	 * old connector, and only the endpoints that are served are advertised, so that the same configuration 
+	 * can be retried. Must be called holding the {@link #serverLock}, together with {@link #updateUris()}
+	 */
+	private void updateConnectors(Map<String, Endpoint> oldEndpoints) {
+		oldEndpoints.keySet().stream()
+			.filter(name -> !endpoints.containsKey(name))
+			.collect(toList())
+			.forEach(name -> retireConnector(connectors.remove(name)));
+		Map<String, Endpoint> served = new LinkedHashMap<>();
+		endpoints.forEach((name, endpoint) -> {
+			Endpoint oldEndpoint = oldEndpoints.get(name);
+			if (endpoint.equals(oldEndpoint)) {
+				served.put(name, endpoint);
+				return;
+			}
+			ServerConnector oldConnector = connectors.get(name);
+			if (oldConnector != null && oldEndpoint.port == endpoint.port && endpoint.port != 0) {
+				connectors.remove(name);
+				retireConnector(oldConnector);
+				oldConnector = null;
+			}
+			if (bindConnector(name, endpoint)) {
+				served.put(name, endpoint);
+				retireConnector(oldConnector);
+			} else if (oldConnector != null) {
+				served.put(name, oldEndpoint.advertisedAs(endpoint));
+			}
+		});
+		endpoints = served;
+		Endpoint defaultEndpoint = served.get(DEFAULT_ENDPOINT);
+		if (defaultEndpoint != null) {
+			port = defaultEndpoint.port;
+		}
+	}
+
+	/**
+	 * Advertises the served endpoints, with the port that was bound for an endpoint with port 0. 
+	 * Must be called holding the {@link #serverLock}
+	 */
+	private void updateUris() {
+		uris = endpoints.entrySet().stream()
+				.map(e -> e.getValue().advertisedUri(connectors.get(e.getKey())))
+				.toArray(String[]::new);
+	}
+
+	/**
+	 * Binds the connector of an endpoint to the running server
+	 * @return <code>true</code> if the connector was started
+	 */
+	private boolean bindConnector(String name, Endpoint endpoint) {
+		ServerConnector newConnector = createConnector(jettyServer, name, endpoint);
+		try {
+			jettyServer.addConnector(newConnector);
+			if (!newConnector.isStarted()) {
+				newConnector.start();
+			}
+		} catch (Exception e) {
+			logger.log(Level.SEVERE, "Cannot bind Jakartars whiteboard endpoint " + name + " to port: " + endpoint.port, e);
+			jettyServer.removeConnector(newConnector);
+			return false;
+		}
+		connectors.put(name, newConnector);
+		logger.info("Started Jakartars whiteboard endpoint " + name + " for port: " + endpoint.port + " with " + endpoint.settings);
+		return true;
+	}
+
+	/**
+	 * Retires a connector. It releases its port and stops accepting connections right away, and is stopped 
+	 * once its connections are closed after their active requests, or the drain timeout has expired
+	 */
+	private void retireConnector(ServerConnector oldConnector) {
+		if (oldConnector == null) {
+			return;
+		}
+		Server server = jettyServer;
+		// Closes the server socket before it returns, so that the port can be bound again
+		CompletableFuture<Void> shutdown = oldConnector.shutdown();
+		CompletableFuture<Void> drained = drainTimeout <= 0 ? CompletableFuture.completedFuture(null) : 
+			shutdown.orTimeout(drainTimeout, TimeUnit.MILLISECONDS);
+		CompletableFuture<Void> stopped = drained.handleAsync((r, t) -> {
+			int open = oldConnector.getConnectedEndPoints().size();
+			if (open > 0) {
+				logger.log(Level.WARNING, "Closing " + open + " connections of the Jakartars whiteboard server connector for port: " 
+						+ oldConnector.getPort() + " after " + drainTimeout + " ms");
+			}
+			try {
+				server.removeConnector(oldConnector);
+				oldConnector.stop();
+			} catch (Exception e) {
+				logger.log(Level.SEVERE, "Error stopping Jakartars whiteboard server connector for port: " + oldConnector.getPort(), e);
+			}
+			return null;
+		});
+		draining.add(stopped);
+		stopped.whenComplete((r, t) -> draining.remove(stopped));
+	}
+
 	/**
 	 * Starts the Jetty server
 	 */
@@ -297,7 +713,8 @@ public class JettyBackedWhiteboardComponent {
 			Executors.newSingleThreadExecutor().submit(jettyServerRunnable);
 			if (jettyServerRunnable.isStarted(5, TimeUnit.SECONDS)) {
 
-				logger.info("Started Jakartars whiteboard server for port: " + port + " and context: " + contextPath);
+				logger.info("Started Jakartars whiteboard server for port: " + port + " and context: " + contextPath 
+						+ " with " + serverSettings);
 
 			} else {
 				switch (jettyServerRunnable.getState()) {
@@ -328,6 +745,32 @@ public class JettyBackedWhiteboardComponent {
 		}
 	}
 
+	/**
+	 * Gracefully shuts the Jetty server down, if a shutdown timeout is configured. The connectors stop 
+	 * accepting connections, and the active requests, including asynchronous ones, are completed until 
+	 * the shutdown timeout expires. Requests that are still active afterwards are dropped when the server stops
+	 */
+	private void shutdownServer() {
+		Server server = jettyServer;
+		StatisticsHandler statistics = requestStatistics;
+		if (shutdownTimeout <= 0 || server == null || !server.isRunning()) {
+			return;
+		}
+		try {
+			Graceful.shutdown(server).get(shutdownTimeout, TimeUnit.MILLISECONDS);
+			logger.fine("Completed all active requests of the Jakartars whiteboard server");
+		} catch (TimeoutException e) {
+			int dropped = statistics == null ? 0 : statistics.getRequestsActive();
+			droppedRequests.addAndGet(dropped);
+			logger.log(Level.WARNING, "Stopping Jakartars whiteboard server with " + dropped + " active requests after " 
+					+ shutdownTimeout + " ms");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			logger.log(Level.SEVERE, "Error shutting down Jakartars whiteboard server", e.getCause());
+		}
+	}
+
 	/**
 	 * Stopps the Jetty server;
 	 */
@@ -348,4 +791,279 @@ public class JettyBackedWhiteboardComponent {
 			logger.log(Level.SEVERE, "Error stopping Jetty server", e);
 		}
 	}
+
+	private static int getInt(Map<String, Object> props, String key, int defaultValue) {
+		Object value = props.get(key);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			int number = value instanceof Number ? ((Number) value).intValue() : Integer.parseInt(value.toString().trim());
+			if (number >= 0) {
+				return number;
+			}
+		} catch (NumberFormatException e) {
+			// handled below
+		}
+		Logger.getLogger(JettyBackedWhiteboardComponent.class.getName()).log(Level.WARNING, "The value " + value 
+				+ " of the property " + key + " is not a valid non-negative number, using " + defaultValue);
+		return defaultValue;
+	}
+
+	/**
+	 * Holds a deployed container. The container is destroyed when its context is stopped, unless it was moved to another context
+	 */
+	private static final class ContainerHolder extends ServletHolder {
+
+		private volatile boolean keepContainer;
+
+		ContainerHolder(WhiteboardServletContainer container) {
+			super(container);
+		}
+
+		/**
+		 * Keeps the container, when this holder is stopped
+		 */
+		void keepContainer() {
+			keepContainer = true;
+		}
+
+		@Override
+		public void destroyInstance(Object o) {
+			if (!keepContainer) {
+				super.destroyInstance(o);
+			}
+		}
+	}
+
+	/**
+	 * A listen endpoint of the whiteboard, served by its own connector
+	 */
+	private static final class Endpoint {
+		
+		private final String uri;
+		private final int port;
+		private final ServerSettings settings;
+		
+		Endpoint(String uri, int port, ServerSettings settings) {
+			this.uri = uri;
+			this.port = port;
+			this.settings = settings;
+		}
+
+		/**
+		 * Returns this endpoint, advertised with the host and context path of the given one. Used if the 
+		 * connector of the given endpoint cannot be bound, and this one keeps serving the applications
+		 */
+		Endpoint advertisedAs(Endpoint other) {
+			return new Endpoint(toUri(URI.create(uri).getScheme(), other.uri, port), port, settings);
+		}
+
+		/**
+		 * Returns the uri of this endpoint, with the port the given connector was bound to, if any port was configured
+		 */
+		String advertisedUri(ServerConnector connector) {
+			if (port != 0 || connector == null || connector.getLocalPort() <= 0) {
+				return uri;
+			}
+			return toUri(URI.create(uri).getScheme(), uri, connector.getLocalPort());
+		}
+
+		private static String toUri(String scheme, String uri, int port) {
+			URI advertised = URI.create(uri);
+			String path = advertised.getRawPath() == null ? "" : advertised.getRawPath();
+			return scheme + "://" + advertised.getHost() + ":" + port + path;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(port);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Endpoint)) {
+				return false;
+			}
+			Endpoint other = (Endpoint) obj;
+			// The uri is only advertised, a changed host or context path needs no new connector
+			return port == other.port && settings.hasSameConnector(other.settings);
+		}
+	}
+
+	/**
+	 * The configuration of the request thread pool and the connector. The running thread pool is resized if its limits change, 
+	 * and the server is recreated if the other thread pool settings change. The connector is recreated if the connector settings change
+	 */
+	private static final class ServerSettings {
+		
+		private final int minThreads;
+		private final int maxThreads;
+		private final int queueSize;
+		private final int idleTimeout;
+		private final boolean virtualThreads;
+		private final int acceptors;
+		private final int selectors;
+		private final int acceptQueueSize;
+		private final int connectionIdleTimeout;
+		private final boolean http2;
+		private final String keyStore;
+		private final String keyStorePassword;
+		private final String keyStoreType;
+		
+		ServerSettings(Map<String, Object> props) {
+			int max = getInt(props, JERSEY_THREADS_MAX, 200);
+			if (max < 1) {
+				Logger.getLogger(JettyBackedWhiteboardComponent.class.getName()).log(Level.WARNING, "The value " + max 
+						+ " of the property " + JERSEY_THREADS_MAX + " is less than 1, using 1");
+				max = 1;
+			}
+			int min = getInt(props, JERSEY_THREADS_MIN, Math.min(8, max));
+			if (min > max) {
+				Logger.getLogger(JettyBackedWhiteboardComponent.class.getName()).log(Level.WARNING, "The value " + min 
+						+ " of the property " + JERSEY_THREADS_MIN + " exceeds the maximum of " + max + " threads, using " + max);
+				min = max;
+			}
+			maxThreads = max;
+			minThreads = min;
+			queueSize = getInt(props, JERSEY_THREADS_QUEUE_SIZE, 0);
+			idleTimeout = getInt(props, JERSEY_THREADS_IDLE_TIMEOUT, 60000);
+			Object virtual = props.get(JERSEY_THREADS_VIRTUAL);
+			virtualThreads = virtual != null && Boolean.parseBoolean(virtual.toString());
+			acceptors = getInt(props, JERSEY_CONNECTOR_ACCEPTORS, -1);
+			selectors = getInt(props, JERSEY_CONNECTOR_SELECTORS, -1);
+			acceptQueueSize = getInt(props, JERSEY_CONNECTOR_ACCEPT_QUEUE_SIZE, 0);
+			connectionIdleTimeout = getInt(props, JERSEY_CONNECTOR_IDLE_TIMEOUT, 30000);
+			Object h2 = props.get(JERSEY_HTTP2);
+			http2 = h2 != null && Boolean.parseBoolean(h2.toString());
+			Object ks = props.get(JERSEY_SSL_KEYSTORE);
+			keyStore = ks == null || ks.toString().isBlank() ? null : ks.toString();
+			Object ksPassword = props.get(JERSEY_SSL_KEYSTORE_PASSWORD);
+			keyStorePassword = ksPassword == null ? null : ksPassword.toString();
+			keyStoreType = JerseyHelper.getPropertyWithDefault(props, JERSEY_SSL_KEYSTORE_TYPE, "PKCS12");
+		}
+		
+		boolean hasSameThreadPool(ServerSettings other) {
+			return minThreads == other.minThreads && maxThreads == other.maxThreads && queueSize == other.queueSize
+					&& idleTimeout == other.idleTimeout && virtualThreads == other.virtualThreads;
+		}
+		
+		boolean hasSameConnector(ServerSettings other) {
+			return acceptors == other.acceptors && selectors == other.selectors
+					&& acceptQueueSize == other.acceptQueueSize && connectionIdleTimeout == other.connectionIdleTimeout
+					&& http2 == other.http2 && Objects.equals(keyStore, other.keyStore) 
+					&& Objects.equals(keyStorePassword, other.keyStorePassword) && keyStoreType.equals(other.keyStoreType);
+		}
+		
+		/**
+		 * @return <code>true</code> if the thread pool of the other settings can be changed to this one while it is running
+		 */
+		boolean canResizeThreadPool(ServerSettings other) {
+			// The idle timeout of the reserved threads cannot be changed while running
+			return queueSize == other.queueSize && idleTimeout == other.idleTimeout && virtualThreads == other.virtualThreads;
+		}
+		
+		void resizeThreadPool(QueuedThreadPool threadPool) {
+			// Lowers the minimum first, if it exceeds the new maximum
+			threadPool.setMaxThreads(maxThreads);
+			threadPool.setMinThreads(minThreads);
+		}
+		
+		boolean isSecure() {
+			return keyStore != null;
+		}
+		
+		ServerConnector createConnector(Server server, int port) {
+			ServerConnector connector = new ServerConnector(server, acceptors, selectors, createConnectionFactories());
+			connector.setPort(port);
+			connector.setAcceptQueueSize(acceptQueueSize);
+			connector.setIdleTimeout(connectionIdleTimeout);
+			return connector;
+		}
+		
+		private ConnectionFactory[] createConnectionFactories() {
+			HttpConfiguration httpConfig = new HttpConfiguration();
+			if (!isSecure()) {
+				HttpConnectionFactory http1 = new HttpConnectionFactory(httpConfig);
+				// HTTP/1.1 connections can upgrade, and h2c clients with prior knowledge are detected
+				return http2 ? new ConnectionFactory[] { http1, new HTTP2CServerConnectionFactory(httpConfig) } 
+						: new ConnectionFactory[] { http1 };
+			}
+			httpConfig.addCustomizer(new SecureRequestCustomizer());
+			HttpConnectionFactory http1 = new HttpConnectionFactory(httpConfig);
+			SslContextFactory.Server sslContextFactory = new SslContextFactory.Server();
+			sslContextFactory.setKeyStorePath(keyStore);
+			sslContextFactory.setKeyStorePassword(keyStorePassword);
+			sslContextFactory.setKeyStoreType(keyStoreType);
+			if (http2) {
+				try {
+					ALPNServerConnectionFactory alpn = new ALPNServerConnectionFactory();
+					alpn.setDefaultProtocol(http1.getProtocol());
+					sslContextFactory.setCipherComparator(HTTP2Cipher.COMPARATOR);
+					sslContextFactory.setUseCipherSuitesOrder(true);
+					return new ConnectionFactory[] { new SslConnectionFactory(sslContextFactory, alpn.getProtocol()), 
+							alpn, new HTTP2ServerConnectionFactory(httpConfig), http1 };
+				} catch (IllegalStateException e) {
+					Logger.getLogger(JettyBackedWhiteboardComponent.class.getName()).log(Level.WARNING, 
+							"HTTP/2 over TLS needs an ALPN implementation for Jetty, only HTTP/1.1 is served", e);
+				}
+			}
+			return new ConnectionFactory[] { new SslConnectionFactory(sslContextFactory, http1.getProtocol()), http1 };
+		}
+		
+		QueuedThreadPool createThreadPool() {
+			// The queue grows by at least one task, also without a minimum of threads
+			int growBy = Math.max(1, minThreads);
+			BlockingQueue<Runnable> queue = queueSize > 0 ? 
+					new BlockingArrayQueue<>(Math.min(growBy, queueSize), growBy, queueSize) : null;
+			QueuedThreadPool threadPool = new QueuedThreadPool(maxThreads, minThreads, idleTimeout, queue);
+			threadPool.setName("JakartarsWhiteboard");
+			if (virtualThreads) {
+				if (VirtualThreads.areSupported()) {
+					// Request handling is dispatched to virtual threads, the pool keeps running the selectors
+					threadPool.setVirtualThreadsExecutor(VirtualThreads.getDefaultVirtualThreadsExecutor());
+				} else {
+					Logger.getLogger(JettyBackedWhiteboardComponent.class.getName()).warning(
+							"Virtual threads are not supported by this JVM, requests are handled by platform threads");
+				}
+			}
+			return threadPool;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(minThreads, maxThreads, queueSize, idleTimeout, virtualThreads, acceptors, selectors,
+					acceptQueueSize, connectionIdleTimeout, http2, keyStore, keyStorePassword, keyStoreType);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof ServerSettings)) {
+				return false;
+			}
+			ServerSettings other = (ServerSettings) obj;
+			return minThreads == other.minThreads && maxThreads == other.maxThreads && queueSize == other.queueSize
+					&& idleTimeout == other.idleTimeout && virtualThreads == other.virtualThreads
+					&& acceptors == other.acceptors && selectors == other.selectors
+					&& acceptQueueSize == other.acceptQueueSize && connectionIdleTimeout == other.connectionIdleTimeout
+					&& http2 == other.http2 && Objects.equals(keyStore, other.keyStore) 
+					&& Objects.equals(keyStorePassword, other.keyStorePassword) && keyStoreType.equals(other.keyStoreType);
+		}
+
+		@Override
+		public String toString() {
+			return "thread pool [min=" + minThreads + ", max=" + maxThreads + ", queue=" 
+					+ (queueSize > 0 ? queueSize : "unbounded") + ", idleTimeout=" + idleTimeout 
+					+ ", virtual=" + virtualThreads + "] and connector [acceptors=" 
+					+ (acceptors < 0 ? "default" : acceptors) + ", selectors=" + (selectors < 0 ? "default" : selectors) 
+					+ ", acceptQueue=" + acceptQueueSize + ", idleTimeout=" + connectionIdleTimeout 
+					+ ", tls=" + isSecure() + ", http2=" + http2 + "]";
+		}
+	}
 }
@@ -0,0 +1,661 @@
+/**
+ * Copyright (c) 2012 - 2022 Data In Motion and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Data In Motion - initial API and implementation
+ *     Stefan Bishof - API and implementation
+ *     Tim Ward - implementation
+ */
+package org.eclipse.osgitech.rest.jetty;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.osgi.framework.Constants.OBJECTCLASS;
+import static org.osgi.framework.Constants.SERVICE_ID;
+import static org.osgi.service.jakartars.runtime.JakartarsServiceRuntimeConstants.JAKARTA_RS_SERVICE_ENDPOINT;
+import static org.osgi.service.jakartars.whiteboard.JakartarsWhiteboardConstants.JAKARTA_RS_APPLICATION_BASE;
+import static org.osgi.service.jakartars.whiteboard.JakartarsWhiteboardConstants.JAKARTA_RS_EXTENSION;
+import static org.osgi.service.jakartars.whiteboard.JakartarsWhiteboardConstants.JAKARTA_RS_NAME;
+import static org.osgi.service.jakartars.whiteboard.JakartarsWhiteboardConstants.JAKARTA_RS_RESOURCE;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.file.Files;
+import java.security.KeyStore;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+import org.eclipse.jetty.io.ssl.ALPNProcessor;
+import org.eclipse.osgitech.rest.provider.JerseyConstants;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceObjects;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.framework.wiring.BundleWiring;
+import org.osgi.service.component.ComponentConstants;
+import org.osgi.service.jakartars.runtime.JakartarsServiceRuntime;
+
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.core.Application;
+
+/**
+ * Tests the reconfiguration of a running whiteboard server against a mocked service registry
+ * @since 1.2
+ */
+public class JettyBackedWhiteboardComponentTest {
+
+	/** Holds the requests to the slow resource until released */
+	private static volatile CountDownLatch release = new CountDownLatch(0);
+	private static volatile CountDownLatch entered = new CountDownLatch(0);
+
+	private final Map<ServiceListener, Filter> listeners = new ConcurrentHashMap<>();
+	private final Hashtable<String, Object> runtimeProperties = new Hashtable<>();
+	private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+	private BundleContext context;
+	private JettyBackedWhiteboardComponent component;
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@BeforeEach
+	public void before() throws Exception {
+		release = new CountDownLatch(1);
+		entered = new CountDownLatch(1);
+		context = mock(BundleContext.class);
+		Bundle bundle = mock(Bundle.class);
+		when(context.getBundle()).thenReturn(bundle);
+		when(context.createFilter(anyString())).thenAnswer(i -> FrameworkUtil.createFilter(i.getArgument(0)));
+		doAnswer(i -> listeners.put(i.getArgument(0), FrameworkUtil.createFilter(i.getArgument(1))))
+			.when(context).addServiceListener(any(ServiceListener.class), anyString());
+
+		ServiceReference reference = mock(ServiceReference.class);
+		when(reference.getBundle()).thenReturn(bundle);
+		when(reference.getProperty(anyString())).thenAnswer(i -> runtimeProperties.get(i.getArgument(0)));
+		when(reference.getPropertyKeys()).thenAnswer(i -> runtimeProperties.keySet().toArray(String[]::new));
+		when(reference.getProperties()).thenAnswer(i -> new Hashtable<>(runtimeProperties));
+		ServiceRegistration registration = mock(ServiceRegistration.class);
+		when(registration.getReference()).thenReturn(reference);
+		doAnswer(i -> {
+			setRuntimeProperties(i.getArgument(0));
+			return null;
+		}).when(registration).setProperties(any());
+		when(context.registerService(any(Class.class), any(JakartarsServiceRuntime.class), any(Dictionary.class)))
+			.thenAnswer(i -> {
+				setRuntimeProperties(i.getArgument(2));
+				return registration;
+			});
+	}
+
+	@AfterEach
+	public void after() {
+		release.countDown();
+		if (component != null) {
+			component.deactivate(null);
+		}
+	}
+
+	/**
+	 * Changing the limits of the thread pool resizes it, without interrupting the requests
+	 */
+	@Test
+	public void testThreadPoolResize() throws Exception {
+		Map<String, Object> props = properties(freePort());
+		activate(props);
+
+		CompletableFuture<HttpResponse<String>> inFlight = sendAsync(base(props), "slow");
+		assertTrue(entered.await(5, TimeUnit.SECONDS));
+		props.put(JerseyConstants.JERSEY_THREADS_MAX, 50);
+		component.modified(props);
+		assertEquals("hello", get(base(props), "hello"));
+
+		release.countDown();
+		HttpResponse<String> response = inFlight.get(10, TimeUnit.SECONDS);
+		assertEquals(200, response.statusCode());
+		assertEquals("slow", response.body());
+	}
+
+	/**
+	 * A thread pool that cannot be resized replaces the server, which serves the deployed applications
+	 */
+	@Test
+	public void testThreadPoolReplace() throws Exception {
+		Map<String, Object> props = properties(freePort());
+		activate(props);
+
+		props.put(JerseyConstants.JERSEY_THREADS_QUEUE_SIZE, 100);
+		component.modified(props);
+		assertEquals("hello", get(base(props), "hello"));
+
+		props.put(JerseyConstants.JERSEY_THREADS_MAX, 50);
+		props.remove(JerseyConstants.JERSEY_THREADS_QUEUE_SIZE);
+		component.modified(props);
+		assertEquals("hello", get(base(props), "hello"));
+	}
+
+	/**
+	 * With HTTP/2 enabled a cleartext connector upgrades HTTP/1.1 connections to h2c
+	 */
+	@Test
+	public void testHttp2Cleartext() throws Exception {
+		Map<String, Object> props = properties(freePort());
+		props.put(JerseyConstants.JERSEY_HTTP2, "true");
+		activate(props);
+
+		HttpClient h2Client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2)
+				.connectTimeout(Duration.ofSeconds(5)).build();
+		HttpResponse<String> response = h2Client.send(request(base(props), "hello"), BodyHandlers.ofString());
+		assertEquals("hello", response.body());
+		assertEquals(HttpClient.Version.HTTP_2, response.version());
+	}
+
+	/**
+	 * With HTTP/2 enabled a TLS connector negotiates it using ALPN, if Jetty has an ALPN implementation. 
+	 * Otherwise it serves HTTP/1.1 only
+	 */
+	@Test
+	public void testHttp2OverTls(@TempDir java.nio.file.Path dir) throws Exception {
+		String keyStore = dir.resolve("server.p12").toString();
+		Process keytool = new ProcessBuilder(java.nio.file.Path.of(System.getProperty("java.home"), "bin", "keytool").toString(), 
+				"-genkeypair", "-alias", "server", "-keyalg", "RSA", "-keysize", "2048", "-validity", "1", 
+				"-dname", "CN=localhost", "-ext", "SAN=dns:localhost", "-storetype", "PKCS12", 
+				"-keystore", keyStore, "-storepass", "secret", "-keypass", "secret")
+				.redirectErrorStream(true).start();
+		assertTrue(keytool.waitFor(30, TimeUnit.SECONDS) && keytool.exitValue() == 0, 
+				new String(keytool.getInputStream().readAllBytes()));
+		Map<String, Object> props = properties(freePort());
+		props.put(JerseyConstants.JERSEY_HTTP2, "true");
+		props.put(JerseyConstants.JERSEY_SSL_KEYSTORE, keyStore);
+		props.put(JerseyConstants.JERSEY_SSL_KEYSTORE_PASSWORD, "secret");
+		String base = activate(props, secureClient(keyStore, HttpClient.Version.HTTP_1_1));
+		assertTrue(base.startsWith("https://"), base);
+
+		HttpResponse<String> response = secureClient(keyStore, HttpClient.Version.HTTP_2)
+				.send(request(base, "hello"), BodyHandlers.ofString());
+		assertEquals("hello", response.body());
+		boolean alpn = ServiceLoader.load(ALPNProcessor.Server.class).findFirst().isPresent();
+		assertEquals(alpn ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1, response.version());
+	}
+
+	private static HttpClient secureClient(String keyStore, HttpClient.Version version) throws Exception {
+		KeyStore trusted = KeyStore.getInstance("PKCS12");
+		try (InputStream in = Files.newInputStream(java.nio.file.Path.of(keyStore))) {
+			trusted.load(in, "secret".toCharArray());
+		}
+		TrustManagerFactory trust = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+		trust.init(trusted);
+		SSLContext sslContext = SSLContext.getInstance("TLS");
+		sslContext.init(null, trust.getTrustManagers(), null);
+		return HttpClient.newBuilder().version(version).sslContext(sslContext)
+				.connectTimeout(Duration.ofSeconds(5)).build();
+	}
+
+	/**
+	 * A bounded queue also works without a minimum of threads, and a minimum above the maximum is lowered
+	 */
+	@Test
+	public void testBoundedQueueWithoutMinThreads() throws Exception {
+		Map<String, Object> props = properties(freePort());
+		props.put(JerseyConstants.JERSEY_THREADS_MIN, 0);
+		props.put(JerseyConstants.JERSEY_THREADS_QUEUE_SIZE, 100);
+		activate(props);
+
+		props.put(JerseyConstants.JERSEY_THREADS_MIN, 500);
+		props.put(JerseyConstants.JERSEY_THREADS_QUEUE_SIZE, 50);
+		component.modified(props);
+		assertEquals("hello", get(base(props), "hello"));
+	}
+
+	/**
+	 * Replacing the server starts the applications again, with their extensions
+	 */
+	@Test
+	public void testExtensionAfterServerReplace() throws Exception {
+		Map<String, Object> props = properties(freePort());
+		activate(props);
+		registerExtension();
+		long deadline = System.currentTimeMillis() + 10000;
+		while (send(base(props), "hello").headers().firstValue(TestFilter.HEADER).isEmpty()) {
+			assertTrue(System.currentTimeMillis() < deadline, "The extension was not deployed");
+			Thread.sleep(20);
+		}
+
+		props.put(JerseyConstants.JERSEY_THREADS_QUEUE_SIZE, 100);
+		component.modified(props);
+		HttpResponse<String> response = send(base(props), "hello");
+		assertEquals("hello", response.body());
+		assertEquals("filtered", response.headers().firstValue(TestFilter.HEADER).orElse(null));
+	}
+
+	/**
+	 * Applications deployed by the runtime while the server is replaced are served by the new server
+	 */
+	@Test
+	public void testDeployWhileReplacingServer() throws Exception {
+		Map<String, Object> props = properties(freePort());
+		activate(props);
+
+		for (int i = 0; i < 5; i++) {
+			registerApplication("app" + i, 200L + i);
+			if (i % 2 == 0) {
+				props.put(JerseyConstants.JERSEY_THREADS_QUEUE_SIZE, 100);
+			} else {
+				props.remove(JerseyConstants.JERSEY_THREADS_QUEUE_SIZE);
+			}
+			component.modified(props);
+		}
+		for (int i = 0; i < 5; i++) {
+			long deadline = System.currentTimeMillis() + 10000;
+			while (send(base(props), "app" + i + "/hello").statusCode() != 200) {
+				assertTrue(System.currentTimeMillis() < deadline, "The application app" + i + " is not served");
+				Thread.sleep(20);
+			}
+		}
+		assertEquals("hello", get(base(props), "hello"));
+	}
+
+	/**
+	 * A port that cannot be bound keeps the endpoint on its old connector, and the same configuration can be retried
+	 */
+	@Test
+	public void testBindFailure() throws Exception {
+		int oldPort = freePort();
+		Map<String, Object> props = properties(oldPort);
+		activate(props);
+
+		Map<String, Object> oldProps = new HashMap<>(props);
+		try (ServerSocket blocked = new ServerSocket(0)) {
+			props.put(JerseyConstants.JERSEY_PORT, blocked.getLocalPort());
+			component.modified(props);
+			assertEquals("hello", get(base(oldProps), "hello"));
+			assertEndpoint(oldPort);
+		}
+		component.modified(props);
+		assertEquals("hello", get(base(props), "hello"));
+		assertEndpoint((Integer) props.get(JerseyConstants.JERSEY_PORT));
+	}
+
+	/**
+	 * Moving the port and context path, and adding and removing endpoints, lets the requests in flight complete 
+	 * on the retired connectors, without blocking the configuration update
+	 */
+	@Test
+	public void testReconfigureWithRequestInFlight() throws Exception {
+		Map<String, Object> props = properties(0);
+		props.put(JerseyConstants.JERSEY_CONTEXT_DRAIN_TIMEOUT, 10000);
+		String base = activate(props);
+		assertFalse(base.contains(":0/"), base);
+
+		CompletableFuture<HttpResponse<String>> inFlight = sendAsync(base, "slow");
+		assertTrue(entered.await(5, TimeUnit.SECONDS));
+		props.put(JerseyConstants.JERSEY_PORT, freePort());
+		props.put(JerseyConstants.JERSEY_CONTEXT_PATH, "/api");
+		props.put(JerseyConstants.JERSEY_ENDPOINTS, "admin");
+		props.put(JerseyConstants.JERSEY_ENDPOINT_PREFIX + "admin.port", 0);
+		long start = System.nanoTime();
+		component.modified(props);
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000, "The update waited for the connector to drain");
+		assertEquals("hello", get(base(props), "hello"));
+		String[] endpoints = awaitEndpoints(2);
+		assertTrue(endpoints[0].endsWith(":" + props.get(JerseyConstants.JERSEY_PORT) + "/api/"), endpoints[0]);
+		String admin = endpoints[1];
+		assertFalse(admin.contains(":0/"), admin);
+		assertEquals("hello", get(admin, "hello"));
+
+		release.countDown();
+		HttpResponse<String> response = inFlight.get(10, TimeUnit.SECONDS);
+		assertEquals(200, response.statusCode());
+		assertEquals("slow", response.body());
+
+		// Removing an endpoint and moving the path back completes the request in flight on the removed endpoint
+		release = new CountDownLatch(1);
+		entered = new CountDownLatch(1);
+		inFlight = sendAsync(admin, "slow");
+		assertTrue(entered.await(5, TimeUnit.SECONDS));
+		props.remove(JerseyConstants.JERSEY_ENDPOINTS);
+		props.put(JerseyConstants.JERSEY_CONTEXT_PATH, "/rest");
+		component.modified(props);
+		assertEquals("hello", get(base(props), "hello"));
+		awaitEndpoints(1);
+
+		release.countDown();
+		response = inFlight.get(10, TimeUnit.SECONDS);
+		assertEquals(200, response.statusCode());
+		assertEquals("slow", response.body());
+	}
+
+	/**
+	 * One server serves the same applications on two endpoints at the same time, also when the second one is added later
+	 */
+	@Test
+	public void testConcurrentEndpoints() throws Exception {
+		Map<String, Object> props = properties(freePort());
+		activate(props);
+		props.put(JerseyConstants.JERSEY_ENDPOINTS, "admin");
+		props.put(JerseyConstants.JERSEY_ENDPOINT_PREFIX + "admin.port", freePort());
+		component.modified(props);
+		String[] endpoints = awaitEndpoints(2);
+
+		CompletableFuture<HttpResponse<String>> inFlight = sendAsync(endpoints[1], "slow");
+		assertTrue(entered.await(5, TimeUnit.SECONDS));
+		List<CompletableFuture<HttpResponse<String>>> requests = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			requests.add(sendAsync(endpoints[i % 2], "hello"));
+		}
+		for (CompletableFuture<HttpResponse<String>> request : requests) {
+			HttpResponse<String> response = request.get(10, TimeUnit.SECONDS);
+			assertEquals(200, response.statusCode(), response.uri().toString());
+			assertEquals("hello", response.body());
+		}
+		assertFalse(inFlight.isDone());
+
+		release.countDown();
+		assertEquals("slow", inFlight.get(10, TimeUnit.SECONDS).body());
+	}
+
+	/**
+	 * Moving the context path serves the new path right away, and completes the requests in flight on the old one, 
+	 * which is retired afterwards
+	 */
+	@Test
+	public void testContextPathChange() throws Exception {
+		Map<String, Object> props = properties(freePort());
+		props.put(JerseyConstants.JERSEY_CONTEXT_DRAIN_TIMEOUT, 10000);
+		activate(props);
+		Map<String, Object> oldProps = new HashMap<>(props);
+
+		CompletableFuture<HttpResponse<String>> inFlight = sendAsync(base(oldProps), "slow");
+		assertTrue(entered.await(5, TimeUnit.SECONDS));
+		props.put(JerseyConstants.JERSEY_CONTEXT_PATH, "/api");
+		component.modified(props);
+		assertEquals("hello", get(base(props), "hello"));
+		assertEquals(404, send(base(oldProps), "hello").statusCode());
+
+		release.countDown();
+		HttpResponse<String> response = inFlight.get(10, TimeUnit.SECONDS);
+		assertEquals(200, response.statusCode());
+		assertEquals("slow", response.body());
+		assertEquals("hello", get(base(props), "hello"));
+
+		// The container is kept by the new context, also when the old one is stopped
+		release = new CountDownLatch(1);
+		entered = new CountDownLatch(1);
+		inFlight = sendAsync(base(props), "slow");
+		assertTrue(entered.await(5, TimeUnit.SECONDS));
+		release.countDown();
+		assertEquals("slow", inFlight.get(10, TimeUnit.SECONDS).body());
+	}
+
+	/**
+	 * Asserts the advertised endpoint, once the runtime has updated its properties
+	 */
+	private void assertEndpoint(int port) throws InterruptedException {
+		String expected = ":" + port + "/rest/";
+		long deadline = System.currentTimeMillis() + 5000;
+		String[] endpoints;
+		while (!(endpoints = (String[]) runtimeProperties.get(JAKARTA_RS_SERVICE_ENDPOINT))[0].endsWith(expected)
+				&& System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		assertEquals(1, endpoints.length);
+		assertTrue(endpoints[0].endsWith(expected), endpoints[0]);
+	}
+
+	/**
+	 * The statistics of the connectors and the dropped requests are published as MBeans, also after the server was replaced
+	 */
+	@Test
+	public void testMBeans() throws Exception {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		String domain = JettyBackedWhiteboardComponent.JMX_DOMAIN + ".42";
+		Map<String, Object> props = properties(freePort());
+		props.put(ComponentConstants.COMPONENT_ID, 42L);
+		props.put(JerseyConstants.JERSEY_SHUTDOWN_TIMEOUT, 100);
+		props.put(JerseyConstants.JERSEY_CONTEXT_DRAIN_TIMEOUT, 100);
+		activate(props);
+
+		ObjectName statistics = findMBean(server, domain + ":type=connectionstatistics,*");
+		assertTrue((Long) server.getAttribute(statistics, "connectionsTotal") > 0);
+		ObjectName whiteboard = findMBean(server, domain + ":type=jettybackedwhiteboardcomponent,*");
+		assertEquals(0L, server.getAttribute(whiteboard, "droppedRequestCount"));
+
+		// Replacing the server drops the request that is still in flight after the shutdown timeout
+		sendAsync(base(props), "slow");
+		assertTrue(entered.await(5, TimeUnit.SECONDS));
+		props.put(JerseyConstants.JERSEY_THREADS_QUEUE_SIZE, 100);
+		component.modified(props);
+		assertEquals("hello", get(base(props), "hello"));
+		whiteboard = findMBean(server, domain + ":type=jettybackedwhiteboardcomponent,*");
+		assertEquals(1L, server.getAttribute(whiteboard, "droppedRequestCount"));
+
+		props.put(JerseyConstants.JERSEY_JMX, "false");
+		component.modified(props);
+		assertTrue(server.queryNames(new ObjectName(domain + ":*"), null).isEmpty());
+		props.put(JerseyConstants.JERSEY_JMX, "true");
+		component.modified(props);
+		findMBean(server, domain + ":type=connectionstatistics,*");
+
+		component.deactivate(null);
+		component = null;
+		assertTrue(server.queryNames(new ObjectName(domain + ":*"), null).isEmpty());
+	}
+
+	private static ObjectName findMBean(MBeanServer server, String pattern) throws Exception {
+		Set<ObjectName> names = server.queryNames(new ObjectName(pattern), null);
+		assertEquals(1, names.size(), "Unexpected MBeans " + names);
+		return names.iterator().next();
+	}
+
+	private Map<String, Object> properties(int port) {
+		Map<String, Object> props = new HashMap<>();
+		props.put(JerseyConstants.JERSEY_PORT, port);
+		props.put(JerseyConstants.JERSEY_CONTEXT_PATH, "/rest");
+		return props;
+	}
+
+	/**
+	 * Activates the component and registers the test resource, once the whiteboard is started
+	 * @return the advertised uri of the default endpoint
+	 */
+	private String activate(Map<String, Object> props) throws Exception {
+		return activate(props, client);
+	}
+
+	private String activate(Map<String, Object> props, HttpClient client) throws Exception {
+		component = new JettyBackedWhiteboardComponent();
+		component.activate(context, props);
+		registerResource();
+		String base = awaitEndpoints(1)[0];
+		long deadline = System.currentTimeMillis() + 10000;
+		while (client.send(request(base, "hello"), BodyHandlers.ofString()).statusCode() != 200) {
+			assertTrue(System.currentTimeMillis() < deadline, "The resource was not deployed");
+			Thread.sleep(20);
+		}
+		return base;
+	}
+
+	/**
+	 * Waits until the runtime advertises the given number of endpoints
+	 */
+	private String[] awaitEndpoints(int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		String[] endpoints;
+		while (((endpoints = (String[]) runtimeProperties.get(JAKARTA_RS_SERVICE_ENDPOINT)) == null 
+				|| endpoints.length != count) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(20);
+		}
+		assertEquals(count, endpoints == null ? 0 : endpoints.length);
+		return endpoints;
+	}
+
+	private void registerResource() {
+		Map<String, Object> props = new HashMap<>();
+		props.put(OBJECTCLASS, new String[] { TestResource.class.getName() });
+		props.put(JAKARTA_RS_NAME, "test");
+		props.put(JAKARTA_RS_RESOURCE, Boolean.TRUE);
+		props.put(SERVICE_ID, 100L);
+		registerService(props, TestResource::new);
+	}
+
+	private void registerExtension() {
+		Map<String, Object> props = new HashMap<>();
+		props.put(OBJECTCLASS, new String[] { ContainerResponseFilter.class.getName() });
+		props.put(JAKARTA_RS_NAME, "filter");
+		props.put(JAKARTA_RS_EXTENSION, Boolean.TRUE);
+		props.put(SERVICE_ID, 101L);
+		registerService(props, TestFilter::new);
+	}
+
+	private void registerApplication(String name, long serviceId) {
+		Map<String, Object> props = new HashMap<>();
+		props.put(OBJECTCLASS, new String[] { Application.class.getName() });
+		props.put(JAKARTA_RS_NAME, name);
+		props.put(JAKARTA_RS_APPLICATION_BASE, "/" + name);
+		props.put(SERVICE_ID, serviceId);
+		registerService(props, TestApplication::new);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void registerService(Map<String, Object> props, Supplier<Object> service) {
+		// The extension proxies are defined in the class loader of the bundle providing the service
+		BundleWiring wiring = mock(BundleWiring.class);
+		when(wiring.getClassLoader()).thenReturn(getClass().getClassLoader());
+		Bundle bundle = mock(Bundle.class);
+		when(bundle.adapt(BundleWiring.class)).thenReturn(wiring);
+		ServiceReference<Object> ref = mock(ServiceReference.class);
+		when(ref.getBundle()).thenReturn(bundle);
+		when(ref.getProperty(anyString())).thenAnswer(i -> props.get(i.getArgument(0)));
+		when(ref.getPropertyKeys()).thenAnswer(i -> props.keySet().toArray(String[]::new));
+		ServiceObjects<Object> so = mock(ServiceObjects.class);
+		when(so.getService()).thenAnswer(i -> service.get());
+		when(so.getServiceReference()).thenReturn(ref);
+		when(context.getServiceObjects(ref)).thenReturn(so);
+		when(context.getService(ref)).thenAnswer(i -> service.get());
+
+		ServiceEvent event = new ServiceEvent(ServiceEvent.REGISTERED, ref);
+		listeners.forEach((listener, filter) -> {
+			if (filter.match(ref)) {
+				listener.serviceChanged(event);
+			}
+		});
+	}
+
+	private void setRuntimeProperties(Dictionary<String, Object> props) {
+		synchronized (runtimeProperties) {
+			runtimeProperties.clear();
+			Collections.list(props.keys()).forEach(k -> runtimeProperties.put(k, props.get(k)));
+			runtimeProperties.put(SERVICE_ID, 1L);
+		}
+	}
+
+	private String get(String base, String path) throws Exception {
+		HttpResponse<String> response = send(base, path);
+		assertEquals(200, response.statusCode(), "Unexpected status of " + base + path);
+		return response.body();
+	}
+
+	private HttpResponse<String> send(String base, String path) throws Exception {
+		return client.send(request(base, path), BodyHandlers.ofString());
+	}
+
+	private CompletableFuture<HttpResponse<String>> sendAsync(String base, String path) {
+		return client.sendAsync(request(base, path), BodyHandlers.ofString());
+	}
+
+	private HttpRequest request(String base, String path) {
+		return HttpRequest.newBuilder(URI.create(base + path)).timeout(Duration.ofSeconds(10)).build();
+	}
+
+	private static String base(Map<String, Object> props) {
+		return "http://localhost:" + props.get(JerseyConstants.JERSEY_PORT) + props.get(JerseyConstants.JERSEY_CONTEXT_PATH) + "/";
+	}
+
+	private static int freePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+
+	@Path("/")
+	public static class TestResource {
+
+		@GET
+		@Path("hello")
+		public String hello() {
+			return "hello";
+		}
+
+		@GET
+		@Path("slow")
+		public String slow() throws InterruptedException {
+			entered.countDown();
+			release.await(10, TimeUnit.SECONDS);
+			return "slow";
+		}
+	}
+
+	public static class TestApplication extends Application {
+
+		@Override
+		public Set<Class<?>> getClasses() {
+			return Set.of(TestResource.class);
+		}
+	}
+
+	public static class TestFilter implements ContainerResponseFilter {
+
+		static final String HEADER = "X-Test";
+
+		@Override
+		public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+			responseContext.getHeaders().add(HEADER, "filtered");
+		}
+	}
+}
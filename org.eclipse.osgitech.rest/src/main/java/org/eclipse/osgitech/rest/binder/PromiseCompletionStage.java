@@ -0,0 +1,294 @@
+/**
+ * Copyright (c) 2012 - 2022 Data In Motion and others.
+ * All rights reserved. 
+ * 
+ * This program and the accompanying materials are made available under the terms of the 
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * Contributors:
+ *     Tim Ward - initial implementation
+ */
+package org.eclipse.osgitech.rest.binder;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.eclipse.osgitech.rest.binder.PromiseResourceMethodInvocationHandlerProvider.PromiseResourceMethodInvocationHandler;
+
+/**
+ * The result of a resource method returning an unresolved promise. Jersey first asks for a
+ * {@link #toCompletableFuture() CompletableFuture}, which is not supported, and then suspends the request and
+ * registers a completion callback with {@link #whenComplete(BiConsumer)}. The callback is called directly from
+ * the resolution callback of the promise, so no future is created to wait for the promise, unless one of the
+ * other stage operations is used.
+ * @since 1.2
+ */
+final class PromiseCompletionStage implements CompletionStage<Object> {
+
+	private final Object promise;
+	private final PromiseResourceMethodInvocationHandler handler;
+	
+	/** The future backing the other stage operations, created on demand. Protected by synchronizing on this */
+	private CompletableFuture<Object> future;
+
+	PromiseCompletionStage(Object promise, PromiseResourceMethodInvocationHandler handler) {
+		this.promise = promise;
+		this.handler = handler;
+	}
+
+	/**
+	 * Calls the action from the resolution callback of the promise. The returned stage is completed
+	 * afterwards, with the result of the promise, or with the failure of the action if the promise
+	 * resolved successfully
+	 */
+	@Override
+	public CompletionStage<Object> whenComplete(BiConsumer<? super Object, ? super Throwable> action) {
+		CompletableFuture<Object> dependent = new CompletableFuture<>();
+		handler.onResolve(promise, (v, t) -> {
+			try {
+				action.accept(v, t);
+			} catch (Throwable e) {
+				if (t == null) {
+					dependent.completeExceptionally(e);
+					return;
+				}
+				t.addSuppressed(e);
+			}
+			if (t != null) {
+				dependent.completeExceptionally(t);
+			} else {
+				dependent.complete(v);
+			}
+		});
+		return dependent;
+	}
+
+	/**
+	 * Not supported, so that Jersey does not create a future for each unresolved promise but
+	 * registers its callback with {@link #whenComplete(BiConsumer)} instead
+	 * @throws UnsupportedOperationException always
+	 */
+	@Override
+	public CompletableFuture<Object> toCompletableFuture() {
+		throw new UnsupportedOperationException("Use whenComplete to await the promise");
+	}
+
+	/**
+	 * Returns the future backing the other stage operations
+	 */
+	private synchronized CompletableFuture<Object> future() {
+		if (future == null) {
+			CompletableFuture<Object> f = new CompletableFuture<>();
+			handler.onResolve(promise, (v, t) -> {
+				if (t != null) {
+					f.completeExceptionally(t);
+				} else {
+					f.complete(v);
+				}
+			});
+			future = f;
+		}
+		return future;
+	}
+
+	@Override
+	public <U> CompletionStage<U> thenApply(Function<? super Object, ? extends U> fn) {
+		return future().thenApply(fn);
+	}
+
+	@Override
+	public <U> CompletionStage<U> thenApplyAsync(Function<? super Object, ? extends U> fn) {
+		return future().thenApplyAsync(fn);
+	}
+
+	@Override
+	public <U> CompletionStage<U> thenApplyAsync(Function<? super Object, ? extends U> fn, Executor executor) {
+		return future().thenApplyAsync(fn, executor);
+	}
+
+	@Override
+	public CompletionStage<Void> thenAccept(Consumer<? super Object> action) {
+		return future().thenAccept(action);
+	}
+
+	@Override
+	public CompletionStage<Void> thenAcceptAsync(Consumer<? super Object> action) {
+		return future().thenAcceptAsync(action);
+	}
+
+	@Override
+	public CompletionStage<Void> thenAcceptAsync(Consumer<? super Object> action, Executor executor) {
+		return future().thenAcceptAsync(action, executor);
+	}
+
+	@Override
+	public CompletionStage<Void> thenRun(Runnable action) {
+		return future().thenRun(action);
+	}
+
+	@Override
+	public CompletionStage<Void> thenRunAsync(Runnable action) {
+		return future().thenRunAsync(action);
+	}
+
+	@Override
+	public CompletionStage<Void> thenRunAsync(Runnable action, Executor executor) {
+		return future().thenRunAsync(action, executor);
+	}
+
+	@Override
+	public <U, V> CompletionStage<V> thenCombine(CompletionStage<? extends U> other,
+			BiFunction<? super Object, ? super U, ? extends V> fn) {
+		return future().thenCombine(other, fn);
+	}
+
+	@Override
+	public <U, V> CompletionStage<V> thenCombineAsync(CompletionStage<? extends U> other,
+			BiFunction<? super Object, ? super U, ? extends V> fn) {
+		return future().thenCombineAsync(other, fn);
+	}
+
+	@Override
+	public <U, V> CompletionStage<V> thenCombineAsync(CompletionStage<? extends U> other,
+			BiFunction<? super Object, ? super U, ? extends V> fn, Executor executor) {
+		return future().thenCombineAsync(other, fn, executor);
+	}
+
+	@Override
+	public <U> CompletionStage<Void> thenAcceptBoth(CompletionStage<? extends U> other,
+			BiConsumer<? super Object, ? super U> action) {
+		return future().thenAcceptBoth(other, action);
+	}
+
+	@Override
+	public <U> CompletionStage<Void> thenAcceptBothAsync(CompletionStage<? extends U> other,
+			BiConsumer<? super Object, ? super U> action) {
+		return future().thenAcceptBothAsync(other, action);
+	}
+
+	@Override
+	public <U> CompletionStage<Void> thenAcceptBothAsync(CompletionStage<? extends U> other,
+			BiConsumer<? super Object, ? super U> action, Executor executor) {
+		return future().thenAcceptBothAsync(other, action, executor);
+	}
+
+	@Override
+	public CompletionStage<Void> runAfterBoth(CompletionStage<?> other, Runnable action) {
+		return future().runAfterBoth(other, action);
+	}
+
+	@Override
+	public CompletionStage<Void> runAfterBothAsync(CompletionStage<?> other, Runnable action) {
+		return future().runAfterBothAsync(other, action);
+	}
+
+	@Override
+	public CompletionStage<Void> runAfterBothAsync(CompletionStage<?> other, Runnable action, Executor executor) {
+		return future().runAfterBothAsync(other, action, executor);
+	}
+
+	@Override
+	public <U> CompletionStage<U> applyToEither(CompletionStage<? extends Object> other,
+			Function<? super Object, U> fn) {
+		return future().applyToEither(other, fn);
+	}
+
+	@Override
+	public <U> CompletionStage<U> applyToEitherAsync(CompletionStage<? extends Object> other,
+			Function<? super Object, U> fn) {
+		return future().applyToEitherAsync(other, fn);
+	}
+
+	@Override
+	public <U> CompletionStage<U> applyToEitherAsync(CompletionStage<? extends Object> other,
+			Function<? super Object, U> fn, Executor executor) {
+		return future().applyToEitherAsync(other, fn, executor);
+	}
+
+	@Override
+	public CompletionStage<Void> acceptEither(CompletionStage<? extends Object> other,
+			Consumer<? super Object> action) {
+		return future().acceptEither(other, action);
+	}
+
+	@Override
+	public CompletionStage<Void> acceptEitherAsync(CompletionStage<? extends Object> other,
+			Consumer<? super Object> action) {
+		return future().acceptEitherAsync(other, action);
+	}
+
+	@Override
+	public CompletionStage<Void> acceptEitherAsync(CompletionStage<? extends Object> other,
+			Consumer<? super Object> action, Executor executor) {
+		return future().acceptEitherAsync(other, action, executor);
+	}
+
+	@Override
+	public CompletionStage<Void> runAfterEither(CompletionStage<?> other, Runnable action) {
+		return future().runAfterEither(other, action);
+	}
+
+	@Override
+	public CompletionStage<Void> runAfterEitherAsync(CompletionStage<?> other, Runnable action) {
+		return future().runAfterEitherAsync(other, action);
+	}
+
+	@Override
+	public CompletionStage<Void> runAfterEitherAsync(CompletionStage<?> other, Runnable action, Executor executor) {
+		return future().runAfterEitherAsync(other, action, executor);
+	}
+
+	@Override
+	public <U> CompletionStage<U> thenCompose(Function<? super Object, ? extends CompletionStage<U>> fn) {
+		return future().thenCompose(fn);
+	}
+
+	@Override
+	public <U> CompletionStage<U> thenComposeAsync(Function<? super Object, ? extends CompletionStage<U>> fn) {
+		return future().thenComposeAsync(fn);
+	}
+
+	@Override
+	public <U> CompletionStage<U> thenComposeAsync(Function<? super Object, ? extends CompletionStage<U>> fn,
+			Executor executor) {
+		return future().thenComposeAsync(fn, executor);
+	}
+
+	@Override
+	public <U> CompletionStage<U> handle(BiFunction<? super Object, Throwable, ? extends U> fn) {
+		return future().handle(fn);
+	}
+
+	@Override
+	public <U> CompletionStage<U> handleAsync(BiFunction<? super Object, Throwable, ? extends U> fn) {
+		return future().handleAsync(fn);
+	}
+
+	@Override
+	public <U> CompletionStage<U> handleAsync(BiFunction<? super Object, Throwable, ? extends U> fn,
+			Executor executor) {
+		return future().handleAsync(fn, executor);
+	}
+
+	@Override
+	public CompletionStage<Object> whenCompleteAsync(BiConsumer<? super Object, ? super Throwable> action) {
+		return future().whenCompleteAsync(action);
+	}
+
+	@Override
+	public CompletionStage<Object> whenCompleteAsync(BiConsumer<? super Object, ? super Throwable> action,
+			Executor executor) {
+		return future().whenCompleteAsync(action, executor);
+	}
+
+	@Override
+	public CompletionStage<Object> exceptionally(Function<Throwable, ? extends Object> fn) {
+		return future().exceptionally(fn);
+	}
+}
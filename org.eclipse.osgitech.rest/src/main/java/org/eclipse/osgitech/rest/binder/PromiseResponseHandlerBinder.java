@@ -11,17 +11,22 @@
  */
 package org.eclipse.osgitech.rest.binder;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
 
 import org.glassfish.hk2.utilities.binding.AbstractBinder;
 import org.glassfish.jersey.server.model.Invocable;
 import org.glassfish.jersey.server.spi.internal.ResourceMethodInvocationHandlerProvider;
 
+import jakarta.ws.rs.ServiceUnavailableException;
+
 /**
  * OSGi injection binder for HK2, that is used in Jersey. This binder is responsible for
  * the creation of a handler for promise return values
@@ -29,13 +34,31 @@ import org.glassfish.jersey.server.spi.internal.ResourceMethodInvocationHandlerP
  * @since 12.04.2022
  */
 public class PromiseResponseHandlerBinder extends AbstractBinder {
+	
+	private final long timeout;
+
+	/**
+	 * Creates a binder for handlers waiting indefinitely for unresolved promises
+	 */
+	public PromiseResponseHandlerBinder() {
+		this(0);
+	}
+	
+	/**
+	 * Creates a binder for handlers failing requests with <code>503 Service Unavailable</code>
+	 * if a promise is not resolved in time
+	 * @param timeout the milliseconds to wait for an unresolved promise, 0 to wait indefinitely
+	 */
+	public PromiseResponseHandlerBinder(long timeout) {
+		this.timeout = timeout;
+	}
 
 	/* (non-Javadoc)
 	 * @see org.glassfish.hk2.utilities.binding.AbstractBinder#configure()
 	 */
 	@Override
 	protected void configure() {
-		bind(new PromiseResourceMethodInvocationHandlerProvider())
+		bind(new PromiseResourceMethodInvocationHandlerProvider(timeout))
 			.to(ResourceMethodInvocationHandlerProvider.class);
 	}
 }
@@ -43,6 +66,11 @@ public class PromiseResponseHandlerBinder extends AbstractBinder {
 class PromiseResourceMethodInvocationHandlerProvider implements ResourceMethodInvocationHandlerProvider {
 
 	private final Map<Class<?>, InvocationHandler> cachedHandlers = new ConcurrentHashMap<>();
+	private final long timeout;
+	
+	PromiseResourceMethodInvocationHandlerProvider(long timeout) {
+		this.timeout = timeout;
+	}
 	
 	/* 
 	 * (non-Javadoc)
@@ -52,33 +80,61 @@ class PromiseResourceMethodInvocationHandlerProvider implements ResourceMethodIn
 	public InvocationHandler create(Invocable method) {
 		Class<?> rawResponseType = method.getRawResponseType();
 		if("org.osgi.util.promise.Promise".equals(rawResponseType.getName())) {
-			return cachedHandlers.computeIfAbsent(rawResponseType, PromiseResourceMethodInvocationHandler::new);
+			return cachedHandlers.computeIfAbsent(rawResponseType, c -> new PromiseResourceMethodInvocationHandler(c, timeout));
 		}
 		return null;
 	}
 
 	
+	/**
+	 * Handles resource methods returning a promise. The promise class may come from any bundle, so
+	 * its methods are looked up once per class and bound as method handles for use on every request.
+	 * Promises that are already resolved are answered synchronously. For unresolved promises Jersey
+	 * suspends the request, and resumes it directly from the resolution callback of the promise.
+	 */
 	static class PromiseResourceMethodInvocationHandler implements InvocationHandler {
 		
+		private static final String TIMEOUT_EXCEPTION = "org.osgi.util.promise.TimeoutException";
+		
+		private static final MethodType IS_DONE_TYPE = MethodType.methodType(boolean.class, Object.class);
+		private static final MethodType GET_FAILURE_TYPE = MethodType.methodType(Throwable.class, Object.class);
+		private static final MethodType GET_VALUE_TYPE = MethodType.methodType(Object.class, Object.class);
+		private static final MethodType REGISTER_TYPE = MethodType.methodType(void.class, Object.class, Runnable.class);
+		private static final MethodType TIMEOUT_TYPE = MethodType.methodType(Object.class, Object.class, long.class);
+		
 		private final Class<?> promiseClass;
+		private final long timeout;
 
-		private final Method register;
-		private final Method getFailure;
-		private final Method getValue;
-		private final Method isDone;
+		private final MethodHandle register;
+		private final MethodHandle getFailure;
+		private final MethodHandle getValue;
+		private final MethodHandle isDone;
+		private final MethodHandle withTimeout;
 		
 		/**
-		 * Creates a new handler for this promise type.
-		 * @throws SecurityException 
-		 * @throws NoSuchMethodException 
+		 * Creates a new handler for this promise type, waiting indefinitely for unresolved promises.
+		 * @param promiseClass the promise type returned by the resource methods
 		 */
 		public PromiseResourceMethodInvocationHandler(Class<?> promiseClass) {
+			this(promiseClass, 0);
+		}
+		
+		/**
+		 * Creates a new handler for this promise type.
+		 * @param promiseClass the promise type returned by the resource methods
+		 * @param timeout the milliseconds to wait for an unresolved promise, 0 to wait indefinitely
+		 */
+		public PromiseResourceMethodInvocationHandler(Class<?> promiseClass, long timeout) {
 			this.promiseClass = promiseClass;
+			this.timeout = timeout;
 			try {
-				register = promiseClass.getMethod("onResolve", Runnable.class);
-				getFailure = promiseClass.getMethod("getFailure");
-				getValue = promiseClass.getMethod("getValue");
-				isDone = promiseClass.getMethod("isDone");
+				Lookup lookup = MethodHandles.publicLookup();
+				register = lookup.unreflect(promiseClass.getMethod("onResolve", Runnable.class)).asType(REGISTER_TYPE);
+				getFailure = lookup.unreflect(promiseClass.getMethod("getFailure")).asType(GET_FAILURE_TYPE);
+				getValue = lookup.unreflect(promiseClass.getMethod("getValue")).asType(GET_VALUE_TYPE);
+				isDone = lookup.unreflect(promiseClass.getMethod("isDone")).asType(IS_DONE_TYPE);
+				withTimeout = timeout > 0 ? 
+						lookup.unreflect(promiseClass.getMethod("timeout", long.class)).asType(TIMEOUT_TYPE) : null;
 			} catch (Exception e) {
 				throw new RuntimeException("Failed to set up InvocationHandler for Class " + promiseClass, e);
 			}
@@ -94,15 +150,18 @@ class PromiseResourceMethodInvocationHandlerProvider implements ResourceMethodIn
 			if(result != null) {
 				if(promiseClass.isInstance(result)) {
 					
-					if((Boolean) isDone.invoke(result)) {
-						Throwable t = (Throwable) getFailure.invoke(result);
+					if((boolean) isDone.invokeExact(result)) {
+						Throwable t = (Throwable) getFailure.invokeExact(result);
 						if(t != null) {
 							throw t;
 						} else {
-							result = getValue.invoke(t);
+							result = (Object) getValue.invokeExact(result);
 						}
 					} else {
-						result = handleAsync(result);
+						if(withTimeout != null) {
+							result = (Object) withTimeout.invokeExact(result, timeout);
+						}
+						result = new PromiseCompletionStage(result, this);
 					}
 					
 				} else {
@@ -113,25 +172,30 @@ class PromiseResourceMethodInvocationHandlerProvider implements ResourceMethodIn
 		}
 
 		/**
-		 * @param result
-		 * @throws IllegalAccessException
-		 * @throws InvocationTargetException
+		 * Calls the callback with the value or the failure of the promise, once it is resolved
+		 * @param promise the promise
+		 * @param callback the callback to call from the resolution callback of the promise
 		 */
-		private CompletableFuture<Object> handleAsync(Object promise) throws IllegalAccessException, InvocationTargetException {
-			final CompletableFuture<Object> resultAsFuture = new CompletableFuture<>();
-			register.invoke(promise, (Runnable) () -> {
-				try {
-					Throwable t = (Throwable) getFailure.invoke(promise);
-					if(t != null) {
-						resultAsFuture.completeExceptionally(t);
-					} else {
-						resultAsFuture.complete(getValue.invoke(promise));
+		void onResolve(Object promise, BiConsumer<? super Object, ? super Throwable> callback) {
+			try {
+				register.invokeExact(promise, (Runnable) () -> {
+					Object value = null;
+					Throwable failure;
+					try {
+						failure = (Throwable) getFailure.invokeExact(promise);
+						if(failure == null) {
+							value = (Object) getValue.invokeExact(promise);
+						} else if(withTimeout != null && TIMEOUT_EXCEPTION.equals(failure.getClass().getName())) {
+							failure = new ServiceUnavailableException();
+						}
+					} catch (Throwable e) {
+						failure = e;
 					}
-				} catch (Exception e) {
-					resultAsFuture.completeExceptionally(e);
-				}
-			});
-			return resultAsFuture;
+					callback.accept(value, failure);
+				});
+			} catch (Throwable e) {
+				callback.accept(null, e);
+			}
 		}
 	}
 }
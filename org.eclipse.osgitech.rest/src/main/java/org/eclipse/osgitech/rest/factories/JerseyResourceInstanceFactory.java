@@ -13,10 +13,17 @@
  */
 package org.eclipse.osgitech.rest.factories;
 
-import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.eclipse.osgitech.rest.binder.PrototypeServiceBinder;
+import org.eclipse.osgitech.rest.provider.JerseyConstants;
+import org.eclipse.osgitech.rest.provider.PooledResource;
 import org.eclipse.osgitech.rest.runtime.application.JerseyApplicationContentProvider;
 import org.glassfish.jersey.internal.inject.InjectionManager;
 import org.osgi.framework.ServiceObjects;
@@ -24,17 +31,31 @@ import org.osgi.framework.ServiceObjects;
 /**
  * HK2 creation factory for Jakartars resource instance. These factory instances will be bound using the {@link PrototypeServiceBinder}.
  * The factory is responsible to create or releasing a certain Jakartars resource instances, at request time.
+ * If the resource service has the {@link JerseyConstants#JERSEY_PROTOTYPE_POOL_SIZE} property, released
+ * instances are kept in a bounded pool and reused by later requests. Instances implementing {@link PooledResource}
+ * are reset before they are returned to the pool.
  * @param <T> the type of the resource, which is the class type
  * @author Mark Hoffmann
  * @since 12.07.2017
  */
 public class JerseyResourceInstanceFactory<T> implements InjectableFactory<T> {
 
-	private volatile Set<Object> instanceCache = new HashSet<>();
+	/** 
+	 * The instances handed out to requests, tracked by identity. Whoever removes an instance from 
+	 * this set owns it and is responsible for releasing it, so each instance is released exactly once 
+	 */
+	private final Set<Instance> instanceCache = ConcurrentHashMap.newKeySet();
 	private JerseyApplicationContentProvider provider;
 	private ServiceObjects<Object> serviceObjects;
 	private InjectionManager injectionManager;
 	
+	private static final Logger logger = Logger.getLogger("jersey.resourceFactory");
+	/** The idle instances, or <code>null</code> if pooling is disabled. Used last in, first out */
+	private final BlockingDeque<Object> pool;
+	private final LongAdder poolHits = new LongAdder();
+	private final LongAdder poolMisses = new LongAdder();
+	private volatile boolean disposed;
+	
 	/**
 	 * Creates a new instance. A service reference will be cached lazily, on the first request
 	 * @param clazz the resource class
@@ -42,6 +63,22 @@ public class JerseyResourceInstanceFactory<T> implements InjectableFactory<T> {
 	public JerseyResourceInstanceFactory(JerseyApplicationContentProvider provider) {
 		this.provider = provider;
 		serviceObjects = provider.getProviderObject();
+		int poolSize = getPoolSize(provider);
+		pool = poolSize > 0 ? new LinkedBlockingDeque<>(poolSize) : null;
+	}
+	
+	private static int getPoolSize(JerseyApplicationContentProvider provider) {
+		Object value = provider.getProviderProperties().get(JerseyConstants.JERSEY_PROTOTYPE_POOL_SIZE);
+		if (value == null || provider.isSingleton()) {
+			return 0;
+		}
+		try {
+			return Math.max(0, value instanceof Number ? ((Number) value).intValue() : Integer.parseInt(value.toString().trim()));
+		} catch (NumberFormatException e) {
+			logger.log(Level.WARNING, "The value " + value + " of the property " + JerseyConstants.JERSEY_PROTOTYPE_POOL_SIZE + 
+					" of the resource " + provider.getId() + " is not a valid number, pooling is disabled");
+			return 0;
+		}
 	}
 
 	/* (non-Javadoc)
@@ -63,16 +100,22 @@ public class JerseyResourceInstanceFactory<T> implements InjectableFactory<T> {
 			if (serviceObjects == null) {
 				return null;
 			}
-			Object instance = serviceObjects.getService();
-			if(instance == null) {
-				return null;
+			Object instance = pool == null ? null : pool.pollFirst();
+			if (instance != null) {
+				poolHits.increment();
+			} else {
+				if (pool != null) {
+					poolMisses.increment();
+				}
+				instance = serviceObjects.getService();
+				if(instance == null) {
+					return null;
+				}
 			}
 			if(injectionManager != null) {
 				injectionManager.inject(instance);
 			}
-			synchronized (instanceCache) {
-				instanceCache.add(instance);
-			}
+			instanceCache.add(new Instance(instance));
 			return (T)instance;
 		} catch (Exception e) {
 			if (e instanceof IllegalStateException) {
@@ -87,11 +130,35 @@ public class JerseyResourceInstanceFactory<T> implements InjectableFactory<T> {
 	 * After calling dispose, a new instance has to be created
 	 */
 	public void dispose() {
-		// release all cached service instances
-		if (serviceObjects != null) {
-			instanceCache.forEach((i) -> serviceObjects.ungetService(i));
+		disposed = true;
+		// release all cached service instances, unless a concurrent dispose of the instance got there first
+		for (Instance i : instanceCache) {
+			if (instanceCache.remove(i) && serviceObjects != null) {
+				serviceObjects.ungetService(i.instance);
+			}
+		}
+		if (serviceObjects != null && pool != null) {
+			Object pooled;
+			while ((pooled = pool.pollFirst()) != null) {
+				serviceObjects.ungetService(pooled);
+			}
 		}
-		instanceCache.clear();
+	}
+	
+	/**
+	 * Return the name of the resource created by this factory
+	 * @return the name of the resource
+	 */
+	public String getResourceName() {
+		return provider.getName();
+	}
+	
+	/**
+	 * Return whether released instances are kept in a pool
+	 * @return <code>true</code> if pooling is enabled
+	 */
+	public boolean isPooled() {
+		return pool != null;
 	}
 	
 	/**
@@ -101,6 +168,40 @@ public class JerseyResourceInstanceFactory<T> implements InjectableFactory<T> {
 	public int getCacheInstanceCount() {
 		return instanceCache.size();
 	}
+	
+	/**
+	 * Return the number of idle instances in the pool
+	 * @return the number of pooled instances, 0 if pooling is disabled
+	 */
+	public int getPooledInstanceCount() {
+		return pool == null ? 0 : pool.size();
+	}
+	
+	/**
+	 * Return the number of requests that reused a pooled instance
+	 * @return the number of pool hits
+	 */
+	public long getPoolHitCount() {
+		return poolHits.sum();
+	}
+	
+	/**
+	 * Return the number of requests that had to get a new instance, although pooling is enabled
+	 * @return the number of pool misses
+	 */
+	public long getPoolMissCount() {
+		return poolMisses.sum();
+	}
+	
+	/**
+	 * Return the share of requests that reused a pooled instance
+	 * @return the hit rate between 0 and 1, 0 if pooling is disabled or no request was served
+	 */
+	public double getPoolHitRate() {
+		long hits = poolHits.sum();
+		long total = hits + poolMisses.sum();
+		return total == 0 ? 0 : (double) hits / total;
+	}
 
 	/**
 	 * Disposes a service instance. If it is a prototype instance, it will be removed from the cache.
@@ -110,7 +211,10 @@ public class JerseyResourceInstanceFactory<T> implements InjectableFactory<T> {
 		if (instance == null) {
 			return;
 		}
-		if (instanceCache.remove(instance)) {
+		if (instanceCache.remove(new Instance(instance))) {
+			if (returnToPool(instance)) {
+				return;
+			}
 			try {
 				serviceObjects.ungetService(instance);
 			} catch (Exception e) {
@@ -122,6 +226,35 @@ public class JerseyResourceInstanceFactory<T> implements InjectableFactory<T> {
 		}
 	}
 	
+	/**
+	 * Offers an instance to the pool, after resetting it
+	 * @param instance the released instance
+	 * @return <code>true</code> if the instance was pooled, otherwise it has to be released
+	 */
+	private boolean returnToPool(Object instance) {
+		if (pool == null || disposed) {
+			return false;
+		}
+		if (instance instanceof PooledResource) {
+			try {
+				if (!((PooledResource) instance).reset()) {
+					return false;
+				}
+			} catch (Exception e) {
+				logger.log(Level.WARNING, "Error resetting an instance of the resource " + provider.getId(), e);
+				return false;
+			}
+		}
+		if (!pool.offerFirst(instance)) {
+			return false;
+		}
+		// The factory may have been disposed concurrently and the pool drained already
+		if (disposed && pool.remove(instance)) {
+			return false;
+		}
+		return true;
+	}
+	
 	/* 
 	 * (non-Javadoc)
 	 * @see org.eclipse.osgitech.rest.factories.InjectableFactory#setInjectionManager(org.glassfish.jersey.internal.inject.InjectionManager)
@@ -130,5 +263,26 @@ public class JerseyResourceInstanceFactory<T> implements InjectableFactory<T> {
 	public void setInjectionManager(InjectionManager injectionManager) {
 		this.injectionManager = injectionManager;
 	}
+	
+	/**
+	 * Compares resource instances by identity, as resources may override equals and hashCode
+	 */
+	private static final class Instance {
+		private final Object instance;
+		
+		Instance(Object instance) {
+			this.instance = instance;
+		}
+		
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(instance);
+		}
+		
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Instance && ((Instance) obj).instance == instance;
+		}
+	}
 
 }
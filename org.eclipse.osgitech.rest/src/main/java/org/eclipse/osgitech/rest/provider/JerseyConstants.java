@@ -32,11 +32,80 @@ public interface JerseyConstants {
 	public static final String JERSEY_WHITEBOARD_NAME = "jersey.jakartars.whiteboard.name";
 	public static final String JERSEY_STRICT_MODE = "jersey.jakartars.whiteboard.strict";
 	public static final String JERSEY_DISABLE_SESSION = "jersey.disable.sessions";
+	/** Milliseconds without whiteboard service changes before the runtime is updated */
+	public static final String JERSEY_DISPATCH_QUIET_PERIOD = "jersey.dispatch.quiet.period";
+	/** Maximum milliseconds a whiteboard service change waits for the runtime update */
+	public static final String JERSEY_DISPATCH_MAX_DELAY = "jersey.dispatch.max.delay";
+	/** Whether the quiet period grows while whiteboard service changes keep arriving */
+	public static final String JERSEY_DISPATCH_ADAPTIVE = "jersey.dispatch.adaptive";
+	/** The number of application containers built and reloaded in parallel, 1 (the default) disables this */
+	public static final String JERSEY_DISPATCH_PARALLELISM = "jersey.dispatch.parallelism";
+	/** Service property of the {@link org.eclipse.osgitech.rest.runtime.JerseyRuntimeMetrics}, the service id of the JakartarsServiceRuntime they belong to */
+	public static final String JERSEY_RUNTIME_SERVICE_ID = "jersey.runtime.service.id";
+	/** Service property of a prototype scoped resource, the number of idle instances kept for reuse. 0 (the default) disables pooling */
+	public static final String JERSEY_PROTOTYPE_POOL_SIZE = "jersey.prototype.pool.size";
+	/** Application service property, milliseconds a request waits for an unresolved Promise before it fails with 503. 0 (the default) waits indefinitely */
+	public static final String JERSEY_PROMISE_TIMEOUT = "jersey.promise.timeout";
+	/** Minimum number of request threads of the Jetty whiteboard, 8 by default */
+	public static final String JERSEY_THREADS_MIN = "jersey.threads.min";
+	/** Maximum number of request threads of the Jetty whiteboard, 200 by default */
+	public static final String JERSEY_THREADS_MAX = "jersey.threads.max";
+	/** Maximum number of jobs waiting for a request thread of the Jetty whiteboard, 0 (the default) for no limit */
+	public static final String JERSEY_THREADS_QUEUE_SIZE = "jersey.threads.queue.size";
+	/** Milliseconds an idle request thread of the Jetty whiteboard is kept above the minimum, 60000 by default */
+	public static final String JERSEY_THREADS_IDLE_TIMEOUT = "jersey.threads.idle.timeout";
+	/** Whether the Jetty whiteboard handles requests on virtual threads, if the JVM supports them. <code>false</code> by default */
+	public static final String JERSEY_THREADS_VIRTUAL = "jersey.threads.virtual";
+	/** Number of acceptor threads of the Jetty whiteboard connector, by default Jetty derives it from the number of processors */
+	public static final String JERSEY_CONNECTOR_ACCEPTORS = "jersey.connector.acceptors";
+	/** Number of selectors of the Jetty whiteboard connector, by default Jetty derives it from the number of processors */
+	public static final String JERSEY_CONNECTOR_SELECTORS = "jersey.connector.selectors";
+	/** Backlog of connections waiting to be accepted by the Jetty whiteboard connector, 0 (the default) uses the OS default */
+	public static final String JERSEY_CONNECTOR_ACCEPT_QUEUE_SIZE = "jersey.connector.accept.queue.size";
+	/** Milliseconds an idle connection of the Jetty whiteboard connector is kept open, 30000 by default */
+	public static final String JERSEY_CONNECTOR_IDLE_TIMEOUT = "jersey.connector.idle.timeout";
+	/** Whether the Jetty whiteboard also serves HTTP/2, in cleartext (h2c) or over TLS using ALPN. <code>false</code> by default */
+	public static final String JERSEY_HTTP2 = "jersey.http2";
+	/** Path of the keystore with the server certificate. If set, the Jetty whiteboard serves TLS */
+	public static final String JERSEY_SSL_KEYSTORE = "jersey.ssl.keystore";
+	/** Password of the keystore with the server certificate */
+	public static final String JERSEY_SSL_KEYSTORE_PASSWORD = "jersey.ssl.keystore.password";
+	/** Type of the keystore with the server certificate, PKCS12 by default */
+	public static final String JERSEY_SSL_KEYSTORE_TYPE = "jersey.ssl.keystore.type";
+	/** Milliseconds a removed application context of the Jetty whiteboard completes its active requests before it is stopped, 5000 by default */
+	public static final String JERSEY_CONTEXT_DRAIN_TIMEOUT = "jersey.context.drain.timeout";
+	/** Milliseconds the Jetty whiteboard, when it is stopped, refuses new connections and completes its active requests. 0 (the default) stops right away */
+	public static final String JERSEY_SHUTDOWN_TIMEOUT = "jersey.shutdown.timeout";
+	/** Whether the Jetty whiteboard publishes the MBeans of its server, connectors and thread pool to the platform MBeanServer. <code>true</code> by default */
+	public static final String JERSEY_JMX = "jersey.jmx";
+	/** Names of additional endpoints of the Jetty whiteboard, which serve the same applications on their own connector */
+	public static final String JERSEY_ENDPOINTS = "jersey.endpoints";
+	/** Prefix of the properties of an additional endpoint, followed by its name, e.g. <code>jersey.endpoint.admin.port</code>. Unset properties default to the whiteboard ones, except the port */
+	public static final String JERSEY_ENDPOINT_PREFIX = "jersey.endpoint.";
+	/** The configuration PID of the ClientBuilder service */
+	public static final String JERSEY_CLIENT_PID = "JakartarsClientBuilder";
+	/** 
+	 * Maximum connections in use by all clients of the ClientBuilder service, 0 (the default) for no limit.
+	 * A limit is registered as a ConnectionLimitingConnectorProvider service reporting its metrics. Each 
+	 * configuration change creates a new limit for the clients created afterwards, clients created before 
+	 * keep the previous one, so the clients of two configurations do not share one limit
+	 */
+	public static final String JERSEY_CLIENT_MAX_CONNECTIONS = "jersey.client.max.connections";
+	/** Maximum connections in use to one scheme, host and port by all clients of the ClientBuilder service, 0 (the default) for no limit. Shared like {@link #JERSEY_CLIENT_MAX_CONNECTIONS} */
+	public static final String JERSEY_CLIENT_MAX_CONNECTIONS_PER_ROUTE = "jersey.client.max.connections.per.route";
+	/** Milliseconds a client request waits until it may connect when a connection limit is reached, 30000 by default */
+	public static final String JERSEY_CLIENT_ACQUIRE_TIMEOUT = "jersey.client.acquire.timeout";
+	/** Default connect timeout in milliseconds of the clients of the ClientBuilder service */
+	public static final String JERSEY_CLIENT_CONNECT_TIMEOUT = "jersey.client.connect.timeout";
+	/** Default read timeout in milliseconds of the clients of the ClientBuilder service */
+	public static final String JERSEY_CLIENT_READ_TIMEOUT = "jersey.client.read.timeout";
 	
 	public static final Integer WHITEBOARD_DEFAULT_PORT = Integer.valueOf(8181);
 	public static final String WHITEBOARD_DEFAULT_CONTEXT_PATH = "/rest";
 	public static final String WHITEBOARD_DEFAULT_HOST = "localhost";
 	public static final String WHITEBOARD_DEFAULT_SCHEMA = "http";
 	public static final String WHITEBOARD_DEFAULT_NAME = "Jersey REST";
+	public static final long DISPATCH_DEFAULT_QUIET_PERIOD = 50;
+	public static final long DISPATCH_DEFAULT_MAX_DELAY = 1000;
 
 }
@@ -0,0 +1,30 @@
+/**
+ * Copyright (c) 2012 - 2022 Data In Motion and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Data In Motion - initial API and implementation
+ *     Stefan Bishof - API and implementation
+ *     Tim Ward - implementation
+ */
+package org.eclipse.osgitech.rest.provider;
+
+/**
+ * An optional interface for prototype scoped whiteboard resources that are pooled using the
+ * {@link JerseyConstants#JERSEY_PROTOTYPE_POOL_SIZE} service property. It allows a resource
+ * instance to clear any state left by a request before it serves the next one.
+ *
+ * @since 1.2
+ */
+public interface PooledResource {
+
+	/**
+	 * Called when a request is finished with this instance, before it is returned to the pool
+	 * @return <code>true</code> if the instance can be reused, <code>false</code> if it must be released
+	 */
+	boolean reset();
+}
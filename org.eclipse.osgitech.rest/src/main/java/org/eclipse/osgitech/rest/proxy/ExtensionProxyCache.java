@@ -0,0 +1,322 @@
+/**
+ * Copyright (c) 2012 - 2022 Data In Motion and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Data In Motion - initial API and implementation
+ *     Stefan Bishof - API and implementation
+ *     Tim Ward - implementation
+ */
+package org.eclipse.osgitech.rest.proxy;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.eclipse.osgitech.rest.runtime.ProxyCacheMetrics;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.wiring.BundleWiring;
+
+/**
+ * A bounded cache of the generated extension proxy classes.
+ * <p>
+ * Extension providers are recreated for every dispatch of the whiteboard, but the proxy class
+ * of an extension only depends on the delegate class, the contracts and the bundle wiring providing
+ * the service. Reusing the class avoids generating and defining the same bytecode again for every
+ * application reload or re-registration of the service, which would otherwise fill the metaspace.
+ * <p>
+ * Jersey registers only one instance of a class per application, so services that use the same
+ * delegate class and contracts at the same time each hold their own proxy class. Such a slot is
+ * owned by a service id until it is {@link #release(long) released}, after which it is reused by
+ * the next service.
+ * <p>
+ * The least recently used classes are evicted when the cache is full. Classes defined for a
+ * bundle wiring that is no longer current are evicted by {@link #purge()}, which is called
+ * for the bundle events that replace or remove a wiring.
+ *
+ * @since 1.2
+ */
+public final class ExtensionProxyCache {
+
+	/** The default maximum number of cached proxy classes */
+	public static final int DEFAULT_MAX_SIZE = 512;
+
+	private static final String PROXY_PACKAGE = "org.eclipse.osgitech.rest.proxy.";
+
+	private static final int STALE_WIRING_EVENTS = BundleEvent.UPDATED | BundleEvent.UNRESOLVED
+			| BundleEvent.UNINSTALLED;
+
+	private static final ExtensionProxyCache INSTANCE = new ExtensionProxyCache(DEFAULT_MAX_SIZE);
+
+	private final int maxSize;
+
+	/** The cached classes in access order. Protected by synchronizing on the map */
+	private final Map<Key, Entry> classes = new LinkedHashMap<>(16, 0.75f, true);
+
+	private int size;
+	private long hits;
+	private long misses;
+	private long evictions;
+	private long cachedBytes;
+
+	ExtensionProxyCache(int maxSize) {
+		if (maxSize < 1) {
+			throw new IllegalArgumentException("The cache must be able to hold at least one class");
+		}
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @return the cache shared by all whiteboards
+	 */
+	public static ExtensionProxyCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Returns the proxy class for the given delegate class and contracts, generating and
+	 * defining it only if it is not already cached. A service gets the same class for as long as
+	 * it holds its slot, and a different class than the other services holding a slot
+	 *
+	 * @param delegateClass - the class of the objects to proxy
+	 * @param contracts - the extension contracts to honour
+	 * @param wiring - the wiring of the bundle providing the extension service
+	 * @param serviceId - the id of the extension service
+	 * @return the proxy class
+	 */
+	public Class<?> getProxyClass(Class<?> delegateClass, List<Class<?>> contracts, BundleWiring wiring,
+			long serviceId) {
+		Objects.requireNonNull(wiring, "The bundle providing the extension has no wiring");
+		Key key = new Key(delegateClass, contracts, wiring);
+		Entry entry;
+		int slot;
+		synchronized (classes) {
+			entry = classes.computeIfAbsent(key, k -> new Entry());
+			slot = entry.acquire(serviceId);
+			Class<?> proxyClass = entry.proxyClasses.get(slot);
+			if (proxyClass != null) {
+				hits++;
+				return proxyClass;
+			}
+			misses++;
+		}
+
+		// Generate outside the lock, a concurrent request for the same slot defines its own copy
+		String className = getClassName(delegateClass, contracts, slot);
+		byte[] b = ExtensionProxyFactory.generateClass(className, delegateClass, contracts);
+		Class<?> proxyClass = new ProxyClassLoader(wiring.getClassLoader()).define(className, b, delegateClass);
+
+		synchronized (classes) {
+			Class<?> existing = entry.proxyClasses.get(slot);
+			if (existing != null) {
+				return existing;
+			}
+			entry.proxyClasses.set(slot, proxyClass);
+			entry.bytes += b.length;
+			entry.count++;
+			if (classes.get(key) != entry) {
+				// Evicted while generating
+				return proxyClass;
+			}
+			size++;
+			cachedBytes += b.length;
+			Iterator<Entry> it = classes.values().iterator();
+			while (size > maxSize && it.hasNext()) {
+				evict(it.next());
+				it.remove();
+			}
+		}
+		return proxyClass;
+	}
+
+	/**
+	 * Releases the slots held by an extension service, e.g. because it was unregistered. The
+	 * classes stay cached for the next service using the same delegate class and contracts
+	 *
+	 * @param serviceId - the id of the extension service
+	 */
+	public void release(long serviceId) {
+		synchronized (classes) {
+			classes.values().forEach(e -> e.release(serviceId));
+		}
+	}
+
+	/**
+	 * Evicts the classes defined for bundle wirings that are no longer current,
+	 * e.g. because the bundle was updated or uninstalled
+	 */
+	public void purge() {
+		synchronized (classes) {
+			Iterator<Map.Entry<Key, Entry>> it = classes.entrySet().iterator();
+			while (it.hasNext()) {
+				Map.Entry<Key, Entry> e = it.next();
+				if (!e.getKey().wiring.isCurrent()) {
+					evict(e.getValue());
+					it.remove();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Purges the cache when a bundle event replaces or removes a bundle wiring. Intended to be
+	 * called by a bundle listener, as the extension services are unregistered while the wiring
+	 * of their bundle is still current
+	 *
+	 * @param event - the bundle event
+	 */
+	public void bundleChanged(BundleEvent event) {
+		if ((event.getType() & STALE_WIRING_EVENTS) != 0) {
+			purge();
+		}
+	}
+
+	/**
+	 * Removes all the cached classes
+	 */
+	public void clear() {
+		synchronized (classes) {
+			evictions += size;
+			classes.clear();
+			size = 0;
+			cachedBytes = 0;
+		}
+	}
+
+	/**
+	 * Returns the metrics of this cache, together with the class loading and metaspace
+	 * usage of the JVM
+	 * @return a snapshot of the metrics
+	 */
+	public ProxyCacheMetrics getMetrics() {
+		ClassLoadingMXBean classLoading = ManagementFactory.getClassLoadingMXBean();
+		long metaspaceUsed = ManagementFactory.getMemoryPoolMXBeans().stream()
+				.filter(p -> "Metaspace".equals(p.getName()))
+				.map(MemoryPoolMXBean::getUsage)
+				.filter(Objects::nonNull)
+				.mapToLong(u -> u.getUsed())
+				.findFirst()
+				.orElse(-1);
+		synchronized (classes) {
+			return new ProxyCacheMetrics(size, hits, misses, evictions, cachedBytes,
+					classLoading.getLoadedClassCount(), classLoading.getUnloadedClassCount(), metaspaceUsed);
+		}
+	}
+
+	/**
+	 * Must be called holding the lock, the caller removes the entry from the map
+	 */
+	private void evict(Entry entry) {
+		size -= entry.count;
+		cachedBytes -= entry.bytes;
+		evictions += entry.count;
+	}
+
+	/**
+	 * Names the proxy after the delegate class, the contracts and the slot, e.g.
+	 * <code>Extension_com_acme_MyFilter_ContainerRequestFilter_0</code>
+	 */
+	static String getClassName(Class<?> delegateClass, List<Class<?>> contracts, int slot) {
+		StringBuilder sb = new StringBuilder(PROXY_PACKAGE).append("Extension_")
+				.append(delegateClass.getName().replaceAll("[^\\p{Alnum}]", "_"));
+		contracts.forEach(c -> sb.append('_').append(c.getSimpleName()));
+		return sb.append('_').append(slot).toString();
+	}
+
+	private static final class Key {
+		private final Class<?> delegateClass;
+		private final List<Class<?>> contracts;
+		private final BundleWiring wiring;
+		private final int hash;
+
+		Key(Class<?> delegateClass, List<Class<?>> contracts, BundleWiring wiring) {
+			this.delegateClass = delegateClass;
+			this.contracts = List.copyOf(contracts);
+			this.wiring = wiring;
+			this.hash = Objects.hash(delegateClass, this.contracts, System.identityHashCode(wiring));
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return wiring == other.wiring && delegateClass == other.delegateClass
+					&& contracts.equals(other.contracts);
+		}
+	}
+
+	/**
+	 * The slots of one key. A slot without owner keeps its class for the next service
+	 */
+	private static final class Entry {
+		private final List<Class<?>> proxyClasses = new ArrayList<>(1);
+		private final List<Long> owners = new ArrayList<>(1);
+		private int count;
+		private int bytes;
+
+		int acquire(long serviceId) {
+			int free = -1;
+			for (int i = 0; i < owners.size(); i++) {
+				Long owner = owners.get(i);
+				if (owner == null) {
+					if (free < 0) {
+						free = i;
+					}
+				} else if (owner.longValue() == serviceId) {
+					return i;
+				}
+			}
+			if (free < 0) {
+				owners.add(serviceId);
+				proxyClasses.add(null);
+				return owners.size() - 1;
+			}
+			owners.set(free, serviceId);
+			return free;
+		}
+
+		void release(long serviceId) {
+			for (int i = 0; i < owners.size(); i++) {
+				Long owner = owners.get(i);
+				if (owner != null && owner.longValue() == serviceId) {
+					owners.set(i, null);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Defines a single proxy class, delegating to the loader of the bundle providing the
+	 * extension for all the types that the proxy uses
+	 */
+	private static final class ProxyClassLoader extends ClassLoader {
+
+		ProxyClassLoader(ClassLoader parent) {
+			super(parent);
+		}
+
+		Class<?> define(String name, byte[] b, Class<?> delegateClass) {
+			return defineClass(name, b, 0, b.length, delegateClass.getProtectionDomain());
+		}
+	}
+}
@@ -26,11 +26,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.BiPredicate;
-import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Opcodes;
 import org.objectweb.asm.Type;
@@ -45,7 +45,7 @@ import org.objectweb.asm.signature.SignatureWriter;
  * * Implement all of the contract interfaces
  * * Have the same generic signature for each interface implemented
  * * Extend Object
- * * Delegate to 
+ * * Delegate to the object held in its volatile {@link #DELEGATE_FIELD} field
  * 
  * 
  * @author timothyjward
@@ -54,6 +54,11 @@ import org.objectweb.asm.signature.SignatureWriter;
 public class ExtensionProxyFactory {
 	
 	private static final String OBJECT_INTERNAL_NAME = Type.getInternalName(Object.class);
+	private static final String OBJECT_DESCRIPTOR = Type.getDescriptor(Object.class);
+	private static final String ILLEGAL_STATE_INTERNAL_NAME = Type.getInternalName(IllegalStateException.class);
+	
+	/** The name of the public field of a proxy that holds its delegate */
+	public static final String DELEGATE_FIELD = "delegate";
 
 	/**
 	 * Generate a proxy class which copies the signature of the delegate
@@ -63,7 +68,17 @@ public class ExtensionProxyFactory {
 	 * @param contracts - the extension contracts to honour 
 	 */
 	public static byte[] generateClass(String className, Object delegate, List<Class<?>> contracts) {
-		Class<? extends Object> delegateClazz = delegate.getClass();
+		return generateClass(className, delegate.getClass(), contracts);
+	}
+
+	/**
+	 * Generate a proxy class which copies the signature of the delegate class
+	 * 
+	 * @param className - the name to use for the new class
+	 * @param delegateClazz - the class of the objects to proxy
+	 * @param contracts - the extension contracts to honour 
+	 */
+	public static byte[] generateClass(String className, Class<?> delegateClazz, List<Class<?>> contracts) {
 		Map<String, ParameterizedType> typeInfo = new HashMap<>();
 		Map<String, String> contextMapping = new HashMap<>();
 				
@@ -88,50 +103,50 @@ public class ExtensionProxyFactory {
 				av.visitEnd();
 			}
 		
-			cw.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_FINAL, "delegateSupplier", Type.getDescriptor(Supplier.class), null, null).visitEnd();
+			// A volatile field, so that calls can read the delegate without taking a lock
+			// while still seeing it cleared when the extension is disposed
+			cw.visitField(Opcodes.ACC_PUBLIC | Opcodes.ACC_VOLATILE, DELEGATE_FIELD, OBJECT_DESCRIPTOR, null, null).visitEnd();
 			
-			MethodVisitor constructor = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "(Ljava/util/function/Supplier;)V", null, null);
+			MethodVisitor constructor = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "(" + OBJECT_DESCRIPTOR + ")V", null, null);
 			constructor.visitCode();
 			constructor.visitVarInsn(Opcodes.ALOAD, 0);
 			constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, OBJECT_INTERNAL_NAME, 
 					"<init>", "()V", false);
 			constructor.visitVarInsn(Opcodes.ALOAD, 0);
 			constructor.visitVarInsn(Opcodes.ALOAD, 1);
-			constructor.visitFieldInsn(Opcodes.PUTFIELD, internalName, "delegateSupplier", Type.getDescriptor(Supplier.class));
+			constructor.visitFieldInsn(Opcodes.PUTFIELD, internalName, DELEGATE_FIELD, OBJECT_DESCRIPTOR);
 			constructor.visitInsn(Opcodes.RETURN);
 			constructor.visitMaxs(2, 2);
 			constructor.visitEnd();
 			
+			String disposedMessage = "The target extension " + className + " has been disposed";
 			for(Class<?> contract : contracts) {
 				for(Method m : contract.getMethods()) {
 					MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, m.getName(), Type.getMethodDescriptor(m), null, 
 							Arrays.stream(m.getExceptionTypes()).map(Type::getInternalName).toArray(String[]::new));
 					mv.visitCode();
 					mv.visitVarInsn(Opcodes.ALOAD, 0);
-					mv.visitFieldInsn(Opcodes.GETFIELD, internalName, "delegateSupplier", Type.getDescriptor(Supplier.class));
-					mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, Type.getInternalName(Supplier.class), "get", 
-							Type.getMethodDescriptor(Supplier.class.getMethod("get")), true);
+					mv.visitFieldInsn(Opcodes.GETFIELD, internalName, DELEGATE_FIELD, OBJECT_DESCRIPTOR);
+					mv.visitInsn(Opcodes.DUP);
+					Label available = new Label();
+					mv.visitJumpInsn(Opcodes.IFNONNULL, available);
+					mv.visitTypeInsn(Opcodes.NEW, ILLEGAL_STATE_INTERNAL_NAME);
+					mv.visitInsn(Opcodes.DUP);
+					mv.visitLdcInsn(disposedMessage);
+					mv.visitMethodInsn(Opcodes.INVOKESPECIAL, ILLEGAL_STATE_INTERNAL_NAME, "<init>", "(Ljava/lang/String;)V", false);
+					mv.visitInsn(Opcodes.ATHROW);
+					mv.visitLabel(available);
 					mv.visitTypeInsn(Opcodes.CHECKCAST, Type.getInternalName(contract));
-					for(int i = 0; i < m.getParameterCount(); i++) {
-						mv.visitVarInsn(Opcodes.ALOAD, i + 1);
+					int slot = 1;
+					for(Type argument : Type.getArgumentTypes(m)) {
+						mv.visitVarInsn(argument.getOpcode(Opcodes.ILOAD), slot);
+						slot += argument.getSize();
 					}
 					mv.visitMethodInsn(Opcodes.INVOKEINTERFACE, Type.getInternalName(contract), m.getName(), 
 							Type.getMethodDescriptor(m), true);
-					if(m.getReturnType().equals(Void.TYPE)) {
-						mv.visitInsn(Opcodes.RETURN);
-					} else if (m.getReturnType() == boolean.class || m.getReturnType() == byte.class || 
-							m.getReturnType() == char.class || m.getReturnType() == int.class) {
-						mv.visitInsn(Opcodes.IRETURN);
-					} else if (m.getReturnType() == long.class ) {
-						mv.visitInsn(Opcodes.LRETURN);
-					} else if (m.getReturnType() == float.class ) {
-						mv.visitInsn(Opcodes.FRETURN);
-					} else if (m.getReturnType() == double.class ) {
-						mv.visitInsn(Opcodes.DRETURN);
-					} else {
-						mv.visitInsn(Opcodes.ARETURN);
-					}
-					mv.visitMaxs(m.getParameterCount() + 1, m.getParameterCount() + 1);
+					mv.visitInsn(Type.getReturnType(m).getOpcode(Opcodes.IRETURN));
+					// Computed by the ClassWriter
+					mv.visitMaxs(0, 0);
 					mv.visitEnd();
 				}
 			}
@@ -145,6 +160,32 @@ public class ExtensionProxyFactory {
 		}
 	}
 
+	/**
+	 * Create a proxy instance
+	 * 
+	 * @param proxyClass - a class generated by this factory
+	 * @param delegate - the object to delegate to
+	 * @return the proxy
+	 * @throws ReflectiveOperationException if the proxy cannot be instantiated
+	 */
+	public static Object newInstance(Class<?> proxyClass, Object delegate) throws ReflectiveOperationException {
+		return proxyClass.getConstructor(Object.class).newInstance(delegate);
+	}
+	
+	/**
+	 * Release the delegate of a proxy. Any later call to the proxy fails with an 
+	 * {@link IllegalStateException}
+	 * 
+	 * @param proxy - a proxy created by {@link #newInstance(Class, Object)}
+	 */
+	public static void dispose(Object proxy) {
+		try {
+			proxy.getClass().getField(DELEGATE_FIELD).set(proxy, null);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalArgumentException("The object " + proxy + " is not an extension proxy", e);
+		}
+	}
+
 	/**
 	 * Gather information about the type variables and generic superclasses for
 	 * the supplied class
@@ -0,0 +1,112 @@
+/**
+ * Copyright (c) 2012 - 2022 Data In Motion and others.
+ * All rights reserved. 
+ * 
+ * This program and the accompanying materials are made available under the terms of the 
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * Contributors:
+ *     Data In Motion - initial API and implementation
+ *     Stefan Bishof - API and implementation
+ *     Tim Ward - implementation
+ */
+package org.eclipse.osgitech.rest.runtime;
+
+/**
+ * An immutable snapshot of the metrics of a {@link ConnectionLimitingConnectorProvider}
+ * @since 1.2
+ */
+public final class ConnectionLimitMetrics {
+
+	private final int maxConnections;
+	private final int maxConnectionsPerRoute;
+	private final int leased;
+	private final int pending;
+	private final int routes;
+	private final long requests;
+	private final long timeouts;
+	private final long abandoned;
+
+	ConnectionLimitMetrics(int maxConnections, int maxConnectionsPerRoute, int leased, int pending, int routes,
+			long requests, long timeouts, long abandoned) {
+		this.maxConnections = maxConnections;
+		this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+		this.leased = leased;
+		this.pending = pending;
+		this.routes = routes;
+		this.requests = requests;
+		this.timeouts = timeouts;
+		this.abandoned = abandoned;
+	}
+
+	/**
+	 * @return the maximum number of requests in progress, 0 if it is not limited
+	 */
+	public int getMaxConnections() {
+		return maxConnections;
+	}
+
+	/**
+	 * @return the maximum number of requests in progress to one route, 0 if it is not limited
+	 */
+	public int getMaxConnectionsPerRoute() {
+		return maxConnectionsPerRoute;
+	}
+
+	/**
+	 * @return the number of requests holding a permit, until their response is consumed or closed
+	 */
+	public int getLeased() {
+		return leased;
+	}
+
+	/**
+	 * @return the number of requests waiting for a permit
+	 */
+	public int getPending() {
+		return pending;
+	}
+
+	/**
+	 * @return the number of routes connected to so far
+	 */
+	public int getRoutes() {
+		return routes;
+	}
+
+	/**
+	 * @return the number of requests that got a permit
+	 */
+	public long getRequests() {
+		return requests;
+	}
+
+	/**
+	 * @return the number of requests that failed waiting for a permit
+	 */
+	public long getTimeouts() {
+		return timeouts;
+	}
+
+	/**
+	 * @return the number of permits released because their response was collected without being consumed or closed
+	 */
+	public long getAbandoned() {
+		return abandoned;
+	}
+
+	/**
+	 * @return the share of the permits in use, between 0 and 1, 0 if the requests are not limited
+	 */
+	public double getUtilization() {
+		return maxConnections == 0 ? 0 : (double) leased / maxConnections;
+	}
+
+	@Override
+	public String toString() {
+		return "ConnectionLimitMetrics [maxConnections=" + maxConnections + ", maxConnectionsPerRoute="
+				+ maxConnectionsPerRoute + ", leased=" + leased + ", pending=" + pending + ", routes=" + routes
+				+ ", requests=" + requests + ", timeouts=" + timeouts + ", abandoned=" + abandoned + "]";
+	}
+}
@@ -0,0 +1,326 @@
+/**
+ * Copyright (c) 2012 - 2022 Data In Motion and others.
+ * All rights reserved. 
+ * 
+ * This program and the accompanying materials are made available under the terms of the 
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ * 
+ * Contributors:
+ *     Data In Motion - initial API and implementation
+ *     Stefan Bishof - API and implementation
+ *     Tim Ward - implementation
+ */
+package org.eclipse.osgitech.rest.runtime;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.Cleaner;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.glassfish.jersey.client.ClientRequest;
+import org.glassfish.jersey.client.ClientResponse;
+import org.glassfish.jersey.client.HttpUrlConnectorProvider;
+import org.glassfish.jersey.client.spi.AsyncConnectorCallback;
+import org.glassfish.jersey.client.spi.Connector;
+import org.glassfish.jersey.client.spi.ConnectorProvider;
+
+import jakarta.ws.rs.HttpMethod;
+import jakarta.ws.rs.ProcessingException;
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.core.Configuration;
+
+/**
+ * A connector provider limiting the requests in progress by all the clients sharing it, in total and
+ * per route. It is not a connection pool: the connections are opened by the {@link HttpUrlConnectorProvider},
+ * which reuses idle connections through the keep-alive cache of the JVM. Each request holds a permit of a
+ * semaphore, which bounds the number of sockets a burst of requests opens to a backend.
+ * <p>
+ * A permit is held until the response entity is read or the response is closed. The permit of a response
+ * that is dropped without either is released once the response is garbage collected. A request waits for 
+ * a permit at most for the configured timeout, and then fails with a {@link ProcessingException}.
+ * 
+ * @since 1.2
+ */
+public class ConnectionLimitingConnectorProvider implements ConnectorProvider {
+
+	/** The milliseconds a request waits for a permit, unless configured otherwise */
+	public static final long DEFAULT_TIMEOUT = 30000;
+
+	/** Releases the permits of responses that were neither consumed nor closed */
+	private static final Cleaner CLEANER = Cleaner.create();
+
+	private final ConnectorProvider delegate;
+	private final int maxConnections;
+	private final int maxConnectionsPerRoute;
+	private final long timeout;
+	
+	/** <code>null</code> if the total is not limited */
+	private final Semaphore total;
+	private final Map<String, Semaphore> routes = new ConcurrentHashMap<>();
+	
+	private final AtomicInteger leased = new AtomicInteger();
+	private final AtomicInteger pending = new AtomicInteger();
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder timeouts = new LongAdder();
+	private final LongAdder abandoned = new LongAdder();
+
+	/**
+	 * Creates a new provider
+	 * @param maxConnections the maximum number of requests in progress, 0 for no limit
+	 * @param maxConnectionsPerRoute the maximum number of requests in progress to one scheme, host and port, 0 for no limit
+	 * @param timeout the milliseconds a request waits for a permit, 0 for the {@link #DEFAULT_TIMEOUT}
+	 */
+	public ConnectionLimitingConnectorProvider(int maxConnections, int maxConnectionsPerRoute, long timeout) {
+		this(new HttpUrlConnectorProvider(), maxConnections, maxConnectionsPerRoute, timeout);
+	}
+
+	ConnectionLimitingConnectorProvider(ConnectorProvider delegate, int maxConnections, int maxConnectionsPerRoute, long timeout) {
+		this.delegate = delegate;
+		this.maxConnections = Math.max(0, maxConnections);
+		this.maxConnectionsPerRoute = Math.max(0, maxConnectionsPerRoute);
+		this.timeout = timeout > 0 ? timeout : DEFAULT_TIMEOUT;
+		this.total = this.maxConnections > 0 ? new Semaphore(this.maxConnections, true) : null;
+	}
+
+	/* 
+	 * (non-Javadoc)
+	 * @see org.glassfish.jersey.client.spi.ConnectorProvider#getConnector(jakarta.ws.rs.client.Client, jakarta.ws.rs.core.Configuration)
+	 */
+	@Override
+	public Connector getConnector(Client client, Configuration runtimeConfig) {
+		return new LimitingConnector(delegate.getConnector(client, runtimeConfig));
+	}
+	
+	/**
+	 * @return the milliseconds a request waits for a permit
+	 */
+	public long getTimeout() {
+		return timeout;
+	}
+	
+	/**
+	 * Returns the metrics of the requests of all the clients of this provider
+	 * @return a snapshot of the metrics
+	 */
+	public ConnectionLimitMetrics getMetrics() {
+		return new ConnectionLimitMetrics(maxConnections, maxConnectionsPerRoute, leased.get(), pending.get(),
+				routes.size(), requests.sum(), timeouts.sum(), abandoned.sum());
+	}
+
+	/**
+	 * Waits for a permit to the route of the given uri
+	 * @param uri the request uri
+	 * @return the lease to release once the response is no longer used
+	 * @throws ProcessingException if no permit is free in time
+	 */
+	private Lease acquire(URI uri) {
+		int port = uri.getPort() != -1 ? uri.getPort() : "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+		String route = uri.getScheme() + "://" + uri.getHost() + ":" + port;
+		Semaphore routeConnections = maxConnectionsPerRoute > 0 ? 
+				routes.computeIfAbsent(route, r -> new Semaphore(maxConnectionsPerRoute, true)) : null;
+		pending.incrementAndGet();
+		try {
+			if (!acquire(routeConnections)) {
+				throw timedOut(route);
+			}
+			if (!acquire(total)) {
+				if (routeConnections != null) {
+					routeConnections.release();
+				}
+				throw timedOut(route);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ProcessingException("Interrupted waiting for a permit to connect to " + route, e);
+		} finally {
+			pending.decrementAndGet();
+		}
+		requests.increment();
+		leased.incrementAndGet();
+		return new Lease(routeConnections);
+	}
+	
+	private boolean acquire(Semaphore semaphore) throws InterruptedException {
+		if (semaphore == null) {
+			return true;
+		}
+		return semaphore.tryAcquire(timeout, TimeUnit.MILLISECONDS);
+	}
+	
+	private ProcessingException timedOut(String route) {
+		timeouts.increment();
+		return new ProcessingException("Timed out after " + timeout + " ms waiting for a permit to connect to " + route);
+	}
+	
+	/**
+	 * A permit held by a request, released exactly once. Must not reference the response, 
+	 * so that an abandoned response can be collected
+	 */
+	private final class Lease {
+		
+		private final Semaphore routeConnections;
+		private final AtomicBoolean released = new AtomicBoolean();
+		/** Set once the lease is attached to a response entity */
+		private volatile Cleaner.Cleanable cleanable;
+		
+		Lease(Semaphore routeConnections) {
+			this.routeConnections = routeConnections;
+		}
+		
+		void release() {
+			free();
+			Cleaner.Cleanable c = cleanable;
+			if (c != null) {
+				// Deregisters from the cleaner, the action does nothing as already released
+				c.clean();
+			}
+		}
+		
+		/**
+		 * Called by the cleaner when the entity of the response became unreachable
+		 */
+		private void abandon() {
+			if (free()) {
+				abandoned.increment();
+			}
+		}
+		
+		private boolean free() {
+			if (!released.compareAndSet(false, true)) {
+				return false;
+			}
+			leased.decrementAndGet();
+			if (total != null) {
+				total.release();
+			}
+			if (routeConnections != null) {
+				routeConnections.release();
+			}
+			return true;
+		}
+		
+		/**
+		 * Keeps the permit until the response entity is consumed, or the response is closed or collected
+		 */
+		ClientResponse attach(ClientResponse response) {
+			if (HttpMethod.HEAD.equals(response.getRequestContext().getMethod()) || response.getStatus() == 204 
+					|| response.getStatus() == 304 || response.getLength() == 0) {
+				release();
+				return response;
+			}
+			InputStream entity = response.getEntityStream();
+			InputStream leasedEntity = new FilterInputStream(entity) {
+				
+				@Override
+				public int read() throws IOException {
+					int b = super.read();
+					if (b == -1) {
+						release();
+					}
+					return b;
+				}
+				
+				@Override
+				public int read(byte[] b, int off, int len) throws IOException {
+					int read = super.read(b, off, len);
+					if (read == -1) {
+						release();
+					}
+					return read;
+				}
+				
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						release();
+					}
+				}
+			};
+			cleanable = CLEANER.register(leasedEntity, this::abandon);
+			response.setEntityStream(leasedEntity);
+			return response;
+		}
+	}
+	
+	private final class LimitingConnector implements Connector {
+		
+		private final Connector connector;
+		
+		LimitingConnector(Connector connector) {
+			this.connector = connector;
+		}
+
+		/* 
+		 * (non-Javadoc)
+		 * @see org.glassfish.jersey.client.spi.Connector#apply(org.glassfish.jersey.client.ClientRequest)
+		 */
+		@Override
+		public ClientResponse apply(ClientRequest request) {
+			Lease lease = acquire(request.getUri());
+			try {
+				return lease.attach(connector.apply(request));
+			} catch (RuntimeException e) {
+				lease.release();
+				throw e;
+			}
+		}
+
+		/* 
+		 * (non-Javadoc)
+		 * @see org.glassfish.jersey.client.spi.Connector#apply(org.glassfish.jersey.client.ClientRequest, org.glassfish.jersey.client.spi.AsyncConnectorCallback)
+		 */
+		@Override
+		public Future<?> apply(ClientRequest request, AsyncConnectorCallback callback) {
+			// Jersey calls this from its asynchronous request executor, so waiting does not block the caller
+			Lease lease = acquire(request.getUri());
+			try {
+				return connector.apply(request, new AsyncConnectorCallback() {
+					
+					@Override
+					public void response(ClientResponse response) {
+						callback.response(lease.attach(response));
+					}
+					
+					@Override
+					public void failure(Throwable failure) {
+						lease.release();
+						callback.failure(failure);
+					}
+				});
+			} catch (RuntimeException e) {
+				lease.release();
+				throw e;
+			}
+		}
+
+		/* 
+		 * (non-Javadoc)
+		 * @see org.glassfish.jersey.client.spi.Connector#getName()
+		 */
+		@Override
+		public String getName() {
+			return connector.getName();
+		}
+
+		/* 
+		 * (non-Javadoc)
+		 * @see org.glassfish.jersey.client.spi.Connector#close()
+		 */
+		@Override
+		public void close() {
+			connector.close();
+		}
+	}
+}
@@ -0,0 +1,132 @@
+/**
+ * Copyright (c) 2012 - 2022 Data In Motion and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Data In Motion - initial API and implementation
+ *     Stefan Bishof - API and implementation
+ *     Tim Ward - implementation
+ */
+package org.eclipse.osgitech.rest.runtime;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An immutable snapshot of the dispatch cycles run by a {@link JerseyServiceRuntime}.
+ * Times are accumulated over all cycles.
+ * @since 1.2
+ */
+public final class DispatchMetrics {
+
+	private final long cycles;
+	private final long events;
+	private final long lastCycleEvents;
+	private final long maxCycleEvents;
+	private final long validateNanos;
+	private final long assignNanos;
+	private final long reloadNanos;
+	private final long dtoNanos;
+
+	DispatchMetrics() {
+		this(0, 0, 0, 0, 0, 0, 0, 0);
+	}
+
+	private DispatchMetrics(long cycles, long events, long lastCycleEvents, long maxCycleEvents,
+			long validateNanos, long assignNanos, long reloadNanos, long dtoNanos) {
+		this.cycles = cycles;
+		this.events = events;
+		this.lastCycleEvents = lastCycleEvents;
+		this.maxCycleEvents = maxCycleEvents;
+		this.validateNanos = validateNanos;
+		this.assignNanos = assignNanos;
+		this.reloadNanos = reloadNanos;
+		this.dtoNanos = dtoNanos;
+	}
+
+	/**
+	 * Creates the metrics including one more cycle
+	 */
+	DispatchMetrics addCycle(long cycleEvents, long validate, long assign, long reload, long dto) {
+		return new DispatchMetrics(cycles + 1, events + cycleEvents, cycleEvents,
+				Math.max(maxCycleEvents, cycleEvents), validateNanos + validate, assignNanos + assign,
+				reloadNanos + reload, dtoNanos + dto);
+	}
+
+	/**
+	 * @return the number of dispatch cycles that were run
+	 */
+	public long getCycles() {
+		return cycles;
+	}
+
+	/**
+	 * @return the number of service and configuration events handled by all cycles
+	 */
+	public long getEvents() {
+		return events;
+	}
+
+	/**
+	 * @return the number of events coalesced into the last cycle
+	 */
+	public long getLastCycleEvents() {
+		return lastCycleEvents;
+	}
+
+	/**
+	 * @return the largest number of events coalesced into a single cycle
+	 */
+	public long getMaxCycleEvents() {
+		return maxCycleEvents;
+	}
+
+	/**
+	 * @return the average number of events coalesced into a cycle
+	 */
+	public double getAverageCycleEvents() {
+		return cycles == 0 ? 0 : (double) events / cycles;
+	}
+
+	/**
+	 * @param unit the unit for the result
+	 * @return the time spent validating the whiteboard services, their names and paths
+	 */
+	public long getValidateTime(TimeUnit unit) {
+		return unit.convert(validateNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @param unit the unit for the result
+	 * @return the time spent assigning extensions and resources to applications
+	 */
+	public long getAssignTime(TimeUnit unit) {
+		return unit.convert(assignNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @param unit the unit for the result
+	 * @return the time spent creating, reloading and destroying containers
+	 */
+	public long getReloadTime(TimeUnit unit) {
+		return unit.convert(reloadNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * @param unit the unit for the result
+	 * @return the time spent building the runtime DTO
+	 */
+	public long getDtoTime(TimeUnit unit) {
+		return unit.convert(dtoNanos, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public String toString() {
+		return "DispatchMetrics [cycles=" + cycles + ", events=" + events + ", lastCycleEvents=" + lastCycleEvents
+				+ ", maxCycleEvents=" + maxCycleEvents + ", validateNanos=" + validateNanos + ", assignNanos="
+				+ assignNanos + ", reloadNanos=" + reloadNanos + ", dtoNanos=" + dtoNanos + "]";
+	}
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright (c) 2012 - 2022 Data In Motion and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Data In Motion - initial API and implementation
+ *     Stefan Bishof - API and implementation
+ *     Tim Ward - implementation
+ */
+package org.eclipse.osgitech.rest.runtime;
+
+import java.util.List;
+
+import org.eclipse.osgitech.rest.provider.JerseyConstants;
+
+/**
+ * The metrics of a whiteboard runtime. Each runtime registers them as a service, with the
+ * service id of its JakartarsServiceRuntime in the property {@link JerseyConstants#JERSEY_RUNTIME_SERVICE_ID}
+ * @since 1.2
+ */
+public interface JerseyRuntimeMetrics {
+
+	/**
+	 * Returns the metrics of the dispatch cycles run so far
+	 * @return a snapshot of the metrics
+	 */
+	DispatchMetrics getDispatchMetrics();
+
+	/**
+	 * Returns the number of container reloads that were skipped, because nothing deployed
+	 * in the container had changed since it was last loaded
+	 * @return the number of skipped reloads since the runtime was started
+	 */
+	long getSkippedReloadCount();
+
+	/**
+	 * Returns the metrics of the instance pools of the deployed prototype resources
+	 * @return a snapshot of the metrics, one per resource with a pool
+	 */
+	List<ResourcePoolMetrics> getResourcePoolMetrics();
+
+	/**
+	 * Returns the metrics of the cache of the extension proxy classes. The cache is shared by all 
+	 * the runtimes, so they all report the same metrics
+	 * @return a snapshot of the metrics
+	 */
+	ProxyCacheMetrics getProxyCacheMetrics();
+
+}
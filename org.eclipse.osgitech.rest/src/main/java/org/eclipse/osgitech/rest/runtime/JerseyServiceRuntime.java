@@ -21,8 +21,19 @@ import static java.util.stream.Collectors.toMap;
 import static java.util.stream.Collectors.toSet;
 import static java.util.stream.Collectors.toUnmodifiableList;
 import static java.util.stream.Stream.concat;
+import static org.eclipse.osgitech.rest.provider.JerseyConstants.DISPATCH_DEFAULT_MAX_DELAY;
+import static org.eclipse.osgitech.rest.provider.JerseyConstants.DISPATCH_DEFAULT_QUIET_PERIOD;
+import static org.eclipse.osgitech.rest.provider.JerseyConstants.JERSEY_DISPATCH_ADAPTIVE;
+import static org.eclipse.osgitech.rest.provider.JerseyConstants.JERSEY_DISPATCH_MAX_DELAY;
+import static org.eclipse.osgitech.rest.provider.JerseyConstants.JERSEY_DISPATCH_PARALLELISM;
+import static org.eclipse.osgitech.rest.provider.JerseyConstants.JERSEY_DISPATCH_QUIET_PERIOD;
+import static org.osgi.framework.Constants.OBJECTCLASS;
+import static org.osgi.framework.Constants.SERVICE_BUNDLEID;
 import static org.osgi.framework.Constants.SERVICE_CHANGECOUNT;
+import static org.osgi.framework.Constants.SERVICE_DESCRIPTION;
+import static org.osgi.framework.Constants.SERVICE_ID;
 import static org.osgi.framework.Constants.SERVICE_RANKING;
+import static org.osgi.framework.Constants.SERVICE_SCOPE;
 import static org.osgi.service.jakartars.runtime.JakartarsServiceRuntimeConstants.JAKARTA_RS_SERVICE_ENDPOINT;
 import static org.osgi.service.jakartars.whiteboard.JakartarsWhiteboardConstants.JAKARTA_RS_APPLICATION_BASE;
 import static org.osgi.service.jakartars.whiteboard.JakartarsWhiteboardConstants.JAKARTA_RS_DEFAULT_APPLICATION;
@@ -35,6 +46,7 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Dictionary;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -43,11 +55,19 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.logging.Level;
@@ -59,7 +79,10 @@ import org.eclipse.osgitech.rest.annotations.RequireJerseyExtras;
 import org.eclipse.osgitech.rest.annotations.RequireRuntimeAdapter;
 import org.eclipse.osgitech.rest.dto.DTOConverter;
 import org.eclipse.osgitech.rest.helper.DispatcherHelper;
+import org.eclipse.osgitech.rest.provider.JerseyConstants;
+import org.eclipse.osgitech.rest.proxy.ExtensionProxyCache;
 import org.eclipse.osgitech.rest.runtime.application.AbstractJakartarsProvider;
+import org.eclipse.osgitech.rest.runtime.application.JerseyApplication;
 import org.eclipse.osgitech.rest.runtime.application.JerseyApplicationContentProvider;
 import org.eclipse.osgitech.rest.runtime.application.JerseyApplicationProvider;
 import org.eclipse.osgitech.rest.runtime.application.JerseyExtensionProvider;
@@ -67,8 +90,8 @@ import org.eclipse.osgitech.rest.runtime.application.JerseyResourceProvider;
 import org.glassfish.jersey.server.ResourceConfig;
 import org.glassfish.jersey.server.spi.Container;
 import org.osgi.framework.BundleContext;
+import org.osgi.framework.BundleListener;
 import org.osgi.framework.Filter;
-import org.osgi.framework.FrameworkUtil;
 import org.osgi.framework.InvalidSyntaxException;
 import org.osgi.framework.ServiceReference;
 import org.osgi.framework.ServiceRegistration;
@@ -100,20 +123,56 @@ import jakarta.ws.rs.core.Application;
 @RequireJerseyExtras
 // Require an adapter to run the whiteboard
 @RequireRuntimeAdapter
-public class JerseyServiceRuntime<C extends Container> {
+public class JerseyServiceRuntime<C extends Container> implements JerseyRuntimeMetrics {
 
 	private static final String RESOURCE_FILTER = "(" + JAKARTA_RS_RESOURCE + "=true)";
 	private static final String EXTENSION_FILTER = "(" + JAKARTA_RS_EXTENSION + "=true)";
 	private static final String APPLICATION_FILTER = "(&(objectClass=" + Application.class.getName() + ")(" + JAKARTA_RS_APPLICATION_BASE + "=*))";
 	
+	/** Indexes of the dispatch phases timed for the {@link DispatchMetrics} */
+	private static final int PHASE_VALIDATE = 0;
+	private static final int PHASE_ASSIGN = 1;
+	private static final int PHASE_RELOAD = 2;
+	private static final int PHASE_DTO = 3;
+	
 	/** Used to synchronize internal updates */
 	private final Object lock = new Object();
 	
 	/** Whether the whiteboard is running, protected by {@link #lock}*/
 	private Boolean active = null; 
 	
-	/** The time of the last update, protected by {@link #lock}*/
-	private Instant lastUpdate;
+	/** The time of the first event not yet handled by an update, protected by {@link #lock}*/
+	private Instant firstPendingEvent;
+	
+	/** The time of the last event, protected by {@link #lock}*/
+	private Instant lastEvent;
+	
+	/** 
+	 * The coalescing configuration, see {@link JerseyConstants#JERSEY_DISPATCH_QUIET_PERIOD}, 
+	 * {@link JerseyConstants#JERSEY_DISPATCH_MAX_DELAY} and {@link JerseyConstants#JERSEY_DISPATCH_ADAPTIVE}.
+	 * Protected by {@link #lock}
+	 */
+	private long quietPeriod = DISPATCH_DEFAULT_QUIET_PERIOD;
+	private long maxDelay = DISPATCH_DEFAULT_MAX_DELAY;
+	private boolean adaptive = true;
+	
+	/** The quiet period currently waited for, grows while events keep arriving. Protected by {@link #lock}*/
+	private long currentQuietPeriod = DISPATCH_DEFAULT_QUIET_PERIOD;
+	
+	/** 
+	 * The number of containers built in parallel, see {@link JerseyConstants#JERSEY_DISPATCH_PARALLELISM}, 
+	 * and the pool used to do so when greater than one. Protected by {@link #lock}
+	 */
+	private int parallelism = 1;
+	private ExecutorService dispatchPool;
+	/** 
+	 * The dispatch pools replaced by a configuration change. A dispatch may still be using them, 
+	 * so they are shut down by the executor thread before the next dispatch. Protected by {@link #lock}
+	 */
+	private final List<ExecutorService> retiredPools = new ArrayList<>();
+	
+	/** The metrics of the dispatch cycles, only written by the executor thread */
+	private volatile DispatchMetrics metrics = new DispatchMetrics();
 	
 	/** The current runtime dto, protected by {@link #lock} */
 	private RuntimeDTO runtimeDTO = new RuntimeDTO();
@@ -128,6 +187,18 @@ public class JerseyServiceRuntime<C extends Container> {
 	 */
 	private long changeCount;
 	
+	/** 
+	 * The service ids of all whiteboard services that were added, modified or removed
+	 * since the last update. Protected by {@link #lock} 
+	 */
+	private final Set<Long> changedServiceIds = new HashSet<>();
+	
+	/** 
+	 * Whether the next update has to reconsider all applications, e.g. because the 
+	 * runtime properties have changed. Protected by {@link #lock} 
+	 */
+	private boolean fullUpdate;
+	
 	/** 
 	 * The currently set runtime properties, not necessarily reflected in 
 	 * the service registration until the update has finished.
@@ -145,6 +216,8 @@ public class JerseyServiceRuntime<C extends Container> {
 	private final ServiceTracker<Object, ServiceReference<?>> resourceTracker;
 	private final ServiceTracker<Object, ServiceReference<?>> extensionTracker;
 	private final ServiceTracker<Application, Application> applicationTracker;
+	/** Evicts the proxy classes of extension bundles that are updated, refreshed or uninstalled */
+	private final BundleListener proxyCacheListener = ExtensionProxyCache.getInstance()::bundleChanged;
 	
 	/**
 	 * Empty Whiteboard Application services. Protected by {@link #lock}
@@ -173,11 +246,28 @@ public class JerseyServiceRuntime<C extends Container> {
 	 * This reference must only be set or used by the executor thread
 	 */
 	private ServiceRegistration<JakartarsServiceRuntime> regJakartarsServiceRuntime;
+	private ServiceRegistration<JerseyRuntimeMetrics> regMetrics;
 	
 	/**
 	 * This reference must only be used by the executor thread
 	 */
 	private final Map<String, C> containersByPath = new HashMap<>();
+	
+	/**
+	 * The application providers deployed in the containers, by path.
+	 * This reference must only be used by the executor thread
+	 */
+	private final Map<String, JerseyApplicationProvider> dispatchedByPath = new HashMap<>();
+	
+	/**
+	 * A copy of the deployed containers, published by the executor thread for the metrics
+	 */
+	private volatile List<C> deployedContainers = List.of();
+	
+	/**
+	 * The number of container reloads that were skipped because the deployed application was unchanged
+	 */
+	private final AtomicLong skippedReloads = new AtomicLong();
 
 	public JerseyServiceRuntime(BundleContext context, BiFunction<String, ResourceConfig, C> containerFactory,
 			BiConsumer<String, C> containerDestroyer) {
@@ -199,8 +289,9 @@ public class JerseyServiceRuntime<C extends Container> {
 	
 				@Override
 				public void modifiedService(ServiceReference<Object> reference, ServiceReference<?> service) {
+					Map<String, Object> props = getServiceProps(reference);
 					JerseyResourceProvider provider = new JerseyResourceProvider(
-							context.getServiceObjects(reference), getServiceProps(reference));
+							context.getServiceObjects(reference), props, getKnownObjectClass(resourceMap, props));
 					updateMap(resourceMap, provider);
 				}
 	
@@ -223,14 +314,18 @@ public class JerseyServiceRuntime<C extends Container> {
 				
 				@Override
 				public void modifiedService(ServiceReference<Object> reference, ServiceReference<?> service) {
+					Map<String, Object> props = getServiceProps(reference);
 					JerseyExtensionProvider provider = new JerseyExtensionProvider(
-							context.getServiceObjects(reference), getServiceProps(reference));
+							context.getServiceObjects(reference), props, getKnownObjectClass(extensionMap, props));
 					updateMap(extensionMap, provider);
 				}
 				
 				@Override
 				public void removedService(ServiceReference<Object> reference, ServiceReference<?> service) {
-					clearMap(extensionMap, AbstractJakartarsProvider.getServiceId(getServiceProps(reference)));
+					Long serviceId = AbstractJakartarsProvider.getServiceId(getServiceProps(reference));
+					clearMap(extensionMap, serviceId);
+					// Leave the proxy classes to the next registration
+					ExtensionProxyCache.getInstance().release(serviceId);
 				}
 				
 			};
@@ -275,14 +370,27 @@ public class JerseyServiceRuntime<C extends Container> {
 		synchronized (lock) {
 			scheduleUpdate();
 			map.put(provider.getServiceId(), provider);
+			changedServiceIds.add(provider.getServiceId());
 			updateCount++;
 		}
 	}
 
+	/**
+	 * Returns the implementation class of a service that is already tracked, so that modifying
+	 * its properties does not need to create another service instance
+	 */
+	private Class<?> getKnownObjectClass(Map<Long, ? extends JerseyApplicationContentProvider> map, Map<String, Object> props) {
+		synchronized (lock) {
+			JerseyApplicationContentProvider existing = map.get(AbstractJakartarsProvider.getServiceId(props));
+			return existing == null ? null : existing.getObjectClass();
+		}
+	}
+
 	private <R, T extends AbstractJakartarsProvider<R>> void clearMap(Map<Long, T> map, Long id) {
 		synchronized (lock) {
 			scheduleUpdate();
 			map.remove(id);
+			changedServiceIds.add(id);
 			updateCount++;
 		}
 	}
@@ -299,6 +407,15 @@ public class JerseyServiceRuntime<C extends Container> {
 		return DTOConverter.deepCopy(dto);
 	}
 
+	/* 
+	 * (non-Javadoc)
+	 * @see org.eclipse.osgitech.rest.runtime.JerseyRuntimeMetrics#getSkippedReloadCount()
+	 */
+	@Override
+	public long getSkippedReloadCount() {
+		return skippedReloads.get();
+	}
+
 	/* 
 	 * (non-Javadoc)
 	 * @see org.eclipse.osgitech.rest.provider.whiteboard.JakartarsWhiteboardProvider#initialize(org.osgi.service.component.ComponentContext)
@@ -307,12 +424,14 @@ public class JerseyServiceRuntime<C extends Container> {
 		
 		synchronized (lock) {
 			active = Boolean.TRUE;
-			lastUpdate = Instant.ofEpochMilli(0);
+			this.runtimeProperties = Map.copyOf(runtimeProperties);
+			configureDispatch(runtimeProperties);
 			// Delay the first update to catch the first services when we open the trackers
 			scheduleUpdate();
-			this.runtimeProperties = Map.copyOf(runtimeProperties);
+			fullUpdate = true;
 			updateCount++;
 		}
+		context.addBundleListener(proxyCacheListener);
 		applicationTracker.open();
 		extensionTracker.open();
 		resourceTracker.open();
@@ -321,21 +440,113 @@ public class JerseyServiceRuntime<C extends Container> {
 	
 	public void update(Map<String, Object> runtimeProperties) {
 		synchronized (lock) {
-			scheduleUpdate();
 			this.runtimeProperties = Map.copyOf(runtimeProperties);
+			configureDispatch(runtimeProperties);
+			scheduleUpdate();
+			fullUpdate = true;
 			updateCount++;
 		}
 	}
 	
+	/* 
+	 * (non-Javadoc)
+	 * @see org.eclipse.osgitech.rest.runtime.JerseyRuntimeMetrics#getDispatchMetrics()
+	 */
+	@Override
+	public DispatchMetrics getDispatchMetrics() {
+		return metrics;
+	}
+	
+	/* 
+	 * (non-Javadoc)
+	 * @see org.eclipse.osgitech.rest.runtime.JerseyRuntimeMetrics#getResourcePoolMetrics()
+	 */
+	@Override
+	public List<ResourcePoolMetrics> getResourcePoolMetrics() {
+		List<ResourcePoolMetrics> result = new ArrayList<>();
+		for (C container : deployedContainers) {
+			if (container == null || container.getConfiguration() == null) {
+				continue;
+			}
+			Application application = container.getConfiguration().getApplication();
+			while (application instanceof ResourceConfig && ((ResourceConfig) application).getApplication() != application) {
+				application = ((ResourceConfig) application).getApplication();
+			}
+			if (application instanceof JerseyApplication) {
+				JerseyApplication jerseyApp = (JerseyApplication) application;
+				jerseyApp.getPooledResourceFactories().forEach(f -> result.add(new ResourcePoolMetrics(
+						jerseyApp.getApplicationName(), f.getResourceName(), f.getPooledInstanceCount(), 
+						f.getCacheInstanceCount(), f.getPoolHitCount(), f.getPoolMissCount())));
+			}
+		}
+		return result;
+	}
+	
+	/* 
+	 * (non-Javadoc)
+	 * @see org.eclipse.osgitech.rest.runtime.JerseyRuntimeMetrics#getProxyCacheMetrics()
+	 */
+	@Override
+	public ProxyCacheMetrics getProxyCacheMetrics() {
+		return ExtensionProxyCache.getInstance().getMetrics();
+	}
+	
+	/**
+	 * Reads the coalescing configuration from the runtime properties.
+	 * Call while holding {@link #lock}
+	 */
+	private void configureDispatch(Map<String, Object> runtimeProperties) {
+		quietPeriod = getNonNegative(runtimeProperties, JERSEY_DISPATCH_QUIET_PERIOD, DISPATCH_DEFAULT_QUIET_PERIOD);
+		maxDelay = Math.max(quietPeriod, 
+				getNonNegative(runtimeProperties, JERSEY_DISPATCH_MAX_DELAY, DISPATCH_DEFAULT_MAX_DELAY));
+		Object value = runtimeProperties.get(JERSEY_DISPATCH_ADAPTIVE);
+		adaptive = value == null || Boolean.parseBoolean(value.toString());
+		currentQuietPeriod = quietPeriod;
+		
+		int newParallelism = (int) Math.max(1, getNonNegative(runtimeProperties, JERSEY_DISPATCH_PARALLELISM, 1));
+		if (newParallelism != parallelism) {
+			parallelism = newParallelism;
+			if (dispatchPool != null) {
+				retiredPools.add(dispatchPool);
+			}
+			dispatchPool = parallelism == 1 ? null : Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "JerseyServiceRuntime-dispatch-" + count.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+	}
+	
+	private long getNonNegative(Map<String, Object> runtimeProperties, String key, long defaultValue) {
+		Object value = runtimeProperties.get(key);
+		if (value != null) {
+			try {
+				long l = value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString().trim());
+				if (l >= 0) {
+					return l;
+				}
+			} catch (NumberFormatException nfe) {
+				// Logged below
+			}
+			logger.log(Level.WARNING, "The value " + value + " of the property " + key + 
+					" is not a valid non-negative number, using " + defaultValue);
+		}
+		return defaultValue;
+	}
+	
 	/**
 	 * Call while holding {@link #lock}
 	 */
 	private void scheduleUpdate() {
+		lastEvent = Instant.now();
 		if(active == Boolean.TRUE && updateCount == changeCount) {
-			// Wait for at least 50 millis between updates to avoid excessive churn
-			long since = Duration.between(lastUpdate, Instant.now()).toMillis();
-			long delay = since < 50 ? 50 - since : 0;
-			executor.schedule(() -> doInternalUpdate(), delay, TimeUnit.MILLISECONDS);
+			// Wait for a quiet period to coalesce the events that follow this one
+			firstPendingEvent = lastEvent;
+			executor.schedule(() -> doInternalUpdate(), currentQuietPeriod, TimeUnit.MILLISECONDS);
 		}
 	}
 	
@@ -349,16 +560,34 @@ public class JerseyServiceRuntime<C extends Container> {
 		List<JerseyApplicationProvider> applications;
 		List<JerseyExtensionProvider> extensions;
 		List<JerseyResourceProvider> resources;
+		Set<Long> changedServiceIds;
 		
-		Instant update = Instant.now();
+		long cycleEvents;
+		ExecutorService pool;
 		synchronized (lock) {
 			if(active != Boolean.TRUE)
 				return;
-			this.lastUpdate = update;
+			// No dispatch is running, so the replaced pools are no longer used
+			shutdownRetiredPools();
+			Instant now = Instant.now();
+			long quietFor = Duration.between(lastEvent, now).toMillis();
+			long pendingFor = Duration.between(firstPendingEvent, now).toMillis();
+			if(quietFor < currentQuietPeriod && pendingFor < maxDelay) {
+				// Events are still arriving, so wait for them to settle, but no longer than the maximum delay 
+				if(adaptive) {
+					currentQuietPeriod = Math.min(currentQuietPeriod * 2, maxDelay);
+				}
+				long delay = Math.min(currentQuietPeriod - quietFor, maxDelay - pendingFor);
+				executor.schedule(() -> doInternalUpdate(), delay, TimeUnit.MILLISECONDS);
+				return;
+			} else if (quietFor >= currentQuietPeriod) {
+				currentQuietPeriod = quietPeriod;
+			}
+			cycleEvents = updateCount - this.changeCount;
+			pool = dispatchPool;
 			this.changeCount = updateCount;
 			changeCount = updateCount;
-			runtimeProperties = regJakartarsServiceRuntime == null ? Map.copyOf(this.runtimeProperties) :
-				FrameworkUtil.asMap(regJakartarsServiceRuntime.getReference().getProperties());
+			runtimeProperties = getRegisteredRuntimeProperties();
 			// Always use clean copies to avoid polluting the source inputs
 			applications = concat(Stream.of(defaultProvider), applicationContainerMap.values().stream())
 					.map(jap -> jap.cleanCopy()).collect(toList());
@@ -366,13 +595,22 @@ public class JerseyServiceRuntime<C extends Container> {
 					.map(jep -> jep.cleanCopy()).collect(toList());
 			resources = resourceMap.values().stream()
 					.map(jrp -> jrp.cleanCopy()).collect(toList());
+			// After a (re)start or configuration change every application must be checked
+			changedServiceIds = fullUpdate ? null : new HashSet<>(this.changedServiceIds);
+			this.changedServiceIds.clear();
+			fullUpdate = false;
 		}
 		
 		
 		try {
-			doDispatch(runtimeProperties, applications, extensions, resources);
+			long[] phases = new long[4];
+			doDispatch(runtimeProperties, applications, extensions, resources, changedServiceIds, phases, pool);
 			
+			long start = System.nanoTime();
 			RuntimeDTO dto = getUpdatedRuntimeDTO(runtimeProperties, applications, extensions, resources);
+			phases[PHASE_DTO] = System.nanoTime() - start;
+			metrics = metrics.addCycle(cycleEvents, phases[PHASE_VALIDATE], phases[PHASE_ASSIGN], 
+					phases[PHASE_RELOAD], phases[PHASE_DTO]);
 			
 			synchronized (lock) {
 				runtimeDTO = dto;
@@ -382,6 +620,7 @@ public class JerseyServiceRuntime<C extends Container> {
 			
 			if(regJakartarsServiceRuntime == null) {
 				regJakartarsServiceRuntime = context.registerService(JakartarsServiceRuntime.class, this::getRuntimeDTO, properties);
+				registerMetrics();
 			} else {
 				regJakartarsServiceRuntime.setProperties(properties);
 			}
@@ -393,6 +632,7 @@ public class JerseyServiceRuntime<C extends Container> {
 
 		} catch (Exception e) {
 			logger.log(Level.SEVERE, "Error updating JerseyServiceRuntime", e);
+			unregisterMetrics();
 			if (regJakartarsServiceRuntime != null) {
 				regJakartarsServiceRuntime.unregister();
 				regJakartarsServiceRuntime = null;
@@ -400,6 +640,56 @@ public class JerseyServiceRuntime<C extends Container> {
 		} 
 	}
 	
+	/**
+	 * Registers the metrics of this runtime, for the registered {@link JakartarsServiceRuntime}.
+	 * Only to be called by the executor thread
+	 */
+	private void registerMetrics() {
+		Dictionary<String, Object> properties = new Hashtable<>();
+		properties.put(JerseyConstants.JERSEY_RUNTIME_SERVICE_ID, regJakartarsServiceRuntime.getReference().getProperty(SERVICE_ID));
+		properties.put(SERVICE_DESCRIPTION, "The metrics of the Jakartars whiteboard runtime");
+		regMetrics = context.registerService(JerseyRuntimeMetrics.class, this, properties);
+	}
+	
+	/**
+	 * Only to be called by the executor thread
+	 */
+	private void unregisterMetrics() {
+		if (regMetrics != null) {
+			regMetrics.unregister();
+			regMetrics = null;
+		}
+	}
+	
+	/**
+	 * Shuts the replaced dispatch pools down.
+	 * Call while holding {@link #lock}, from the executor thread
+	 */
+	private void shutdownRetiredPools() {
+		retiredPools.forEach(ExecutorService::shutdown);
+		retiredPools.clear();
+	}
+	
+	/**
+	 * Returns the configured runtime properties, with the ones the framework added to the registration. The 
+	 * configured ones are updated by {@link #update(Map)}, so that a new endpoint is advertised by the next cycle.
+	 * Call while holding {@link #lock}
+	 */
+	private Map<String, Object> getRegisteredRuntimeProperties() {
+		if (regJakartarsServiceRuntime == null) {
+			return Map.copyOf(this.runtimeProperties);
+		}
+		Map<String, Object> properties = new HashMap<>(this.runtimeProperties);
+		ServiceReference<?> reference = regJakartarsServiceRuntime.getReference();
+		for (String key : new String[] { OBJECTCLASS, SERVICE_ID, SERVICE_BUNDLEID, SERVICE_SCOPE }) {
+			Object value = reference.getProperty(key);
+			if (value != null) {
+				properties.put(key, value);
+			}
+		}
+		return properties;
+	}
+	
 	/**
 	 * Merges all available properties and adds a fitting changecount
 	 * @return the properties that can be assigned to the changecount
@@ -415,9 +705,18 @@ public class JerseyServiceRuntime<C extends Container> {
 
 	private void doDispatch(Map<String, Object> properties, 
 			List<JerseyApplicationProvider> applications, List<JerseyExtensionProvider> extensions, 
-			List<JerseyResourceProvider> resources) {
+			List<JerseyResourceProvider> resources, Set<Long> changedServiceIds, long[] phases, ExecutorService pool) {
+		long start = System.nanoTime();
 		try {
-		
+
+			/*
+			 * The services are always copied and validated as a whole, also when only a few of them changed.
+			 * A service that comes or goes can shadow or release the path or name of any other one, and change
+			 * the extensions an application selects, so what it affects is only known once all the rules have
+			 * been applied. The rules mark their failures on the copies, which is why they must be clean.
+			 * Only the reload of the containers is limited to the affected applications
+			 */
+
 			/*
 			 * Determine all applications, resources and extension that fit to the whiteboard.
 			 * We only work with those, because all these are possible candidates for the whiteboard
@@ -456,6 +755,7 @@ public class JerseyServiceRuntime<C extends Container> {
 					.map(JerseyExtensionProvider.class::cast)
 					.collect(Collectors.toUnmodifiableList());			
 			
+			start = endPhase(phases, PHASE_VALIDATE, start);
 			
 //				Assign extension to apps and report a failure DTO for those extensions which have not been assigned to any app
 			assignContent(applicationCandidates, extensionCandidates);
@@ -499,20 +799,60 @@ public class JerseyServiceRuntime<C extends Container> {
 //				otherwise the service should result in a failure DTO
 			checkExtensionSelectForResources(applicationCandidates, resources, properties);
 			
+			start = endPhase(phases, PHASE_ASSIGN, start);
+			
 			// We now have our full set of applications
 			
-			for(JerseyApplicationProvider jap : applicationCandidates) {
-				C c = containersByPath.get(jap.getPath());
+			// Containers are created in path order, so that they are registered deterministically.
+			// With a dispatch pool the applications are then built and reloaded in parallel
+			List<Runnable> loads = new ArrayList<>();
+			List<JerseyApplicationProvider> orderedCandidates = applicationCandidates.stream()
+					.sorted(Comparator.comparing(JerseyApplicationProvider::getPath))
+					.collect(toList());
+			for(JerseyApplicationProvider jap : orderedCandidates) {
+				String path = jap.getPath();
+				C c = containersByPath.get(path);
 				if(c == null) {
-					c = containerFactory.apply(jap.getPath(), jap.getJakartarsApplication());
-					containersByPath.put(jap.getPath(), c);
+					ResourceConfig config = jap.getJakartarsApplication();
+					if(pool == null) {
+						c = containerFactory.apply(path, config);
+					} else {
+						C created = WhiteboardServletContainer.createDeferred(() -> containerFactory.apply(path, config));
+						loads.add(() -> created.reload(config));
+						c = created;
+					}
+					containersByPath.put(path, c);
+					dispatchedByPath.put(path, jap);
+					continue;
+				}
+				
+				JerseyApplicationProvider dispatched = dispatchedByPath.get(path);
+				if(dispatched != null && !isAffected(dispatched, jap, changedServiceIds)) {
+					// Nothing this application depends on has changed, so we keep the deployed 
+					// application and use it in place of the fresh copy for the runtime DTO 
+					skippedReloads.incrementAndGet();
+					applications.set(applications.indexOf(jap), dispatched);
 					continue;
 				}
 				
 				Application application = c.getConfiguration().getApplication();
-				if(jap.isChanged(application)) {
+				if(dispatched != null && !jap.isChanged(application)) {
+					// The deployed application has the same content, so a reload would only 
+					// rebuild an identical Jersey application
+					skippedReloads.incrementAndGet();
+					applications.set(applications.indexOf(jap), dispatched);
+					continue;
+				}
+				if(pool == null) {
 					c.reload(jap.getJakartarsApplication());
+				} else {
+					C toReload = c;
+					loads.add(() -> toReload.reload(jap.getJakartarsApplication()));
 				}
+				dispatchedByPath.put(path, jap);
+			}
+			if(!loads.isEmpty()) {
+				loadInParallel(pool, loads);
 			}
 			Set<String> paths = applicationCandidates.stream()
 					.map(JerseyApplicationProvider::getPath)
@@ -527,13 +867,92 @@ public class JerseyServiceRuntime<C extends Container> {
 						containerDestroyer.accept(e.getKey(), container);
 					}
 					it.remove();
+					dispatchedByPath.remove(e.getKey());
 				}
 			}
+			deployedContainers = new ArrayList<>(containersByPath.values());
+			
+			endPhase(phases, PHASE_RELOAD, start);
 		} catch (Exception e) {
+			// We do not know what state the containers are in, so the next update must check them all
+			dispatchedByPath.clear();
+			deployedContainers = new ArrayList<>(containersByPath.values());
 			e.printStackTrace();
 		}
 	}
 	
+	/**
+	 * Runs the container loads on the dispatch pool and waits for all of them to finish. A load the 
+	 * pool does not accept runs on the calling thread, so that every container is built in this cycle
+	 * @throws Exception the first failure, with any others suppressed
+	 */
+	private void loadInParallel(ExecutorService pool, List<Runnable> loads) throws Exception {
+		List<Future<?>> futures = new ArrayList<>();
+		for(Runnable load : loads) {
+			try {
+				futures.add(pool.submit(load));
+			} catch (RejectedExecutionException e) {
+				logger.log(Level.WARNING, "The dispatch pool rejected a container load, it is run serially");
+				FutureTask<?> task = new FutureTask<>(load, null);
+				task.run();
+				futures.add(task);
+			}
+		}
+		Exception failure = null;
+		for(Future<?> f : futures) {
+			try {
+				f.get();
+			} catch (ExecutionException ee) {
+				Exception e = ee.getCause() instanceof Exception ? (Exception) ee.getCause() : ee;
+				if(failure == null) {
+					failure = e;
+				} else {
+					failure.addSuppressed(e);
+				}
+			}
+		}
+		if(failure != null) {
+			throw failure;
+		}
+	}
+	
+	/**
+	 * Records the time spent in a dispatch phase
+	 * @return the start time of the next phase
+	 */
+	private long endPhase(long[] phases, int phase, long start) {
+		long end = System.nanoTime();
+		phases[phase] = end - start;
+		return end;
+	}
+	
+	/**
+	 * Determines whether an application, which is currently deployed, has to be recomputed. 
+	 * This is the case if the application itself, or any content that it had or now has, 
+	 * was added, modified or removed since the last update. 
+	 * 
+	 * @param dispatched the application currently deployed at the path
+	 * @param candidate the freshly validated application for the same path
+	 * @param changedServiceIds the ids of all services changed since the last update, 
+	 * or <code>null</code> if every service must be treated as changed
+	 * @return <code>true</code> if the candidate must be used to update the container
+	 */
+	private boolean isAffected(JerseyApplicationProvider dispatched, JerseyApplicationProvider candidate, 
+			Set<Long> changedServiceIds) {
+		if(changedServiceIds == null || !Objects.equals(dispatched.getServiceId(), candidate.getServiceId()) 
+				|| changedServiceIds.contains(candidate.getServiceId())) {
+			return true;
+		}
+		Set<Long> dispatchedContent = dispatched.getContentProviders().stream()
+				.map(AbstractJakartarsProvider::getServiceId)
+				.collect(toSet());
+		Set<Long> candidateContent = candidate.getContentProviders().stream()
+				.map(AbstractJakartarsProvider::getServiceId)
+				.collect(toSet());
+		return !dispatchedContent.equals(candidateContent) 
+				|| candidateContent.stream().anyMatch(changedServiceIds::contains);
+	}
+	
 	/**
 	 * 151.6.1: The base URI for each application within the whiteboard must be unique. 
 	 * If two or more applications targeting the same whiteboard are registered with the same base URI 
@@ -557,15 +976,12 @@ public class JerseyServiceRuntime<C extends Container> {
 		logger.fine("App Candidates size AFTER ordering " + applicationCandidates.size());
 
 		
-		for(int i = 0; i < applicationCandidates.size(); i++) {
-			JerseyApplicationProvider a1 = applicationCandidates.get(i);
-			String path = a1.getPath();
-			for(int j = i+1; j < applicationCandidates.size(); j++) {
-				JerseyApplicationProvider a2 = applicationCandidates.get(j);
-				if(path.equals(a2.getPath())) {
-					logger.fine("Failing DTO status for App " + a2.getId());						
-					a2.updateStatus(DTOConstants.FAILURE_REASON_SHADOWED_BY_OTHER_SERVICE);
-				}
+		// The candidates are ordered by rank, so the first application for a path wins
+		Set<String> paths = new HashSet<>();
+		for(JerseyApplicationProvider a : applicationCandidates) {
+			if(!paths.add(a.getPath())) {
+				logger.fine("Failing DTO status for App " + a.getId());						
+				a.updateStatus(DTOConstants.FAILURE_REASON_SHADOWED_BY_OTHER_SERVICE);
 			}
 		}
 		return applicationCandidates.stream().filter(not(AbstractJakartarsProvider::isFailed)).collect(toList());
@@ -591,18 +1007,15 @@ public class JerseyServiceRuntime<C extends Container> {
 				.sorted()
 				.collect(toUnmodifiableList());
 			
-		for(int i = 0; i < allCandidates.size(); i++) {
-			AbstractJakartarsProvider<?> p = allCandidates.get(i);
-			String name = p.getName();
-			String id = p.getId();
-			for(int j = i+1; j < allCandidates.size(); j++) {
-				AbstractJakartarsProvider<?> p2 = allCandidates.get(j);	
-				// If they have the same name and different services the latter fails
-				// This can happen if the same service is a resource and an extension
-				if(name.equals(p2.getName()) && !id.equals(p2.getId())) {
-					logger.info("Adding failure " + p2.getId() + " with name " + p2.getName() + " compared with " + p.getId());
-					p2.updateStatus(DTOConstants.FAILURE_REASON_DUPLICATE_NAME);						
-				}
+		// The candidates are ordered by rank, so the first service with a name wins
+		Map<String, AbstractJakartarsProvider<?>> byName = new HashMap<>();
+		for(AbstractJakartarsProvider<?> p : allCandidates) {
+			AbstractJakartarsProvider<?> first = byName.putIfAbsent(p.getName(), p);
+			// If they have the same name and different services the latter fails
+			// This can happen if the same service is a resource and an extension
+			if(first != null && !first.getId().equals(p.getId())) {
+				logger.info("Adding failure " + p.getId() + " with name " + p.getName() + " compared with " + first.getId());
+				p.updateStatus(DTOConstants.FAILURE_REASON_DUPLICATE_NAME);						
 			}
 		}
 		
@@ -612,10 +1025,34 @@ public class JerseyServiceRuntime<C extends Container> {
 	private void assignContent(Collection<JerseyApplicationProvider> candidates,
 			Collection<? extends JerseyApplicationContentProvider> content) {
 		
+		/*
+		 * Index the applications by name, so that content selecting applications by name 
+		 * only evaluates its filter against those. Applications with a name property that 
+		 * is not a plain String could match in other ways and are always evaluated 
+		 */
+		Map<String, List<JerseyApplicationProvider>> byName = new HashMap<>();
+		List<JerseyApplicationProvider> unindexed = new ArrayList<>();
+		for(JerseyApplicationProvider jap : candidates) {
+			Object name = jap.getProviderProperties().get(JAKARTA_RS_NAME);
+			if(name instanceof String) {
+				byName.computeIfAbsent((String) name, k -> new ArrayList<>()).add(jap);
+			} else if(name != null) {
+				unindexed.add(jap);
+			}
+		}
+		
 		// determine all content that match an application and returns the ones that found a match
 		for(JerseyApplicationContentProvider jacp : content) {
 			boolean matched = false;
-			for(JerseyApplicationProvider jap : candidates) {
+			Set<String> selectedNames = jacp.getSelectedApplicationNames();
+			Collection<JerseyApplicationProvider> toCheck;
+			if(selectedNames == null) {
+				toCheck = candidates;
+			} else {
+				toCheck = new ArrayList<>(unindexed);
+				selectedNames.forEach(n -> toCheck.addAll(byName.getOrDefault(n, List.of())));
+			}
+			for(JerseyApplicationProvider jap : toCheck) {
 				if(jacp.canHandleApplication(jap)) {
 					logger.info("Added content " + jacp.getName() + " to application " + jap.getName() + " " + jacp.getObjectClass());
 					matched = true;
@@ -776,13 +1213,29 @@ public class JerseyServiceRuntime<C extends Container> {
 		synchronized (lock) {
 			active = Boolean.FALSE;
 		}
+		try {
+			context.removeBundleListener(proxyCacheListener);
+		} catch (IllegalStateException e) {
+			// The bundle is already stopped
+		}
 		try {
 			Future<?> f = executor.submit(() -> {
+				unregisterMetrics();
 				if(regJakartarsServiceRuntime != null) {
 					regJakartarsServiceRuntime.unregister();
 					regJakartarsServiceRuntime = null;
 				}
 				containersByPath.entrySet().forEach(e -> containerDestroyer.accept(e.getKey(), e.getValue()));
+				dispatchedByPath.clear();
+				deployedContainers = List.of();
+				synchronized (lock) {
+					if(dispatchPool != null) {
+						dispatchPool.shutdown();
+						dispatchPool = null;
+						parallelism = 1;
+					}
+					shutdownRetiredPools();
+				}
 			});
 			executor.shutdown();
 			f.get(time, TimeUnit.SECONDS);
@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2012 - 2022 Data In Motion and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Data In Motion - initial API and implementation
+ *     Stefan Bishof - API and implementation
+ *     Tim Ward - implementation
+ */
+package org.eclipse.osgitech.rest.runtime;
+
+import org.eclipse.osgitech.rest.proxy.ExtensionProxyCache;
+
+/**
+ * An immutable snapshot of the metrics of the {@link ExtensionProxyCache}, which holds the extension 
+ * proxy classes of all the whiteboard runtimes
+ * @since 1.2
+ */
+public final class ProxyCacheMetrics {
+
+	private final int size;
+	private final long hits;
+	private final long misses;
+	private final long evictions;
+	private final long cachedBytes;
+	private final int loadedClasses;
+	private final long unloadedClasses;
+	private final long metaspaceUsed;
+
+	/**
+	 * Only created by the {@link ExtensionProxyCache}
+	 */
+	public ProxyCacheMetrics(int size, long hits, long misses, long evictions, long cachedBytes,
+			int loadedClasses, long unloadedClasses, long metaspaceUsed) {
+		this.size = size;
+		this.hits = hits;
+		this.misses = misses;
+		this.evictions = evictions;
+		this.cachedBytes = cachedBytes;
+		this.loadedClasses = loadedClasses;
+		this.unloadedClasses = unloadedClasses;
+		this.metaspaceUsed = metaspaceUsed;
+	}
+
+	/**
+	 * @return the number of proxy classes in the cache
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * @return the number of requests answered with a cached class
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of requests that generated a new class
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the number of classes removed from the cache
+	 */
+	public long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return the size of the bytecode of the cached classes
+	 */
+	public long getCachedBytes() {
+		return cachedBytes;
+	}
+
+	/**
+	 * @return the number of classes currently loaded in the JVM
+	 */
+	public int getLoadedClasses() {
+		return loadedClasses;
+	}
+
+	/**
+	 * @return the number of classes unloaded by the JVM since it started
+	 */
+	public long getUnloadedClasses() {
+		return unloadedClasses;
+	}
+
+	/**
+	 * @return the used metaspace of the JVM in bytes, or -1 if it is not known
+	 */
+	public long getMetaspaceUsed() {
+		return metaspaceUsed;
+	}
+
+	@Override
+	public String toString() {
+		return "ProxyCacheMetrics [size=" + size + ", hits=" + hits + ", misses=" + misses + ", evictions="
+				+ evictions + ", cachedBytes=" + cachedBytes + ", loadedClasses=" + loadedClasses
+				+ ", unloadedClasses=" + unloadedClasses + ", metaspaceUsed=" + metaspaceUsed + "]";
+	}
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2012 - 2022 Data In Motion and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Data In Motion - initial API and implementation
+ *     Stefan Bishof - API and implementation
+ *     Tim Ward - implementation
+ */
+package org.eclipse.osgitech.rest.runtime;
+
+/**
+ * An immutable snapshot of the instance pool of a prototype resource, deployed by a {@link JerseyServiceRuntime}.
+ * Only resources with the {@link org.eclipse.osgitech.rest.provider.JerseyConstants#JERSEY_PROTOTYPE_POOL_SIZE}
+ * property have a pool. The counts start again when the application is reloaded.
+ * @since 1.2
+ */
+public final class ResourcePoolMetrics {
+
+	private final String applicationName;
+	private final String resourceName;
+	private final int pooledInstances;
+	private final int activeInstances;
+	private final long hits;
+	private final long misses;
+
+	ResourcePoolMetrics(String applicationName, String resourceName, int pooledInstances, int activeInstances,
+			long hits, long misses) {
+		this.applicationName = applicationName;
+		this.resourceName = resourceName;
+		this.pooledInstances = pooledInstances;
+		this.activeInstances = activeInstances;
+		this.hits = hits;
+		this.misses = misses;
+	}
+
+	/**
+	 * @return the name of the application serving the resource
+	 */
+	public String getApplicationName() {
+		return applicationName;
+	}
+
+	/**
+	 * @return the name of the resource
+	 */
+	public String getResourceName() {
+		return resourceName;
+	}
+
+	/**
+	 * @return the number of idle instances in the pool
+	 */
+	public int getPooledInstances() {
+		return pooledInstances;
+	}
+
+	/**
+	 * @return the number of instances handed out to requests
+	 */
+	public int getActiveInstances() {
+		return activeInstances;
+	}
+
+	/**
+	 * @return the number of requests that reused a pooled instance
+	 */
+	public long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of requests that had to get a new instance
+	 */
+	public long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the share of requests that reused a pooled instance, 0 if no request was served
+	 */
+	public double getHitRate() {
+		long total = hits + misses;
+		return total == 0 ? 0 : (double) hits / total;
+	}
+
+	@Override
+	public String toString() {
+		return "ResourcePoolMetrics [applicationName=" + applicationName + ", resourceName=" + resourceName
+				+ ", pooledInstances=" + pooledInstances + ", activeInstances=" + activeInstances + ", hits=" + hits
+				+ ", misses=" + misses + "]";
+	}
+}
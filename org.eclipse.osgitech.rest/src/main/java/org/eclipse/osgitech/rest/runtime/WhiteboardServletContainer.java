@@ -1,11 +1,11 @@
 /**
  * Copyright (c) 2012 - 2022 Data In Motion and others.
- * All rights reserved. 
- * 
- * This program and the accompanying materials are made available under the terms of the 
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the terms of the
  * Eclipse Public License v2.0 which accompanies this distribution, and is available at
  * http://www.eclipse.org/legal/epl-v20.html
- * 
+ *
  * Contributors:
  *     Data In Motion - initial API and implementation
  *     Stefan Bishof - API and implementation
@@ -14,23 +14,38 @@
 package org.eclipse.osgitech.rest.runtime;
 
 import java.io.IOException;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.eclipse.osgitech.rest.annotations.RequireJerseyServlet;
 import org.eclipse.osgitech.rest.provider.jakartars.RuntimeDelegateService;
+import org.eclipse.osgitech.rest.runtime.application.JerseyApplication;
 import org.glassfish.jersey.server.ApplicationHandler;
 import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.server.spi.AbstractContainerLifecycleListener;
+import org.glassfish.jersey.server.spi.Container;
 import org.glassfish.jersey.servlet.ServletContainer;
+import org.glassfish.jersey.servlet.WebComponent;
 
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
 import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.core.Application;
 
 /**
- * As Wrapper for the {@link ServletContainer} that locks the Servlet while its configuration is reloaded.
+ * As Wrapper for the {@link ServletContainer} that swaps in a new Jersey application when its configuration
+ * is reloaded. The new application is built next to the current one and published atomically, so requests
+ * never wait for a reload and do not take any lock. The replaced application is shut down as soon as all the
+ * requests it is processing, including asynchronous ones, have completed.
  * Furthermore it takes care that a reload is done, if a new configuration comes available while it is initialized
  * @author Juergen Albert
  * @since 1.0
@@ -39,17 +54,56 @@ import jakarta.servlet.http.HttpServletResponse;
 public class WhiteboardServletContainer extends ServletContainer {
 
 	/**
-	 * 
+	 *
 	 */
 	private static final long serialVersionUID = 6509888299005723799L;
 
-	private ResourceConfig initialConfig = null;;
+	/** 
+	 * Set while containers are created that do not build their application when first initialized. 
+	 * Kept out of the configuration, which belongs to the application provider 
+	 */
+	private static final ThreadLocal<Boolean> DEFERRED_INIT = new ThreadLocal<>();
+
+	private static final Logger logger = Logger.getLogger("jersey.servletContainer");
+
+	/** The most recently supplied configuration, used when the container is (re)initialized */
+	private volatile ResourceConfig configuration;
+
+	/** The generation serving requests, <code>null</code> if not initialized */
+	private final AtomicReference<Generation> current = new AtomicReference<>();
+
+	/** Serializes init, reload and destroy. Never used on the request path */
+	private final Object lifecycleLock = new Object();
+
+	/** Whether the servlet is initialized, protected by {@link #lifecycleLock} */
+	private boolean initialized;
+
+	/** Whether the first init waits for a reload to build the application, protected by {@link #lifecycleLock} */
+	private boolean awaitingReload;
 
-	private final AtomicBoolean initialized = new AtomicBoolean();
-	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+	/** Registered with every deployed configuration to learn when Jersey has started it */
+	private final StartupSignal startupSignal = new StartupSignal();
 
 	public WhiteboardServletContainer(ResourceConfig config) {
-		initialConfig = config;
+		configuration = config;
+		awaitingReload = Boolean.TRUE.equals(DEFERRED_INIT.get());
+	}
+
+	/**
+	 * Creates containers that do not build the application when they are first initialized. The 
+	 * application is built by the first {@link #reload(ResourceConfig)} instead, which allows the 
+	 * creator to build many applications in parallel after registering their containers. 
+	 * The factory must create the containers on the calling thread
+	 * @param factory creates the container
+	 * @return the created container
+	 */
+	static <C> C createDeferred(Supplier<C> factory) {
+		DEFERRED_INIT.set(Boolean.TRUE);
+		try {
+			return factory.get();
+		} finally {
+			DEFERRED_INIT.remove();
+		}
 	}
 
 	/* (non-Javadoc)
@@ -57,118 +111,276 @@ public class WhiteboardServletContainer extends ServletContainer {
 	 */
 	@Override
 	public void init() throws ServletException {
-		
-		lock.writeLock().lock();
-		
-		try {
-			ClassLoader oldTccl = Thread.currentThread().getContextClassLoader();
-			try {
-				Thread.currentThread().setContextClassLoader(RuntimeDelegateService.class.getClassLoader());
-				
-				super.init();
-				// we have to wait until the injection manager is available on first start
-				Future<?> future = Executors.newSingleThreadExecutor().submit(()->{
-					ApplicationHandler handler = getApplicationHandler();
-					while(handler.getInjectionManager() == null) {
-						try {
-							Thread.sleep(10l);
-						} catch (InterruptedException e) {
-						}
-					}
-				});
-				future.get();
-				initialized.set(true);
-				if (initialConfig != null) {
-					this.reload(initialConfig);
-					initialConfig = null;
-				}
-			} catch (Exception e) {
-				if (e instanceof ServletException) {
-					throw (ServletException)e;
-				} else {
-					throw new ServletException(e);
-				}
-			} finally {
-				Thread.currentThread().setContextClassLoader(oldTccl);
+		synchronized (lifecycleLock) {
+			initialized = true;
+			if (awaitingReload) {
+				// The application is built by the reload
+				return;
+			}
+			Generation generation = createGeneration(configuration);
+			Generation old = current.getAndSet(generation);
+			if (old != null) {
+				old.retire();
 			}
-		} finally {
-			lock.writeLock().unlock();
 		}
 	}
-	
+
+	/* (non-Javadoc)
+	 * @see org.glassfish.jersey.servlet.ServletContainer#reload()
+	 */
+	@Override
+	public void reload() {
+		reload(new ResourceConfig(getConfiguration()));
+	}
+
 	/* (non-Javadoc)
 	 * @see org.glassfish.jersey.servlet.ServletContainer#reload(org.glassfish.jersey.server.ResourceConfig)
 	 */
 	@Override
 	public void reload(ResourceConfig configuration) {
-		lock.writeLock().lock();
-		try {
-			if (initialized.get()) {
-				try {
-					super.reload(configuration);
-				} catch (IllegalStateException ise) {
-					// TODO can we avoid this completely
-					// Sometimes when reloading we find the application is in a bad state
-					if(getApplicationHandler().getInjectionManager().isShutdown()) {
-						try {
-							this.initialConfig = configuration;
-							init();
-						} catch (ServletException e) {
-							throw ise;
-						}
-					}
-				}
-			} else {
-				initialConfig = configuration;
+		synchronized (lifecycleLock) {
+			this.configuration = configuration;
+			awaitingReload = false;
+			if (!initialized) {
+				// Not yet initialized, the configuration will be used by init
+				return;
+			}
+			Generation generation;
+			try {
+				generation = createGeneration(configuration);
+			} catch (ServletException e) {
+				throw new IllegalStateException("Unable to reload the application " +
+						configuration.getApplicationName(), e);
+			}
+			Generation old = current.getAndSet(generation);
+			if (old != null) {
+				old.retire();
 			}
-		} finally {
-			lock.writeLock().unlock();
 		}
 	}
-	
+
 	/* (non-Javadoc)
 	 * @see org.glassfish.jersey.servlet.ServletContainer#service(javax.servlet.http.HttpServletRequest, javax.servlet.http.HttpServletResponse)
 	 */
 	@Override
 	protected void service(HttpServletRequest request, HttpServletResponse response)
 			throws ServletException, IOException {
-		lock.readLock().lock();
+		Generation generation;
+		do {
+			generation = current.get();
+			if (generation == null) {
+				response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+				return;
+			}
+			// A failed enter means the generation was retired after we read it
+		} while (!generation.enter());
+
+		boolean async = false;
 		try {
-			super.service(request, response);
+			generation.container.service((ServletRequest) request, response);
+			if (request.isAsyncStarted()) {
+				request.getAsyncContext().addListener(generation.new AsyncExit());
+				async = true;
+			}
 		} finally {
-			lock.readLock().unlock();
+			if (!async) {
+				generation.exit();
+			}
 		}
 	}
-	
-	/* 
+
+	/*
 	 * (non-Javadoc)
 	 * @see org.glassfish.jersey.servlet.ServletContainer#destroy()
 	 */
 	@Override
 	public void destroy() {
-		lock.writeLock().lock();
-		try {
-			initialized.set(false);
-			super.destroy();
-		} finally {
-			lock.writeLock().unlock();
+		synchronized (lifecycleLock) {
+			initialized = false;
+			Generation old = current.getAndSet(null);
+			if (old != null) {
+				old.retire();
+			}
 		}
 	}
-	
+
 	@Override
 	public ResourceConfig getConfiguration() {
-		lock.readLock().lock();
+		Generation generation = current.get();
+		return generation == null ? configuration : generation.container.getConfiguration();
+	}
+
+	@Override
+	public ApplicationHandler getApplicationHandler() {
+		Generation generation = current.get();
+		return generation == null ? null : generation.container.getApplicationHandler();
+	}
+
+	@Override
+	public WebComponent getWebComponent() {
+		Generation generation = current.get();
+		return generation == null ? null : generation.container.getWebComponent();
+	}
+
+	public void dispose() {
+	}
+
+	/**
+	 * Builds and initializes a new Jersey container for the given configuration.
+	 * Must be called holding the {@link #lifecycleLock}
+	 */
+	private Generation createGeneration(ResourceConfig config) throws ServletException {
+		CompletableFuture<ApplicationHandler> started = new CompletableFuture<>();
+		startupSignal.pending = started;
+		ServletContainer container = new ServletContainer(withStartupSignal(config));
+		ClassLoader oldTccl = Thread.currentThread().getContextClassLoader();
 		try {
-			if(initialConfig != null) {
-				return initialConfig;
-			} else {
-				return super.getConfiguration();
-			}
+			Thread.currentThread().setContextClassLoader(RuntimeDelegateService.class.getClassLoader());
+			container.init(getServletConfig());
 		} finally {
-			lock.readLock().unlock();
+			startupSignal.pending = null;
+			Thread.currentThread().setContextClassLoader(oldTccl);
+		}
+		// Jersey starts the application as part of the container initialization
+		if (!started.isDone()) {
+			container.destroy();
+			throw new ServletException("The application " + container.getConfiguration().getApplicationName() + 
+					" was not started by Jersey");
 		}
+		return new Generation(container);
 	}
 
-	public void dispose() {
+	/**
+	 * Returns a copy of the configuration that contains the startup signal. The configuration belongs 
+	 * to the caller and is never modified. The copy of a configuration wrapping an application wraps 
+	 * the same application, so that its content and identity are kept. A whiteboard application is only 
+	 * wrapped by its first copy, later copies, e.g. when re-initialized, wrap a new instance of it, 
+	 * because its content is released when the container that started it shuts down
+	 */
+	@SuppressWarnings("deprecation")
+	private ResourceConfig withStartupSignal(ResourceConfig config) {
+		ResourceConfig copy;
+		if (config == null) {
+			copy = new ResourceConfig();
+		} else if (config.getApplication() == config) {
+			copy = new ResourceConfig(config);
+		} else {
+			Application application = config.getApplication();
+			copy = ResourceConfig.forApplication(application instanceof JerseyApplication ? 
+					((JerseyApplication) application).claim() : application);
+			copy.setApplicationName(config.getApplicationName());
+			copy.setClassLoader(config.getClassLoader());
+			copy.addProperties(config.getProperties());
+			// The content of the application is merged by the copy itself
+			Set<Class<?>> classes = new HashSet<>(config.getConfiguration().getClasses());
+			classes.removeAll(application.getClasses());
+			copy.registerClasses(classes);
+			Set<Object> instances = new HashSet<>(config.getConfiguration().getInstances());
+			instances.removeAll(application.getSingletons());
+			copy.registerInstances(instances);
+		}
+		// Deployed before, e.g. when re-initialized
+		if (!copy.isRegistered(startupSignal)) {
+			copy.register(startupSignal);
+		}
+		return copy;
+	}
+
+	/**
+	 * Signals that Jersey has started an application and its injection manager is available
+	 */
+	private static class StartupSignal extends AbstractContainerLifecycleListener {
+
+		/** The startup being waited for, only set while holding the {@link WhiteboardServletContainer#lifecycleLock} */
+		private volatile CompletableFuture<ApplicationHandler> pending;
+
+		@Override
+		public void onStartup(Container container) {
+			CompletableFuture<ApplicationHandler> started = pending;
+			if (started != null) {
+				started.complete(container.getApplicationHandler());
+			}
+		}
+	}
+
+	/**
+	 * One deployed version of the application, together with a count of the requests that it
+	 * is processing. Once retired it accepts no new requests and is destroyed as soon as the
+	 * count reaches zero.
+	 */
+	private static class Generation {
+
+		private static final int RETIRED = Integer.MIN_VALUE;
+
+		private final ServletContainer container;
+
+		/** The in-flight request count, with the sign bit set once retired */
+		private final AtomicInteger state = new AtomicInteger();
+
+		Generation(ServletContainer container) {
+			this.container = container;
+		}
+
+		/**
+		 * Registers a request with this generation
+		 * @return <code>false</code> if this generation is retired and must not be used
+		 */
+		boolean enter() {
+			int s;
+			do {
+				s = state.get();
+				if ((s & RETIRED) != 0) {
+					return false;
+				}
+			} while (!state.compareAndSet(s, s + 1));
+			return true;
+		}
+
+		void exit() {
+			if (state.decrementAndGet() == RETIRED) {
+				shutdown();
+			}
+		}
+
+		void retire() {
+			if (state.getAndUpdate(s -> s | RETIRED) == 0) {
+				shutdown();
+			}
+		}
+
+		private void shutdown() {
+			try {
+				container.destroy();
+			} catch (Exception e) {
+				logger.log(Level.WARNING, "Error destroying a retired application", e);
+			}
+		}
+
+		/**
+		 * Ends the request for this generation once an asynchronous request completes
+		 */
+		private class AsyncExit implements AsyncListener {
+
+			@Override
+			public void onComplete(AsyncEvent event) throws IOException {
+				exit();
+			}
+
+			@Override
+			public void onTimeout(AsyncEvent event) throws IOException {
+				// The container completes the request afterwards
+			}
+
+			@Override
+			public void onError(AsyncEvent event) throws IOException {
+				// The container completes the request afterwards
+			}
+
+			@Override
+			public void onStartAsync(AsyncEvent event) throws IOException {
+				// Stay registered when the request is suspended again
+				event.getAsyncContext().addListener(this);
+			}
+		}
 	}
 }
@@ -13,14 +13,17 @@
  */
 package org.eclipse.osgitech.rest.runtime.application;
 
+import static java.util.stream.Collectors.toUnmodifiableList;
 import static java.util.stream.Collectors.toUnmodifiableSet;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -30,6 +33,7 @@ import org.eclipse.osgitech.rest.binder.PromiseResponseHandlerBinder;
 import org.eclipse.osgitech.rest.binder.PrototypeServiceBinder;
 import org.eclipse.osgitech.rest.factories.InjectableFactory;
 import org.eclipse.osgitech.rest.factories.JerseyResourceInstanceFactory;
+import org.eclipse.osgitech.rest.provider.JerseyConstants;
 import org.eclipse.osgitech.rest.runtime.application.feature.WhiteboardFeature;
 import org.glassfish.jersey.internal.inject.InjectionManager;
 import org.glassfish.jersey.server.spi.AbstractContainerLifecycleListener;
@@ -59,12 +63,18 @@ public class JerseyApplication extends Application {
 	private final Map<Class<?>, InjectableFactory<?>> factories = new HashMap<>();
 	private final WhiteboardFeature whiteboardFeature;
 	private final Set<Object> appSingletons;
+	private final Map<String, Object> additionalProperties;
+	private final List<JerseyApplicationContentProvider> providers;
+	private final AtomicBoolean claimed = new AtomicBoolean();
+	private String fingerprint;
 
 	@SuppressWarnings("deprecation")
 	public JerseyApplication(String applicationName, Application sourceApplication, Map<String, Object> additionalProperites,
 			List<JerseyApplicationContentProvider> providers) {
 		this.applicationName = applicationName;
 		this.sourceApplication = sourceApplication;
+		this.additionalProperties = additionalProperites;
+		this.providers = new ArrayList<>(providers);
 		Map<String, Object> props = new HashMap<String, Object>();
 		if(additionalProperites != null) {
 			props.put(JakartarsWhiteboardConstants.JAKARTA_RS_APPLICATION_SERVICE_PROPERTIES, additionalProperites);
@@ -86,10 +96,25 @@ public class JerseyApplication extends Application {
 		appSingletons.addAll(sourceApplication.getSingletons());
 		appSingletons.add(whiteboardFeature);
 		appSingletons.add(resourceFactory);
+		appSingletons.add(new PromiseResponseHandlerBinder(getPromiseTimeout(additionalProperites)));
 		appSingletons.add(new ContainerLifecycleTracker());
 		
 	}
 
+	private long getPromiseTimeout(Map<String, Object> applicationProperties) {
+		Object value = applicationProperties == null ? null : applicationProperties.get(JerseyConstants.JERSEY_PROMISE_TIMEOUT);
+		if (value == null) {
+			return 0;
+		}
+		try {
+			return Math.max(0, value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString().trim()));
+		} catch (NumberFormatException e) {
+			log.log(Level.WARNING, "The value " + value + " of the property " + JerseyConstants.JERSEY_PROMISE_TIMEOUT + 
+					" of the application " + applicationName + " is not a valid number, promises are awaited indefinitely");
+			return 0;
+		}
+	}
+
 	@Override
 	public Map<String, Object> getProperties() {
 		return properties;
@@ -102,7 +127,7 @@ public class JerseyApplication extends Application {
 	@Override
 	public Set<Class<?>> getClasses() {
 		return Stream.of(classes.values().stream(), sourceApplication.getClasses().stream(),
-				Stream.of(PromiseResponseHandlerBinder.class, AsyncContextDelegateProviderImpl.class, FilterUrlMappingsProviderImpl.class))
+				Stream.of(AsyncContextDelegateProviderImpl.class, FilterUrlMappingsProviderImpl.class))
 				.flatMap(Function.identity())
 				.collect(toUnmodifiableSet());
 	}
@@ -119,6 +144,10 @@ public class JerseyApplication extends Application {
 	
 	public void dispose() {
 		whiteboardFeature.dispose();
+		// Releases the prototype instances, including the pooled ones
+		factories.values().stream()
+			.filter(JerseyResourceInstanceFactory.class::isInstance)
+			.forEach(f -> ((JerseyResourceInstanceFactory<?>) f).dispose());
 		singletons.forEach((k,v) -> {
 			JerseyApplicationContentProvider provider = contentProviders.get(k);
 			Object providerObj = provider.getProviderObject();
@@ -135,6 +164,42 @@ public class JerseyApplication extends Application {
 		singletons.clear();
 	}
 	
+	/**
+	 * Returns an application to be started by a new Jersey container. The first call returns this 
+	 * application, every further call a new instance with the same content. The content of an 
+	 * application is released when the container that started it shuts down, so it must not be 
+	 * started a second time
+	 * @return this application, or a new instance with the same content
+	 */
+	public JerseyApplication claim() {
+		if (claimed.compareAndSet(false, true)) {
+			return this;
+		}
+		JerseyApplication application;
+		try {
+			// Keeps the dynamic subclasses carrying an ApplicationPath
+			application = getClass().getConstructor(String.class, Application.class, Map.class, List.class)
+					.newInstance(applicationName, sourceApplication, additionalProperties, providers);
+		} catch (ReflectiveOperationException e) {
+			throw new IllegalStateException("Cannot create a new instance of the application " + applicationName, e);
+		}
+		application.claimed.set(true);
+		application.setFingerprint(fingerprint);
+		return application;
+	}
+	
+	/**
+	 * Returns the factories of the prototype resources that keep their instances in a pool
+	 * @return the factories of the pooled resources
+	 */
+	public List<JerseyResourceInstanceFactory<?>> getPooledResourceFactories() {
+		return factories.values().stream()
+				.filter(JerseyResourceInstanceFactory.class::isInstance)
+				.<JerseyResourceInstanceFactory<?>>map(f -> (JerseyResourceInstanceFactory<?>) f)
+				.filter(JerseyResourceInstanceFactory::isPooled)
+				.collect(toUnmodifiableList());
+	}
+	
 	/**
 	 * Returns the name of the whiteboard
 	 * @return the name of the whiteboard
@@ -204,6 +269,22 @@ public class JerseyApplication extends Application {
 		
 	}
 
+	/**
+	 * Returns the fingerprint of the provider that created this application
+	 * @return the fingerprint or <code>null</code>
+	 */
+	public String getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * Sets the fingerprint of the provider that created this application
+	 * @param fingerprint the fingerprint
+	 */
+	void setFingerprint(String fingerprint) {
+		this.fingerprint = fingerprint;
+	}
+
 	/**
 	 * @return the sourceApplication
 	 */
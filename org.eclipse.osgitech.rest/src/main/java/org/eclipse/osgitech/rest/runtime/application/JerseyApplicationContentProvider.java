@@ -15,10 +15,14 @@ package org.eclipse.osgitech.rest.runtime.application;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.eclipse.osgitech.rest.helper.JerseyHelper;
 import org.osgi.framework.Constants;
@@ -39,13 +43,30 @@ import org.osgi.service.jakartars.whiteboard.JakartarsWhiteboardConstants;
 public abstract class JerseyApplicationContentProvider extends AbstractJakartarsProvider<ServiceObjects<Object>> {
 
 	private static final Logger logger = Logger.getLogger("jersey.contentProvider");
+	/** A simple equality filter on the application name, that can be answered by an index */
+	private static final Pattern NAME_EQUALITY = Pattern.compile("\\(\\s*" + 
+			Pattern.quote(JakartarsWhiteboardConstants.JAKARTA_RS_NAME) + "\\s*=([^\\s*()\\\\]+)\\)");
 	private List<Filter> applicationFilter;
+	private Set<String> selectedApplicationNames;
 	private Class<? extends Object> clazz;
 
 	public JerseyApplicationContentProvider(ServiceObjects<Object> serviceObjects, Map<String, Object> properties) {
+		this(serviceObjects, properties, null);
+	}
+
+	/**
+	 * Creates the provider, reusing the implementation class of the service if it is already known.
+	 * Otherwise a service instance is created to determine it, which is expensive for prototype scoped services.
+	 * @param serviceObjects the service objects
+	 * @param properties the service properties
+	 * @param objectClass the known implementation class of the service, or <code>null</code>
+	 */
+	protected JerseyApplicationContentProvider(ServiceObjects<Object> serviceObjects, Map<String, Object> properties, Class<?> objectClass) {
 		super(serviceObjects, properties);
 		serviceObjects = getProviderObject();
-		if(serviceObjects != null) {
+		if(serviceObjects != null && objectClass != null) {
+			clazz = objectClass;
+		} else if(serviceObjects != null) {
 			Object service = null;
 			try {
 				service = serviceObjects.getService();
@@ -131,6 +152,18 @@ public abstract class JerseyApplicationContentProvider extends AbstractJakartars
 		return true;
 	}
 
+	/**
+	 * Returns the names of the applications this content can be added to, if all its 
+	 * <code>osgi.jakartars.application.select</code> filters are simple equality filters on
+	 * the <code>osgi.jakartars.name</code> property, like <code>(osgi.jakartars.name=myApp)</code>.
+	 * Applications with another name will never match, so {@link #canHandleApplication(JerseyApplicationProvider)}
+	 * does not need to be evaluated for them.
+	 * @return the selected application names, or <code>null</code> if the application select filter cannot be indexed
+	 */
+	public Set<String> getSelectedApplicationNames() {
+		return selectedApplicationNames;
+	}
+
 	private boolean canHandleDefaultApplication() {
 		if (applicationFilter == null || applicationFilter.isEmpty()) {
 			return true;
@@ -159,7 +192,14 @@ public abstract class JerseyApplicationContentProvider extends AbstractJakartars
 		String[] filters = JerseyHelper.getStringPlusProperty(JakartarsWhiteboardConstants.JAKARTA_RS_APPLICATION_SELECT, properties);
 		if (filters != null) {
 			List<Filter> filterList = new ArrayList<>(filters.length);
+			Set<String> names = new HashSet<>();
 			for(String filter : filters) {
+				Matcher m = NAME_EQUALITY.matcher(filter.trim());
+				if (names != null && m.matches()) {
+					names.add(m.group(1));
+				} else {
+					names = null;
+				}
 				try {
 					filterList.add(FrameworkUtil.createFilter(filter));
 				} catch (InvalidSyntaxException e) {
@@ -169,6 +209,7 @@ public abstract class JerseyApplicationContentProvider extends AbstractJakartars
 				}
 			}
 			applicationFilter = filterList;
+			selectedApplicationNames = names == null || names.isEmpty() ? null : Collections.unmodifiableSet(names);
 		}
 	}
 	
@@ -18,10 +18,13 @@ import static org.osgi.service.jakartars.whiteboard.JakartarsWhiteboardConstants
 import static org.osgi.service.jakartars.whiteboard.JakartarsWhiteboardConstants.JAKARTA_RS_NAME;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -30,6 +33,7 @@ import org.eclipse.osgitech.rest.helper.JakartarsHelper;
 import org.eclipse.osgitech.rest.proxy.ApplicationProxyFactory;
 import org.glassfish.jersey.server.ResourceConfig;
 import org.glassfish.jersey.server.ServerProperties;
+import org.osgi.service.jakartars.runtime.dto.ApplicationDTO;
 import org.osgi.service.jakartars.runtime.dto.BaseApplicationDTO;
 import org.osgi.service.jakartars.runtime.dto.DTOConstants;
 
@@ -49,6 +53,8 @@ public class JerseyApplicationProvider extends AbstractJakartarsProvider<Applica
 	private List<JerseyApplicationContentProvider> providers = new ArrayList<>();
 
 	private ResourceConfig config;
+	
+	private ApplicationDTO applicationDTO;
 
 	public JerseyApplicationProvider(Application application, Map<String, Object> properties) {
 		super(application, properties);
@@ -78,6 +84,7 @@ public class JerseyApplicationProvider extends AbstractJakartarsProvider<Applica
 			} else {
 				jerseyApp = new JerseyApplication(getProviderName(), application, getProviderProperties(), providers);
 			}
+			jerseyApp.setFingerprint(getFingerprint());
 			config = ResourceConfig.forApplication(jerseyApp);
 			config.setApplicationName(getName());
 			final Map<String, Object> properties = new HashMap<String, Object>(config.getProperties());
@@ -88,12 +95,16 @@ public class JerseyApplicationProvider extends AbstractJakartarsProvider<Applica
 	}
 
 	/** 
-	 * Get the DTO representing this provider
+	 * Get the DTO representing this provider. The DTO of a valid application is only created once, 
+	 * as the application is locked afterwards and cannot change any more.
 	 */
 	public BaseApplicationDTO getApplicationDTO() {
 		int status = getProviderStatus();
 		if (status == NO_FAILURE) {
-			return DTOConverter.toApplicationDTO(this);
+			if (applicationDTO == null) {
+				applicationDTO = DTOConverter.toApplicationDTO(this);
+			}
+			return applicationDTO;
 		} else {
 			return DTOConverter.toFailedApplicationDTO(this, status);
 		}
@@ -186,14 +197,53 @@ public class JerseyApplicationProvider extends AbstractJakartarsProvider<Applica
 	}
 
 	/**
-	 * Return true if t
-	 * @param application
-	 * @return
+	 * Return true if the given, currently deployed, application differs from the 
+	 * application that this provider would deploy. The comparison uses the fingerprint
+	 * of the application service properties and its content.
+	 * @param application the deployed application, possibly wrapped in a {@link ResourceConfig}
+	 * @return <code>true</code> if the deployed application must be reloaded
 	 */
 	public boolean isChanged(Application application) {
+		while (application instanceof ResourceConfig) {
+			Application wrapped = ((ResourceConfig) application).getApplication();
+			if (wrapped == application) {
+				break;
+			}
+			application = wrapped;
+		}
+		if (application instanceof JerseyApplication) {
+			return !getFingerprint().equals(((JerseyApplication) application).getFingerprint());
+		}
 		return true;
 	}
 
+	/**
+	 * Creates a fingerprint of everything that is deployed for this application: the 
+	 * service properties, the ids, ranks, names and service properties of the content, 
+	 * and the extension contracts
+	 */
+	String getFingerprint() {
+		StringBuilder sb = new StringBuilder();
+		appendProperties(sb, getProviderProperties());
+		providers.stream()
+			.sorted(Comparator.comparing(AbstractJakartarsProvider::getId))
+			.forEach(p -> {
+				sb.append('|').append(p.getId()).append(',').append(p.getServiceId())
+					.append(',').append(p.getServiceRank()).append(',').append(p.getName());
+				if (p instanceof JerseyExtensionProvider) {
+					sb.append(',').append(Arrays.toString(((JerseyExtensionProvider) p).getContracts()));
+				}
+				sb.append(',');
+				appendProperties(sb, p.getProviderProperties());
+			});
+		return sb.toString();
+	}
+
+	private static void appendProperties(StringBuilder sb, Map<String, Object> properties) {
+		new TreeMap<>(properties).forEach((k,v) -> 
+			sb.append(k).append('=').append(Arrays.deepToString(new Object[] {v})).append(';'));
+	}
+
 	@Override
 	public JerseyApplicationProvider cleanCopy() {
 		return new JerseyApplicationProvider(getProviderObject(), getProviderProperties());
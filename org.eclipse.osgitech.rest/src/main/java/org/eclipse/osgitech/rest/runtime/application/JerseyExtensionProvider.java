@@ -22,11 +22,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.Function;
-import java.util.function.Supplier;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 import org.eclipse.osgitech.rest.dto.DTOConverter;
+import org.eclipse.osgitech.rest.proxy.ExtensionProxyCache;
 import org.eclipse.osgitech.rest.proxy.ExtensionProxyFactory;
 import org.glassfish.jersey.InjectionManagerProvider;
 import org.osgi.framework.Constants;
@@ -73,15 +73,52 @@ public class JerseyExtensionProvider extends JerseyApplicationContentProvider {
 		DynamicFeature.class.getName()
 	});
 	
+	/** 
+	 * The <code>jakarta.annotation.Priority</code> of extension classes, shared by all applications. 
+	 * A {@link ClassValue} does not keep the classes, or their bundle class loaders, from being collected
+	 */
+	private static final ClassValue<Optional<Integer>> PRIORITIES = new ClassValue<>() {
+		@Override
+		protected Optional<Integer> computeValue(Class<?> type) {
+			return Arrays.stream(type.getAnnotations())
+				.filter(a -> a.annotationType().getName().equals("jakarta.annotation.Priority"))
+				.findFirst()
+				.map(a -> {
+					try {
+						return (Integer) a.getClass().getMethod("value").invoke(a);
+					} catch (Exception e) {
+						throw new RuntimeException(e);
+					}
+				});
+		}
+	};
+	
 	private Class<?>[] contracts = null;
 	
-	private ClassLoader proxyClassLoader = null;
+	/**
+	 * Returns the <code>jakarta.annotation.Priority</code> of an extension class. The annotation 
+	 * is only read once per class, the result is shared by all the providers of the class
+	 * @param extensionClass the class of the extension
+	 * @return the priority, or an empty {@link Optional} if the class is not annotated
+	 */
+	public static Optional<Integer> getPriority(Class<?> extensionClass) {
+		return PRIORITIES.get(extensionClass);
+	}
 	
 	public JerseyExtensionProvider(ServiceObjects<Object> serviceObjects, Map<String, Object> properties) {
-		super(serviceObjects, properties);
+		this(serviceObjects, properties, null);
+	}
+	
+	/**
+	 * Creates the provider for a service whose implementation class is already known
+	 * @param serviceObjects the service objects
+	 * @param properties the service properties
+	 * @param objectClass the implementation class, or <code>null</code> to determine it from the service
+	 */
+	public JerseyExtensionProvider(ServiceObjects<Object> serviceObjects, Map<String, Object> properties, Class<?> objectClass) {
+		super(serviceObjects, properties, objectClass);
 		checkExtensionProperty(properties);
 		extractContracts(properties);
-		
 	}
 	
 	/**
@@ -142,7 +179,7 @@ public class JerseyExtensionProvider extends JerseyApplicationContentProvider {
 	
 	@Override
 	public JerseyExtensionProvider cleanCopy() {
-		return new JerseyExtensionProvider(getProviderObject(), getProviderProperties());
+		return new JerseyExtensionProvider(getProviderObject(), getProviderProperties(), getObjectClass());
 	}
 
 	/**
@@ -181,6 +218,9 @@ public class JerseyExtensionProvider extends JerseyApplicationContentProvider {
 		
 		private Object delegate;
 		
+		/** The proxies handed out for the delegate, protected by synchronizing on this */
+		private final List<Object> proxies = new ArrayList<>(1);
+		
 		/**
 		 * Creates a new instance.
 		 * @param delegate
@@ -194,50 +234,29 @@ public class JerseyExtensionProvider extends JerseyApplicationContentProvider {
 		 * used, an empty map will be returned. 
 		 */
 		public Map<Class<?>, Integer> getContractPriorities() {
-			Integer priority = Arrays.stream(delegate.getClass().getAnnotations())
-				.filter(a -> a.annotationType().getName().equals("jakarta.annotation.Priority"))
-				.findFirst()
-				.map(a -> {
-					try {
-						return (Integer) a.getClass().getMethod("value").invoke(a);
-					} catch (Exception e) {
-						throw new RuntimeException(e);
-					}
-				}).orElse(null);
-			if (priority == null) {
+			Optional<Integer> priority = getPriority(delegate.getClass());
+			if (priority.isEmpty()) {
 				return Collections.emptyMap();
 			}
-			return Arrays.stream(contracts).collect(toMap(Function.identity(), c -> priority));
+			return Arrays.stream(contracts).collect(toMap(Function.identity(), c -> priority.get()));
 		}
 		
 		/**
 		 * Get the extension object
 		 */
 		public Object getExtensionObject() {
-			if(proxyClassLoader == null) {
-				proxyClassLoader = new ClassLoader(
-						getProviderObject().getServiceReference().getBundle()
-						.adapt(BundleWiring.class).getClassLoader()) {
-
-							/* 
-							 * (non-Javadoc)
-							 * @see java.lang.ClassLoader#findClass(java.lang.String)
-							 */
-							@Override
-							protected Class<?> findClass(String name) throws ClassNotFoundException {
-								byte[] b = ExtensionProxyFactory.generateClass(name, getDelegate(), Arrays.asList(contracts));
-								return defineClass(name, b, 0, b.length, delegate.getClass().getProtectionDomain());
-							}
-					
-					
-				};
-			}
-			String simpleName = ExtensionProxyFactory.getSimpleName(getServiceRank(), getServiceId());
-			
 			try {
-				Class<?> clz = proxyClassLoader.loadClass("org.eclipse.osgitech.rest.proxy." + simpleName);
-				return clz.getConstructor(Supplier.class).newInstance((Supplier<?>)this::getDelegate);
-				
+				// The proxy class is shared by all the applications, reloads and re-registrations using this extension
+				synchronized (this) {
+					Object target = getDelegate();
+					Class<?> clz = ExtensionProxyCache.getInstance().getProxyClass(target.getClass(), 
+							Arrays.asList(contracts), 
+							getProviderObject().getServiceReference().getBundle().adapt(BundleWiring.class),
+							getServiceId());
+					Object proxy = ExtensionProxyFactory.newInstance(clz, target);
+					proxies.add(proxy);
+					return proxy;
+				}
 			} catch (Exception e) {
 				throw new RuntimeException(e);
 			}
@@ -262,6 +281,9 @@ public class JerseyExtensionProvider extends JerseyApplicationContentProvider {
 			synchronized (this) {
 				toRelease = delegate;
 				delegate = null;
+				// Calls through the proxies fail from now on
+				proxies.forEach(ExtensionProxyFactory::dispose);
+				proxies.clear();
 			}
 			if(toRelease != null) {
 				getProviderObject().ungetService(toRelease);
@@ -33,6 +33,16 @@ public class JerseyResourceProvider extends JerseyApplicationContentProvider {
 		super(serviceObjects, properties);
 	}
 
+	/**
+	 * Creates the provider for a service whose implementation class is already known
+	 * @param serviceObjects the service objects
+	 * @param properties the service properties
+	 * @param objectClass the implementation class, or <code>null</code> to determine it from the service
+	 */
+	public JerseyResourceProvider(ServiceObjects<Object> serviceObjects, Map<String, Object> properties, Class<?> objectClass) {
+		super(serviceObjects, properties, objectClass);
+	}
+
 	/** 
 	 * Get the DTO representing this provider
 	 */
@@ -50,7 +60,7 @@ public class JerseyResourceProvider extends JerseyApplicationContentProvider {
 	 * @see java.lang.Object#clone()
 	 */
 	public JerseyResourceProvider cleanCopy() {
-		return new JerseyResourceProvider(getProviderObject(), getProviderProperties());
+		return new JerseyResourceProvider(getProviderObject(), getProviderProperties(), getObjectClass());
 	}
 	
 	/**
@@ -17,11 +17,19 @@ import static org.osgi.namespace.service.ServiceNamespace.CAPABILITY_OBJECTCLASS
 import static org.osgi.namespace.service.ServiceNamespace.SERVICE_NAMESPACE;
 import static org.osgi.service.serviceloader.ServiceLoaderNamespace.SERVICELOADER_NAMESPACE;
 
+import java.util.Collections;
 import java.util.Dictionary;
+import java.util.HashMap;
 import java.util.Hashtable;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.eclipse.osgitech.rest.provider.JerseyConstants;
+import org.eclipse.osgitech.rest.runtime.ConnectionLimitingConnectorProvider;
 import org.eclipse.osgitech.rest.sse.SseEventSourceFactoryImpl;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
 import org.glassfish.jersey.client.JerseyClientBuilder;
 import org.osgi.annotation.bundle.Capability;
 import org.osgi.framework.Bundle;
@@ -33,6 +41,7 @@ import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.component.annotations.Activate;
 import org.osgi.service.component.annotations.Component;
 import org.osgi.service.component.annotations.Deactivate;
+import org.osgi.service.component.annotations.Modified;
 import org.osgi.service.component.annotations.Reference;
 import org.osgi.service.condition.Condition;
 import org.osgi.service.jakartars.client.PromiseRxInvoker;
@@ -45,7 +54,7 @@ import jakarta.ws.rs.client.ClientBuilder;
  * @author ilenia
  * @since Jun 11, 2020
  */
-@Component(immediate = true, 
+@Component(immediate = true, configurationPid = JerseyConstants.JERSEY_CLIENT_PID,
 	reference = @Reference(name = "runtimeCondition", 
 		service = Condition.class , 
 		target = JerseyConstants.JERSEY_RUNTIME_CONDITION)
@@ -78,9 +87,19 @@ public class ClientBuilderComponent {
 	private static final String SERVICE_VENDOR = "Eclipse OSGi Technology";
 	private ServiceRegistration<ClientBuilder> registerClientBuilderService;
 	private ServiceRegistration<SseEventSourceFactory> registerSseService;
+	private ServiceRegistration<ConnectionLimitingConnectorProvider> registerLimiterService;
+	private BundleContext ctx;
+	
+	private static final Logger logger = Logger.getLogger("jersey.clientBuilder");
+	/** Shared by the clients of all bundles, <code>null</code> if the connections are not limited */
+	private volatile ConnectionLimitingConnectorProvider connectorProvider;
+	private volatile Map<String, Object> clientProperties = Collections.emptyMap();
 
 	@Activate
-	public void activate(BundleContext ctx) {
+	public void activate(BundleContext ctx, Map<String, Object> config) {
+		
+		this.ctx = ctx;
+		configure(config);
 
 		Dictionary<String, Object> properties = new Hashtable<>();
 		properties.put(Constants.SERVICE_VENDOR, SERVICE_VENDOR);
@@ -94,8 +113,13 @@ public class ClientBuilderComponent {
 			 */
 			@Override
 			public ClientBuilder getService(Bundle bundle, ServiceRegistration<ClientBuilder> registration) {
-				ClientBuilder clientBuilder = new JerseyClientBuilder().register(RxInvokerProviderImpl.class);
-				return clientBuilder;
+				JerseyClientBuilder clientBuilder = new JerseyClientBuilder();
+				ConnectionLimitingConnectorProvider provider = connectorProvider;
+				if (provider != null) {
+					clientBuilder.withConfig(new ClientConfig().connectorProvider(provider));
+				}
+				clientProperties.forEach(clientBuilder::property);
+				return clientBuilder.register(RxInvokerProviderImpl.class);
 			}
 
 			@Override
@@ -125,13 +149,87 @@ public class ClientBuilderComponent {
 			}
 		}, properties);
 		
+		registerLimiterService();
+	}
 
+	/**
+	 * Called on component modification. Clients created before keep their configuration, including
+	 * the connection limit they share, so they do not count against the limit of the new clients
+	 * @param config the component configuration
+	 */
+	@Modified
+	public void modified(Map<String, Object> config) {
+		configure(config);
+		registerLimiterService();
+	}
+	
+	/**
+	 * Registers the connection limit shared by the new clients, which reports their metrics, 
+	 * in place of the one of the previous configuration
+	 */
+	private void registerLimiterService() {
+		if (registerLimiterService != null) {
+			registerLimiterService.unregister();
+			registerLimiterService = null;
+		}
+		ConnectionLimitingConnectorProvider provider = connectorProvider;
+		if (provider == null) {
+			return;
+		}
+		Dictionary<String, Object> properties = new Hashtable<>();
+		properties.put(Constants.SERVICE_VENDOR, SERVICE_VENDOR);
+		properties.put(Constants.SERVICE_DESCRIPTION, "The connection limit of the clients of the ClientBuilder service");
+		properties.put(JerseyConstants.JERSEY_CLIENT_MAX_CONNECTIONS, provider.getMetrics().getMaxConnections());
+		properties.put(JerseyConstants.JERSEY_CLIENT_MAX_CONNECTIONS_PER_ROUTE, provider.getMetrics().getMaxConnectionsPerRoute());
+		properties.put(JerseyConstants.JERSEY_CLIENT_ACQUIRE_TIMEOUT, provider.getTimeout());
+		registerLimiterService = ctx.registerService(ConnectionLimitingConnectorProvider.class, provider, properties);
+	}
+	
+	private void configure(Map<String, Object> config) {
+		int maxConnections = (int) getNumber(config, JerseyConstants.JERSEY_CLIENT_MAX_CONNECTIONS, 0);
+		int maxConnectionsPerRoute = (int) getNumber(config, JerseyConstants.JERSEY_CLIENT_MAX_CONNECTIONS_PER_ROUTE, 0);
+		long acquireTimeout = getNumber(config, JerseyConstants.JERSEY_CLIENT_ACQUIRE_TIMEOUT, 
+				ConnectionLimitingConnectorProvider.DEFAULT_TIMEOUT);
+		connectorProvider = maxConnections > 0 || maxConnectionsPerRoute > 0 ? 
+				new ConnectionLimitingConnectorProvider(maxConnections, maxConnectionsPerRoute, acquireTimeout) : null;
+		
+		Map<String, Object> properties = new HashMap<>();
+		long connectTimeout = getNumber(config, JerseyConstants.JERSEY_CLIENT_CONNECT_TIMEOUT, -1);
+		if (connectTimeout >= 0) {
+			properties.put(ClientProperties.CONNECT_TIMEOUT, (int) connectTimeout);
+		}
+		long readTimeout = getNumber(config, JerseyConstants.JERSEY_CLIENT_READ_TIMEOUT, -1);
+		if (readTimeout >= 0) {
+			properties.put(ClientProperties.READ_TIMEOUT, (int) readTimeout);
+		}
+		clientProperties = properties;
+	}
+	
+	private long getNumber(Map<String, Object> config, String key, long defaultValue) {
+		Object value = config == null ? null : config.get(key);
+		if (value == null) {
+			return defaultValue;
+		}
+		try {
+			long number = value instanceof Number ? ((Number) value).longValue() : Long.parseLong(value.toString().trim());
+			if (number >= 0) {
+				return number;
+			}
+		} catch (NumberFormatException e) {
+			// handled below
+		}
+		logger.log(Level.WARNING, "The value " + value + " of the property " + key + " is not a valid non-negative number, using " + defaultValue);
+		return defaultValue;
 	}
 
 	@Deactivate
 	public void deactivate() {
 		registerClientBuilderService.unregister();
 		registerSseService.unregister();
+		if (registerLimiterService != null) {
+			registerLimiterService.unregister();
+			registerLimiterService = null;
+		}
 	}
 
 }
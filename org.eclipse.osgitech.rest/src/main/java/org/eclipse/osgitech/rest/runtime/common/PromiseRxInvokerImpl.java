@@ -15,22 +15,35 @@ package org.eclipse.osgitech.rest.runtime.common;
 
 import java.util.concurrent.ExecutorService;
 
+import jakarta.ws.rs.HttpMethod;
+import jakarta.ws.rs.WebApplicationException;
 import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.client.Invocation;
+import jakarta.ws.rs.client.InvocationCallback;
+import jakarta.ws.rs.client.ResponseProcessingException;
 import jakarta.ws.rs.client.SyncInvoker;
 import jakarta.ws.rs.core.GenericType;
 import jakarta.ws.rs.core.Response;
 
+import org.glassfish.jersey.client.JerseyInvocation;
 import org.osgi.service.jakartars.client.PromiseRxInvoker;
+import org.osgi.util.promise.Deferred;
 import org.osgi.util.promise.Promise;
 import org.osgi.util.promise.PromiseFactory;
 
 /**
- * 
+ * A {@link PromiseRxInvoker} using the asynchronous Jersey client. The request is submitted
+ * with a callback resolving the returned promise, so the caller never waits for the response.
+ * With a connector supporting asynchronous requests no thread is held while the call is
+ * outstanding. The given executor runs the callbacks of the promise. If the invoker is not
+ * backed by Jersey, the blocking call is submitted to the executor.
  * @author ilenia
  * @since Jun 12, 2020
  */
 public class PromiseRxInvokerImpl implements PromiseRxInvoker {
 	
+	private static final String TRACE = "TRACE";
+	private static final GenericType<Response> RESPONSE = new GenericType<>(Response.class);
 	
 	private SyncInvoker syncInvoker;
 	private PromiseFactory factory;
@@ -46,17 +59,56 @@ public class PromiseRxInvokerImpl implements PromiseRxInvoker {
                 PromiseFactory.inlineExecutor());
         }				
 	}
+	
+	/**
+	 * Invokes the request asynchronously
+	 * @param <R> the response type
+	 * @param method the HTTP method
+	 * @param entity the request entity, can be <code>null</code>
+	 * @param responseType the response type
+	 * @return the promise resolved with the response
+	 */
+	private <R> Promise<R> invoke(String method, Entity<?> entity, GenericType<R> responseType) {
+		if (syncInvoker instanceof Invocation.Builder) {
+			Invocation.Builder builder = (Invocation.Builder) syncInvoker;
+			Invocation invocation = entity == null ? builder.build(method) : builder.build(method, entity);
+			if (invocation instanceof JerseyInvocation) {
+				Deferred<R> deferred = factory.deferred();
+				try {
+					((JerseyInvocation) invocation).submit(responseType, new InvocationCallback<R>() {
+
+						@Override
+						public void completed(R response) {
+							deferred.resolve(response);
+						}
+
+						@Override
+						public void failed(Throwable throwable) {
+							// Fail with the exception for the status, as the synchronous invoker does
+							if (throwable instanceof ResponseProcessingException 
+									&& throwable.getCause() instanceof WebApplicationException) {
+								throwable = throwable.getCause();
+							}
+							deferred.fail(throwable);
+						}
+					});
+				} catch (Exception e) {
+					deferred.fail(e);
+				}
+				return deferred.getPromise();
+			}
+		}
+		return factory.submit(() -> entity == null ? 
+				syncInvoker.method(method, responseType) : syncInvoker.method(method, entity, responseType));
+	}
 
 	/* 
 	 * (non-Javadoc)
 	 * @see org.osgi.service.jakartars.client.PromiseRxInvoker#delete()
 	 */
 	@Override
-	public Promise<Response> delete() {		
-		return factory.submit(() -> {
-			Response response = syncInvoker.delete();
-			return response;			
-		});
+	public Promise<Response> delete() {
+		return invoke(HttpMethod.DELETE, null, RESPONSE);
 	}
 
 	/* 
@@ -65,10 +117,7 @@ public class PromiseRxInvokerImpl implements PromiseRxInvoker {
 	 */
 	@Override
 	public <R> Promise<R> delete(Class<R> arg0) {
-		return factory.submit(() -> {
-			R response = syncInvoker.delete(arg0);
-			return response;			
-		});
+		return invoke(HttpMethod.DELETE, null, new GenericType<>(arg0));
 	}
 
 	/* 
@@ -77,10 +126,7 @@ public class PromiseRxInvokerImpl implements PromiseRxInvoker {
 	 */
 	@Override
 	public <R> Promise<R> delete(GenericType<R> arg0) {
-		return factory.submit(() -> {
-			R response = syncInvoker.delete(arg0);
-			return response;			
-		});
+		return invoke(HttpMethod.DELETE, null, arg0);
 	}
 
 	/* 
@@ -89,10 +135,7 @@ public class PromiseRxInvokerImpl implements PromiseRxInvoker {
 	 */
 	@Override
 	public Promise<Response> get() {
-		return factory.submit(() -> {
-			Response response = syncInvoker.get();
-			return response;			
-		});
+		return invoke(HttpMethod.GET, null, RESPONSE);
 	}
 
 	/* 
@@ -101,10 +144,7 @@ public class PromiseRxInvokerImpl implements PromiseRxInvoker {
 	 */
 	@Override
 	public <R> Promise<R> get(Class<R> arg0) {
-		return factory.submit(() -> {
-			R response = syncInvoker.get(arg0);
-			return response;			
-		});
+		return invoke(HttpMethod.GET, null, new GenericType<>(arg0));
 	}
 
 	/* 
@@ -113,10 +153,7 @@ public class PromiseRxInvokerImpl implements PromiseRxInvoker {
 	 */
 	@Override
 	public <R> Promise<R> get(GenericType<R> arg0) {
-		return factory.submit(() -> {
-			R response = syncInvoker.get(arg0);
-			return response;			
-		});
+		return invoke(HttpMethod.GET, null, arg0);
 	}
 
 	/* 
@@ -125,35 +162,16 @@ public class PromiseRxInvokerImpl implements PromiseRxInvoker {
 	 */
 	@Override
 	public Promise<Response> head() {
-		return factory.submit(() -> {
-			Response response = syncInvoker.head();
-			return response;			
-		});
+		return invoke(HttpMethod.HEAD, null, RESPONSE);
 	}
 
-//	@Override
-//    public <R> Promise<R> method(String s, Class<R> responseType) {
-//        
-//            Deferred<R> deferred = factory.deferred();
-//            
-//            Builder builder  = (Builder) syncInvoker;
-//            deferred.
-//            builder.async().method(s, responseType);
-//
-//        
-//        return deferred.getPromise();
-//    }
-//	
 	/* 
 	 * (non-Javadoc)
 	 * @see org.osgi.service.jakartars.client.PromiseRxInvoker#method(java.lang.String, java.lang.Class)
 	 */
 	@Override
 	public <R> Promise<R> method(String arg0, Class<R> arg1) {
-		return factory.submit(() -> {
-			R response = syncInvoker.method(arg0, arg1);
-			return response;			
-		});
+		return invoke(arg0, null, new GenericType<>(arg1));
 	}
 
 	/* 
@@ -162,10 +180,7 @@ public class PromiseRxInvokerImpl implements PromiseRxInvoker {
 	 */
 	@Override
 	public <R> Promise<R> method(String arg0, Entity<?> arg1, Class<R> arg2) {
-		return factory.submit(() -> {
-			R response = syncInvoker.method(arg0, arg1, arg2);
-			return response;			
-		});
+		return invoke(arg0, arg1, new GenericType<>(arg2));
 	}
 
 	/* 
@@ -174,10 +189,7 @@ public class PromiseRxInvokerImpl implements PromiseRxInvoker {
 	 */
 	@Override
 	public <R> Promise<R> method(String arg0, Entity<?> arg1, GenericType<R> arg2) {
-		return factory.submit(() -> {
-			R response = syncInvoker.method(arg0, arg1, arg2);
-			return response;			
-		});
+		return invoke(arg0, arg1, arg2);
 	}
 
 	/* 
@@ -186,10 +198,7 @@ public class PromiseRxInvokerImpl implements PromiseRxInvoker {
 	 */
 	@Override
 	public Promise<Response> method(String arg0, Entity<?> arg1) {
-		return factory.submit(() -> {
-			Response response = syncInvoker.method(arg0, arg1);
-			return response;			
-		});
+		return invoke(arg0, arg1, RESPONSE);
 	}
 
 	/* 
@@ -198,10 +207,7 @@ public class PromiseRxInvokerImpl implements PromiseRxInvoker {
 	 */
 	@Override
 	public <R> Promise<R> method(String arg0, GenericType<R> arg1) {
-		return factory.submit(() -> {
-			R response = syncInvoker.method(arg0, arg1);
-			return response;			
-		});
+		return invoke(arg0, null, arg1);
 	}
 
 	/* 
@@ -210,10 +216,7 @@ public class PromiseRxInvokerImpl implements PromiseRxInvoker {
 	 */
 	@Override
 	public Promise<Response> method(String arg0) {
-		return factory.submit(() -> {
-			Response response = syncInvoker.method(arg0);
-			return response;			
-		});
+		return invoke(arg0, null, RESPONSE);
 	}
 
 	/* 
@@ -222,10 +225,7 @@ public class PromiseRxInvokerImpl implements PromiseRxInvoker {
 	 */
 	@Override
 	public Promise<Response> options() {
-		return factory.submit(() -> {
-			Response response = syncInvoker.options();
-			return response;			
-		});
+		return invoke(HttpMethod.OPTIONS, null, RESPONSE);
 	}
 
 	/* 
@@ -234,10 +234,7 @@ public class PromiseRxInvokerImpl implements PromiseRxInvoker {
 	 */
 	@Override
 	public <R> Promise<R> options(Class<R> arg0) {
-		return factory.submit(() -> {
-			R response = syncInvoker.options(arg0);
-			return response;			
-		});
+		return invoke(HttpMethod.OPTIONS, null, new GenericType<>(arg0));
 	}
 
 	/* 
@@ -246,10 +243,7 @@ public class PromiseRxInvokerImpl implements PromiseRxInvoker {
 	 */
 	@Override
 	public <R> Promise<R> options(GenericType<R> arg0) {
-		return factory.submit(() -> {
-			R response = syncInvoker.options(arg0);
-			return response;			
-		});
+		return invoke(HttpMethod.OPTIONS, null, arg0);
 	}
 
 	/* 
@@ -258,10 +252,7 @@ public class PromiseRxInvokerImpl implements PromiseRxInvoker {
 	 */
 	@Override
 	public <R> Promise<R> post(Entity<?> arg0, Class<R> arg1) {
-		return factory.submit(() -> {
-			R response = syncInvoker.post(arg0, arg1);
-			return response;			
-		});
+		return invoke(HttpMethod.POST, arg0, new GenericType<>(arg1));
 	}
 
 	/* 
@@ -270,10 +261,7 @@ public class PromiseRxInvokerImpl implements PromiseRxInvoker {
 	 */
 	@Override
 	public <R> Promise<R> post(Entity<?> arg0, GenericType<R> arg1) {
-		return factory.submit(() -> {
-			R response = syncInvoker.post(arg0, arg1);
-			return response;			
-		});
+		return invoke(HttpMethod.POST, arg0, arg1);
 	}
 
 	/* 
@@ -282,10 +270,7 @@ public class PromiseRxInvokerImpl implements PromiseRxInvoker {
 	 */
 	@Override
 	public Promise<Response> post(Entity<?> arg0) {
-		return factory.submit(() -> {
-			Response response = syncInvoker.post(arg0);
-			return response;			
-		});
+		return invoke(HttpMethod.POST, arg0, RESPONSE);
 	}
 
 	/* 
@@ -294,10 +279,7 @@ public class PromiseRxInvokerImpl implements PromiseRxInvoker {
 	 */
 	@Override
 	public <R> Promise<R> put(Entity<?> arg0, Class<R> arg1) {
-		return factory.submit(() -> {
-			R response = syncInvoker.put(arg0, arg1);
-			return response;			
-		});
+		return invoke(HttpMethod.PUT, arg0, new GenericType<>(arg1));
 	}
 
 	/* 
@@ -306,10 +288,7 @@ public class PromiseRxInvokerImpl implements PromiseRxInvoker {
 	 */
 	@Override
 	public <R> Promise<R> put(Entity<?> arg0, GenericType<R> arg1) {
-		return factory.submit(() -> {
-			R response = syncInvoker.put(arg0, arg1);
-			return response;			
-		});
+		return invoke(HttpMethod.PUT, arg0, arg1);
 	}
 
 	/* 
@@ -318,10 +297,7 @@ public class PromiseRxInvokerImpl implements PromiseRxInvoker {
 	 */
 	@Override
 	public Promise<Response> put(Entity<?> arg0) {
-		return factory.submit(() -> {
-			Response response = syncInvoker.put(arg0);
-			return response;			
-		});
+		return invoke(HttpMethod.PUT, arg0, RESPONSE);
 	}
 
 	/* 
@@ -330,10 +306,7 @@ public class PromiseRxInvokerImpl implements PromiseRxInvoker {
 	 */
 	@Override
 	public Promise<Response> trace() {
-		return factory.submit(() -> {
-			Response response = syncInvoker.trace();
-			return response;			
-		});
+		return invoke(TRACE, null, RESPONSE);
 	}
 
 	/* 
@@ -342,10 +315,7 @@ public class PromiseRxInvokerImpl implements PromiseRxInvoker {
 	 */
 	@Override
 	public <R> Promise<R> trace(Class<R> arg0) {
-		return factory.submit(() -> {
-			R response = syncInvoker.trace(arg0);
-			return response;			
-		});
+		return invoke(TRACE, null, new GenericType<>(arg0));
 	}
 
 	/* 
@@ -354,10 +324,7 @@ public class PromiseRxInvokerImpl implements PromiseRxInvoker {
 	 */
 	@Override
 	public <R> Promise<R> trace(GenericType<R> arg0) {
-		return factory.submit(() -> {
-			R response = syncInvoker.trace(arg0);
-			return response;			
-		});
+		return invoke(TRACE, null, arg0);
 	}
 
 }
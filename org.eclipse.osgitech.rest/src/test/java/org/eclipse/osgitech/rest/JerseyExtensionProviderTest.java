@@ -15,12 +15,19 @@ package org.eclipse.osgitech.rest;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.when;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
+import jakarta.annotation.Priority;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerRequestFilter;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
 import jakarta.ws.rs.ext.MessageBodyReader;
 
 import org.eclipse.osgitech.rest.resources.TestApplication;
@@ -94,4 +101,39 @@ public class JerseyExtensionProviderTest {
 		
 	}
 	
+	/**
+	 * Test the priorities of the contracts, with and without a priority annotation
+	 */
+	@Test
+	public void testContractPriorities() {
+		Map<String, Object> properties = new HashMap<>();
+		properties.put(JakartarsWhiteboardConstants.JAKARTA_RS_EXTENSION, "true");
+		properties.put(Constants.OBJECTCLASS, new String[] {ContainerRequestFilter.class.getName(), ContainerResponseFilter.class.getName()});
+		when(serviceObject.getService()).thenReturn(new PriorityFilter());
+		JerseyExtensionProvider provider = new JerseyExtensionProvider(serviceObject, properties);
+		
+		Map<Class<?>, Integer> expected = Map.of(ContainerRequestFilter.class, 42, ContainerResponseFilter.class, 42);
+		assertEquals(expected, provider.new JerseyExtension(new PriorityFilter()).getContractPriorities());
+		Optional<Integer> priority = JerseyExtensionProvider.getPriority(PriorityFilter.class);
+		
+		// Another provider of the same class reuses the result of the first lookup
+		JerseyExtensionProvider other = new JerseyExtensionProvider(serviceObject, properties);
+		assertEquals(expected, other.new JerseyExtension(new PriorityFilter()).getContractPriorities());
+		assertSame(priority, JerseyExtensionProvider.getPriority(PriorityFilter.class));
+		
+		assertEquals(Map.of(), provider.new JerseyExtension(new TestExtension()).getContractPriorities());
+	}
+	
+	@Priority(42)
+	public static class PriorityFilter implements ContainerRequestFilter, ContainerResponseFilter {
+		
+		@Override
+		public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+		}
+		
+		@Override
+		public void filter(ContainerRequestContext requestContext) {
+		}
+	}
+	
 }
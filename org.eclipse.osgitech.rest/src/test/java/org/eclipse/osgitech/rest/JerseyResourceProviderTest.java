@@ -17,12 +17,17 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import jakarta.ws.rs.core.Application;
 
@@ -121,6 +126,55 @@ public class JerseyResourceProviderTest {
 		assertTrue(resourceProvider.isSingleton());
 	}
 	
+	@Test
+	public void testSelectedApplicationNames() {
+		when(serviceObject.getService()).thenReturn(new TestResource());
+		Map<String, Object> resourceProperties = new HashMap<>();
+		resourceProperties.put(JakartarsWhiteboardConstants.JAKARTA_RS_RESOURCE, "true");
+		
+		// no filter selects the default application
+		JerseyResourceProvider resourceProvider = new JerseyResourceProvider(serviceObject, resourceProperties);
+		assertNull(resourceProvider.getSelectedApplicationNames());
+		
+		resourceProperties.put(JakartarsWhiteboardConstants.JAKARTA_RS_APPLICATION_SELECT, 
+				new String[] {"(osgi.jakartars.name=app1)", " (osgi.jakartars.name=app2) "});
+		resourceProvider = new JerseyResourceProvider(serviceObject, resourceProperties);
+		assertEquals(Set.of("app1", "app2"), resourceProvider.getSelectedApplicationNames());
+		
+		// any filter that is not a name equality disables the index
+		resourceProperties.put(JakartarsWhiteboardConstants.JAKARTA_RS_APPLICATION_SELECT, 
+				new String[] {"(osgi.jakartars.name=app1)", "(osgi.jakartars.name=app*)"});
+		resourceProvider = new JerseyResourceProvider(serviceObject, resourceProperties);
+		assertNull(resourceProvider.getSelectedApplicationNames());
+		
+		resourceProperties.put(JakartarsWhiteboardConstants.JAKARTA_RS_APPLICATION_SELECT, "(&(osgi.jakartars.name=app1)(foo=bar))");
+		resourceProvider = new JerseyResourceProvider(serviceObject, resourceProperties);
+		assertNull(resourceProvider.getSelectedApplicationNames());
+		
+		resourceProperties.put(JakartarsWhiteboardConstants.JAKARTA_RS_APPLICATION_SELECT, "(osgi.jakartars.name=my app)");
+		resourceProvider = new JerseyResourceProvider(serviceObject, resourceProperties);
+		assertNull(resourceProvider.getSelectedApplicationNames());
+	}
+	
+	@Test
+	public void testCleanCopyReusesObjectClass() {
+		when(serviceObject.getService()).thenReturn(new TestResource());
+		Map<String, Object> resourceProperties = new HashMap<>();
+		resourceProperties.put(JakartarsWhiteboardConstants.JAKARTA_RS_RESOURCE, "true");
+		resourceProperties.put("service.scope", "prototype");
+		
+		JerseyResourceProvider resourceProvider = new JerseyResourceProvider(serviceObject, resourceProperties);
+		verify(serviceObject, times(1)).getService();
+		
+		for (int i = 0; i < 5; i++) {
+			resourceProvider = resourceProvider.cleanCopy();
+			assertEquals(TestResource.class, resourceProvider.getObjectClass());
+			assertFalse(resourceProvider.getResourceDTO() instanceof FailedResourceDTO);
+		}
+		verify(serviceObject, times(1)).getService();
+		verify(serviceObject, times(1)).ungetService(any());
+	}
+	
 	@Test
 	public void testResourceProviderPrototype() {
 		
@@ -0,0 +1,161 @@
+/**
+ * Copyright (c) 2012 - 2022 Data In Motion and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Data In Motion - initial API and implementation
+ *     Stefan Bishof - API and implementation
+ *     Tim Ward - implementation
+ */
+package org.eclipse.osgitech.rest.binder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.osgitech.rest.binder.PromiseResourceMethodInvocationHandlerProvider.PromiseResourceMethodInvocationHandler;
+import org.junit.jupiter.api.Test;
+import org.osgi.util.promise.Deferred;
+import org.osgi.util.promise.Promise;
+import org.osgi.util.promise.PromiseFactory;
+
+import jakarta.ws.rs.ServiceUnavailableException;
+
+/**
+ * Tests the handling of resource methods returning a promise
+ * @since 1.2
+ */
+public class PromiseResponseHandlerBinderTest {
+
+	private final PromiseFactory factory = new PromiseFactory(PromiseFactory.inlineExecutor());
+
+	private final InvocationHandler handler = new PromiseResourceMethodInvocationHandler(Promise.class);
+
+	@Test
+	public void testResolvedPromise() throws Throwable {
+		Object result = handler.invoke(new PromiseResource(factory.resolved("hello")),
+				PromiseResource.class.getMethod("get"), new Object[0]);
+		assertEquals("hello", result);
+
+		assertNull(handler.invoke(new PromiseResource(factory.resolved(null)),
+				PromiseResource.class.getMethod("get"), new Object[0]));
+	}
+
+	@Test
+	public void testFailedPromise() throws Throwable {
+		IllegalArgumentException failure = new IllegalArgumentException("broken");
+		Throwable thrown = assertThrows(IllegalArgumentException.class, () -> handler.invoke(
+				new PromiseResource(factory.failed(failure)), PromiseResource.class.getMethod("get"), new Object[0]));
+		assertSame(failure, thrown);
+	}
+
+	@Test
+	public void testDeferredPromise() throws Throwable {
+		Deferred<String> deferred = factory.deferred();
+		Object result = handler.invoke(new PromiseResource(deferred.getPromise()),
+				PromiseResource.class.getMethod("get"), new Object[0]);
+		assertTrue(result instanceof CompletionStage);
+
+		// Jersey resumes the request from this callback
+		AtomicReference<Object> value = new AtomicReference<>();
+		((CompletionStage<?>) result).whenComplete((v, t) -> value.set(v));
+		assertNull(value.get());
+
+		deferred.resolve("later");
+		assertEquals("later", value.get());
+		assertEquals("later", ((CompletionStage<?>) result).thenApply(v -> v).toCompletableFuture().get());
+
+		Deferred<String> failing = factory.deferred();
+		CompletableFuture<?> future = await(handler.invoke(new PromiseResource(failing.getPromise()),
+				PromiseResource.class.getMethod("get"), new Object[0]));
+		assertFalse(future.isDone());
+		IllegalStateException failure = new IllegalStateException("later");
+		failing.fail(failure);
+		ExecutionException e = assertThrows(ExecutionException.class, future::get);
+		assertSame(failure, e.getCause());
+	}
+
+	/**
+	 * Jersey asks for a future first, and registers a callback with whenComplete if that is not supported
+	 */
+	@Test
+	public void testJerseyCallOrder() throws Throwable {
+		Deferred<String> deferred = factory.deferred();
+		CompletionStage<?> stage = (CompletionStage<?>) handler.invoke(new PromiseResource(deferred.getPromise()),
+				PromiseResource.class.getMethod("get"), new Object[0]);
+		assertThrows(UnsupportedOperationException.class, stage::toCompletableFuture);
+
+		AtomicReference<Object> value = new AtomicReference<>();
+		CompletionStage<?> dependent = stage.whenComplete((v, t) -> value.set(v));
+		assertNotSame(stage, dependent);
+		assertFalse(dependent.toCompletableFuture().isDone());
+
+		deferred.resolve("resumed");
+		assertEquals("resumed", value.get());
+		assertEquals("resumed", dependent.toCompletableFuture().get());
+
+		// A failing action fails the dependent stage of a successful promise
+		IllegalStateException failure = new IllegalStateException("action");
+		Deferred<String> next = factory.deferred();
+		CompletionStage<?> failingAction = ((CompletionStage<?>) handler.invoke(new PromiseResource(next.getPromise()),
+				PromiseResource.class.getMethod("get"), new Object[0])).whenComplete((v, t) -> {
+					throw failure;
+				});
+		next.resolve("ignored");
+		ExecutionException e = assertThrows(ExecutionException.class, () -> failingAction.toCompletableFuture().get());
+		assertSame(failure, e.getCause());
+	}
+
+	@Test
+	public void testPromiseTimeout() throws Throwable {
+		InvocationHandler timeoutHandler = new PromiseResourceMethodInvocationHandler(Promise.class, 50);
+
+		Deferred<String> deferred = factory.deferred();
+		CompletableFuture<?> future = await(timeoutHandler.invoke(new PromiseResource(deferred.getPromise()),
+				PromiseResource.class.getMethod("get"), new Object[0]));
+		ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+		assertTrue(e.getCause() instanceof ServiceUnavailableException);
+
+		// Promises resolved in time are not affected
+		Deferred<String> quick = factory.deferred();
+		CompletableFuture<?> resolved = await(timeoutHandler.invoke(new PromiseResource(quick.getPromise()),
+				PromiseResource.class.getMethod("get"), new Object[0]));
+		quick.resolve("quick");
+		assertEquals("quick", resolved.get(5, TimeUnit.SECONDS));
+	}
+
+	/**
+	 * Awaits an unresolved promise the way Jersey does
+	 */
+	private CompletableFuture<?> await(Object result) {
+		return ((CompletionStage<?>) result).whenComplete((v, t) -> {}).toCompletableFuture();
+	}
+
+	public static class PromiseResource {
+
+		private final Promise<String> promise;
+
+		public PromiseResource(Promise<String> promise) {
+			this.promise = promise;
+		}
+
+		public Promise<String> get() {
+			return promise;
+		}
+	}
+}
@@ -0,0 +1,311 @@
+/**
+ * Copyright (c) 2012 - 2022 Data In Motion and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Data In Motion - initial API and implementation
+ *     Stefan Bishof - API and implementation
+ *     Tim Ward - implementation
+ */
+package org.eclipse.osgitech.rest.factories;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.osgitech.rest.provider.JerseyConstants;
+import org.eclipse.osgitech.rest.provider.PooledResource;
+import org.eclipse.osgitech.rest.resources.TestResource;
+import org.eclipse.osgitech.rest.runtime.application.JerseyResourceProvider;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceObjects;
+import org.osgi.framework.ServiceReference;
+import org.osgi.service.jakartars.whiteboard.JakartarsWhiteboardConstants;
+
+/**
+ * Tests the creation, pooling and release of prototype resource instances
+ * @since 1.2
+ */
+@ExtendWith(MockitoExtension.class)
+public class JerseyResourceInstanceFactoryTest {
+
+	@Mock
+	private ServiceObjects<Object> serviceObjects;
+
+	@Test
+	public void testWithoutPool() {
+		when(serviceObjects.getService()).thenAnswer(i -> new TestResource());
+		JerseyResourceInstanceFactory<Object> factory = new JerseyResourceInstanceFactory<>(provider(null));
+
+		Object first = factory.provide();
+		factory.dispose(first);
+		verify(serviceObjects).ungetService(first);
+
+		assertNotSame(first, factory.provide());
+		verify(serviceObjects, times(2)).getService();
+		assertEquals(0, factory.getPooledInstanceCount());
+		assertEquals(0, factory.getPoolHitRate());
+	}
+
+	@Test
+	public void testPooledInstancesAreReused() {
+		when(serviceObjects.getService()).thenAnswer(i -> new TestResource());
+		JerseyResourceInstanceFactory<Object> factory = new JerseyResourceInstanceFactory<>(provider(2));
+
+		Object a = factory.provide();
+		Object b = factory.provide();
+		Object c = factory.provide();
+		factory.dispose(a);
+		factory.dispose(b);
+		// The pool is full
+		factory.dispose(c);
+		verify(serviceObjects).ungetService(c);
+		assertEquals(2, factory.getPooledInstanceCount());
+
+		// The most recently released instance first
+		assertSame(b, factory.provide());
+		assertSame(a, factory.provide());
+		verify(serviceObjects, times(3)).getService();
+		assertEquals(2, factory.getPoolHitCount());
+		assertEquals(3, factory.getPoolMissCount());
+		assertEquals(0.4, factory.getPoolHitRate(), 0.001);
+		assertEquals(2, factory.getCacheInstanceCount());
+
+		factory.dispose(a);
+		factory.dispose();
+		verify(serviceObjects).ungetService(a);
+		verify(serviceObjects).ungetService(b);
+		assertEquals(0, factory.getPooledInstanceCount());
+		assertEquals(0, factory.getCacheInstanceCount());
+
+		// Released instances are not pooled after the factory is disposed
+		Object d = factory.provide();
+		factory.dispose(d);
+		verify(serviceObjects).ungetService(d);
+	}
+
+	@Test
+	public void testResetHook() {
+		when(serviceObjects.getService()).thenAnswer(i -> new ResettableResource());
+		JerseyResourceInstanceFactory<Object> factory = new JerseyResourceInstanceFactory<>(provider(5));
+
+		ResettableResource clean = (ResettableResource) factory.provide();
+		ResettableResource broken = (ResettableResource) factory.provide();
+		clean.state = "used";
+		broken.reusable = false;
+		factory.dispose(clean);
+		factory.dispose(broken);
+
+		assertEquals(1, factory.getPooledInstanceCount());
+		assertEquals(null, clean.state);
+		verify(serviceObjects, never()).ungetService(clean);
+		verify(serviceObjects).ungetService(broken);
+		assertSame(clean, factory.provide());
+	}
+
+	@Test
+	public void testSingletonIsNotPooled() {
+		Map<String, Object> properties = new HashMap<>();
+		properties.put(JakartarsWhiteboardConstants.JAKARTA_RS_RESOURCE, Boolean.TRUE);
+		properties.put(JerseyConstants.JERSEY_PROTOTYPE_POOL_SIZE, 5);
+		when(serviceObjects.getService()).thenAnswer(i -> new TestResource());
+		JerseyResourceInstanceFactory<Object> factory = new JerseyResourceInstanceFactory<>(
+				new JerseyResourceProvider(serviceObjects, properties));
+		clearServiceInvocations();
+
+		factory.dispose(factory.provide());
+		verify(serviceObjects).ungetService(any());
+		assertEquals(0, factory.getPooledInstanceCount());
+	}
+
+	@Test
+	public void testInstancesAreTrackedByIdentity() {
+		when(serviceObjects.getService()).thenAnswer(i -> new EqualResource());
+		JerseyResourceInstanceFactory<Object> factory = new JerseyResourceInstanceFactory<>(provider(null));
+
+		Object first = factory.provide();
+		Object second = factory.provide();
+		assertEquals(2, factory.getCacheInstanceCount());
+
+		factory.dispose(first);
+		verify(serviceObjects).ungetService(same(first));
+		verify(serviceObjects, never()).ungetService(same(second));
+		factory.dispose();
+		verify(serviceObjects).ungetService(same(second));
+		assertEquals(0, factory.getCacheInstanceCount());
+	}
+
+	@Test
+	public void testConcurrentRequests() throws Exception {
+		assertNoLeaks(null);
+	}
+
+	@Test
+	public void testConcurrentPooledRequests() throws Exception {
+		assertNoLeaks(8);
+	}
+
+	/**
+	 * Serves requests from 64 threads while the application is shut down, and checks
+	 * that every instance is released exactly once
+	 */
+	private void assertNoLeaks(Integer poolSize) throws Exception {
+		int threads = 64;
+		int requests = 2000;
+		CountingServiceObjects counting = new CountingServiceObjects();
+		Map<String, Object> properties = new HashMap<>();
+		properties.put(JakartarsWhiteboardConstants.JAKARTA_RS_RESOURCE, Boolean.TRUE);
+		properties.put(Constants.SERVICE_SCOPE, Constants.SCOPE_PROTOTYPE);
+		if (poolSize != null) {
+			properties.put(JerseyConstants.JERSEY_PROTOTYPE_POOL_SIZE, poolSize);
+		}
+		JerseyResourceInstanceFactory<Object> factory = new JerseyResourceInstanceFactory<>(
+				new JerseyResourceProvider(counting, properties));
+
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			CyclicBarrier start = new CyclicBarrier(threads + 1);
+			CountDownLatch halfway = new CountDownLatch(threads);
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					List<Object> inFlight = new ArrayList<>();
+					for (int r = 0; r < requests; r++) {
+						inFlight.add(factory.provide());
+						// Keep some requests open while others finish
+						if (inFlight.size() > 2) {
+							factory.dispose(inFlight.remove(0));
+						}
+						if (r == requests / 2) {
+							halfway.countDown();
+						}
+					}
+					inFlight.forEach(factory::dispose);
+					return null;
+				}));
+			}
+			start.await();
+			assertTrue(halfway.await(30, TimeUnit.SECONDS));
+			// The application is shut down while requests are in flight
+			factory.dispose();
+			for (Future<?> f : futures) {
+				f.get(30, TimeUnit.SECONDS);
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		factory.dispose();
+
+		assertTrue(counting.errors.isEmpty(), () -> counting.errors.toString());
+		assertEquals(0, counting.outstanding.size());
+		assertEquals(0, factory.getCacheInstanceCount());
+		assertEquals(0, factory.getPooledInstanceCount());
+	}
+
+	/**
+	 * Passes the mock in an explicit array, as a generic varargs array is unchecked
+	 */
+	private void clearServiceInvocations() {
+		clearInvocations(new Object[] { serviceObjects });
+	}
+
+	private JerseyResourceProvider provider(Object poolSize) {
+		Map<String, Object> properties = new HashMap<>();
+		properties.put(JakartarsWhiteboardConstants.JAKARTA_RS_RESOURCE, Boolean.TRUE);
+		properties.put(Constants.SERVICE_SCOPE, Constants.SCOPE_PROTOTYPE);
+		if (poolSize != null) {
+			properties.put(JerseyConstants.JERSEY_PROTOTYPE_POOL_SIZE, poolSize);
+		}
+		JerseyResourceProvider provider = new JerseyResourceProvider(serviceObjects, properties);
+		// Forget the instance used to determine the resource class
+		clearServiceInvocations();
+		return provider;
+	}
+
+	/**
+	 * All instances of this resource are equal
+	 */
+	public static class EqualResource {
+
+		@Override
+		public int hashCode() {
+			return 0;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof EqualResource;
+		}
+	}
+
+	/**
+	 * Records the instances that have not been released, and any instance released twice
+	 */
+	private static class CountingServiceObjects implements ServiceObjects<Object> {
+
+		final Set<Object> outstanding = Collections.synchronizedSet(Collections.newSetFromMap(new IdentityHashMap<>()));
+		final List<String> errors = Collections.synchronizedList(new ArrayList<>());
+
+		@Override
+		public Object getService() {
+			TestResource resource = new TestResource();
+			outstanding.add(resource);
+			return resource;
+		}
+
+		@Override
+		public void ungetService(Object service) {
+			if (!outstanding.remove(service)) {
+				errors.add("Released an unknown instance " + System.identityHashCode(service));
+			}
+		}
+
+		@Override
+		public ServiceReference<Object> getServiceReference() {
+			return null;
+		}
+	}
+
+	public static class ResettableResource implements PooledResource {
+
+		String state;
+		boolean reusable = true;
+
+		@Override
+		public boolean reset() {
+			state = null;
+			return reusable;
+		}
+	}
+}
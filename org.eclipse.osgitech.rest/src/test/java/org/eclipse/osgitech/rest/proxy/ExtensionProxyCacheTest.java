@@ -0,0 +1,156 @@
+/**
+ * Copyright (c) 2012 - 2022 Data In Motion and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Data In Motion - initial API and implementation
+ *     Stefan Bishof - API and implementation
+ *     Tim Ward - implementation
+ */
+package org.eclipse.osgitech.rest.proxy;
+
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.List;
+
+import org.eclipse.osgitech.rest.proxy.ExtensionProxyTest.AnnotatedExceptionMapper;
+import org.eclipse.osgitech.rest.proxy.ExtensionProxyTest.RawExceptionMapper;
+import org.eclipse.osgitech.rest.proxy.ExtensionProxyTest.TestExceptionMapper;
+import org.eclipse.osgitech.rest.runtime.ProxyCacheMetrics;
+import org.junit.jupiter.api.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleEvent;
+import org.osgi.framework.wiring.BundleWiring;
+
+import jakarta.ws.rs.ext.ExceptionMapper;
+
+/**
+ * Tests the reuse and eviction of generated proxy classes
+ * @since 1.2
+ */
+public class ExtensionProxyCacheTest {
+
+	private static final List<Class<?>> CONTRACTS = singletonList(ExceptionMapper.class);
+
+	@Test
+	public void testClassIsReused() {
+		ExtensionProxyCache cache = new ExtensionProxyCache(10);
+		BundleWiring wiring = wiring();
+
+		Class<?> first = cache.getProxyClass(TestExceptionMapper.class, CONTRACTS, wiring, 1);
+		Class<?> second = cache.getProxyClass(TestExceptionMapper.class, CONTRACTS, wiring, 1);
+		assertSame(first, second);
+		assertTrue(ExceptionMapper.class.isAssignableFrom(first));
+		assertEquals("org.eclipse.osgitech.rest.proxy.Extension_org_eclipse_osgitech_rest_proxy_ExtensionProxyTest_TestExceptionMapper_ExceptionMapper_0", 
+				first.getName());
+
+		// Any part of the key creates a new class
+		assertNotSame(first, cache.getProxyClass(RawExceptionMapper.class, CONTRACTS, wiring, 1));
+		assertNotSame(first, cache.getProxyClass(TestExceptionMapper.class, CONTRACTS, wiring(), 1));
+
+		ProxyCacheMetrics metrics = cache.getMetrics();
+		assertEquals(3, metrics.getSize());
+		assertEquals(1, metrics.getHits());
+		assertEquals(3, metrics.getMisses());
+		assertEquals(0, metrics.getEvictions());
+		assertTrue(metrics.getCachedBytes() > 0);
+		assertTrue(metrics.getLoadedClasses() > 0);
+	}
+
+	@Test
+	public void testReRegistrationReusesClass() {
+		ExtensionProxyCache cache = new ExtensionProxyCache(10);
+		BundleWiring wiring = wiring();
+
+		Class<?> first = cache.getProxyClass(TestExceptionMapper.class, CONTRACTS, wiring, 1);
+		// Jersey registers one instance per class, services present at the same time need their own class
+		Class<?> other = cache.getProxyClass(TestExceptionMapper.class, CONTRACTS, wiring, 2);
+		assertNotSame(first, other);
+
+		// The service is registered again with a new id
+		cache.release(1);
+		assertSame(first, cache.getProxyClass(TestExceptionMapper.class, CONTRACTS, wiring, 3));
+		assertSame(other, cache.getProxyClass(TestExceptionMapper.class, CONTRACTS, wiring, 2));
+		// The slot of the released service is taken
+		assertNotSame(first, cache.getProxyClass(TestExceptionMapper.class, CONTRACTS, wiring, 1));
+
+		assertEquals(3, cache.getMetrics().getSize());
+		assertEquals(2, cache.getMetrics().getHits());
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEviction() {
+		ExtensionProxyCache cache = new ExtensionProxyCache(2);
+		BundleWiring wiring = wiring();
+
+		Class<?> a = cache.getProxyClass(TestExceptionMapper.class, CONTRACTS, wiring, 1);
+		cache.getProxyClass(RawExceptionMapper.class, CONTRACTS, wiring, 2);
+		// Use A, so that B is the least recently used
+		assertSame(a, cache.getProxyClass(TestExceptionMapper.class, CONTRACTS, wiring, 1));
+		cache.getProxyClass(AnnotatedExceptionMapper.class, CONTRACTS, wiring, 3);
+
+		assertEquals(2, cache.getMetrics().getSize());
+		assertEquals(1, cache.getMetrics().getEvictions());
+		assertSame(a, cache.getProxyClass(TestExceptionMapper.class, CONTRACTS, wiring, 1));
+	}
+
+	@Test
+	public void testPurgeRemovesStaleWirings() {
+		ExtensionProxyCache cache = new ExtensionProxyCache(10);
+		BundleWiring current = wiring();
+		BundleWiring stale = wiring();
+
+		Class<?> kept = cache.getProxyClass(TestExceptionMapper.class, CONTRACTS, current, 1);
+		Class<?> purged = cache.getProxyClass(TestExceptionMapper.class, CONTRACTS, stale, 2);
+
+		when(stale.isCurrent()).thenReturn(false);
+		cache.purge();
+
+		assertEquals(1, cache.getMetrics().getSize());
+		assertEquals(1, cache.getMetrics().getEvictions());
+		assertSame(kept, cache.getProxyClass(TestExceptionMapper.class, CONTRACTS, current, 1));
+		assertNotSame(purged, cache.getProxyClass(TestExceptionMapper.class, CONTRACTS, stale, 2));
+	}
+
+	/**
+	 * The extension services of a bundle are unregistered while its wiring is still current,
+	 * the classes are evicted by the bundle event replacing the wiring
+	 */
+	@Test
+	public void testBundleEventEvictsStaleWiring() {
+		ExtensionProxyCache cache = new ExtensionProxyCache(10);
+		BundleWiring wiring = wiring();
+		Bundle bundle = mock(Bundle.class);
+
+		cache.getProxyClass(TestExceptionMapper.class, CONTRACTS, wiring, 1);
+		cache.release(1);
+		cache.bundleChanged(new BundleEvent(BundleEvent.STOPPED, bundle));
+		assertEquals(1, cache.getMetrics().getSize());
+
+		// The bundle is updated
+		when(wiring.isCurrent()).thenReturn(false);
+		cache.bundleChanged(new BundleEvent(BundleEvent.STARTED, bundle));
+		assertEquals(1, cache.getMetrics().getSize());
+		cache.bundleChanged(new BundleEvent(BundleEvent.UPDATED, bundle));
+		assertEquals(0, cache.getMetrics().getSize());
+		assertEquals(0, cache.getMetrics().getCachedBytes());
+		assertEquals(1, cache.getMetrics().getEvictions());
+	}
+
+	private BundleWiring wiring() {
+		BundleWiring wiring = mock(BundleWiring.class);
+		when(wiring.getClassLoader()).thenReturn(getClass().getClassLoader());
+		when(wiring.isCurrent()).thenReturn(true);
+		return wiring;
+	}
+}
@@ -17,6 +17,7 @@ import static java.util.Collections.singletonList;
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.ByteArrayInputStream;
@@ -27,6 +28,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.annotation.Annotation;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
@@ -35,7 +37,6 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.function.Supplier;
 
 import org.glassfish.jersey.internal.util.ReflectionHelper;
 import org.junit.jupiter.api.Test;
@@ -93,13 +94,32 @@ public class ExtensionProxyTest {
 		assertEquals(ExceptionMapper.class, pt.getRawType());
 		assertEquals(NullPointerException.class, pt.getActualTypeArguments()[0]);
 
-		Object instance = proxyClazz.getConstructor(Supplier.class).newInstance((Supplier<?>) () -> em);
+		Object instance = proxyClazz.getConstructor(Object.class).newInstance(em);
 
 		assertEquals(418,
 				((ExceptionMapper<NullPointerException>) instance).toResponse(new NullPointerException()).getStatus());
 
 	}
 
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testDisposedProxy() throws Exception {
+
+		ExceptionMapper<NullPointerException> em = new TestExceptionMapper();
+
+		Class<?> proxyClazz = pcl.define("test.DisposedExceptionMapper", em, singletonList(ExceptionMapper.class));
+		assertTrue(Modifier.isVolatile(proxyClazz.getField(ExtensionProxyFactory.DELEGATE_FIELD).getModifiers()));
+
+		ExceptionMapper<NullPointerException> instance = (ExceptionMapper<NullPointerException>) 
+				ExtensionProxyFactory.newInstance(proxyClazz, em);
+		assertEquals(418, instance.toResponse(new NullPointerException()).getStatus());
+
+		ExtensionProxyFactory.dispose(instance);
+		IllegalStateException ise = assertThrows(IllegalStateException.class, 
+				() -> instance.toResponse(new NullPointerException()));
+		assertEquals("The target extension test.DisposedExceptionMapper has been disposed", ise.getMessage());
+	}
+
 	@SuppressWarnings({ "rawtypes", "unchecked" })
 	@Test
 	public void testRawExceptionMapper() throws Exception {
@@ -114,7 +134,7 @@ public class ExtensionProxyTest {
 		assertEquals(1, genericInterfaces.length);
 		assertEquals(ExceptionMapper.class, genericInterfaces[0]);
 
-		Object instance = proxyClazz.getConstructor(Supplier.class).newInstance((Supplier<?>) () -> em);
+		Object instance = proxyClazz.getConstructor(Object.class).newInstance(em);
 
 		assertEquals(814, ((ExceptionMapper) instance).toResponse(new OutOfMemoryError()).getStatus());
 
@@ -147,7 +167,7 @@ public class ExtensionProxyTest {
 		assertTrue(TypeVariable.class.isInstance(pt.getActualTypeArguments()[0]));
 		assertEquals("T", pt.getActualTypeArguments()[0].toString());
 
-		Object instance = proxyClazz.getConstructor(Supplier.class).newInstance((Supplier<?>) () -> em);
+		Object instance = proxyClazz.getConstructor(Object.class).newInstance(em);
 
 		assertEquals(451, ((ExceptionMapper<Throwable>) instance).toResponse(new RuntimeException()).getStatus());
 
@@ -174,7 +194,7 @@ public class ExtensionProxyTest {
 		assertEquals(ExceptionMapper.class, pt.getRawType());
 		assertEquals(WebApplicationException.class, pt.getActualTypeArguments()[0]);
 
-		Object instance = proxyClazz.getConstructor(Supplier.class).newInstance((Supplier<?>) () -> em);
+		Object instance = proxyClazz.getConstructor(Object.class).newInstance(em);
 
 		assertEquals(404,
 				((ExceptionMapper<WebApplicationException>) instance).toResponse(new NotFoundException()).getStatus());
@@ -207,7 +227,7 @@ public class ExtensionProxyTest {
 		assertTrue(TypeVariable.class.isInstance(pt.getActualTypeArguments()[0]));
 		assertEquals("T", pt.getActualTypeArguments()[0].toString());
 
-		Object instance = proxyClazz.getConstructor(Supplier.class).newInstance((Supplier<?>) () -> cr);
+		Object instance = proxyClazz.getConstructor(Object.class).newInstance(cr);
 
 		assertEquals("", ((ContextResolver<? extends CharSequence>) instance).getContext(String.class));
 
@@ -239,7 +259,7 @@ public class ExtensionProxyTest {
 		assertTrue(ParameterizedType.class.isInstance(pt.getActualTypeArguments()[0]));
 		assertEquals("java.util.List<R>", pt.getActualTypeArguments()[0].toString());
 
-		Object instance = proxyClazz.getConstructor(Supplier.class).newInstance((Supplier<?>) () -> cr);
+		Object instance = proxyClazz.getConstructor(Object.class).newInstance(cr);
 
 		assertEquals(Collections.emptyList(), ((ContextResolver<List<Integer>>) instance).getContext(String.class));
 
@@ -266,7 +286,7 @@ public class ExtensionProxyTest {
 		assertTrue(ParameterizedType.class.isInstance(pt.getActualTypeArguments()[0]));
 		assertEquals("java.util.List<java.lang.Double>", pt.getActualTypeArguments()[0].toString());
 
-		Object instance = proxyClazz.getConstructor(Supplier.class).newInstance((Supplier<?>) () -> cr);
+		Object instance = proxyClazz.getConstructor(Object.class).newInstance(cr);
 
 		assertEquals(Collections.singletonList(42.0d),
 				((ContextResolver<List<Double>>) instance).getContext(String.class));
@@ -290,7 +310,7 @@ public class ExtensionProxyTest {
 		assertTrue(ParameterizedType.class.isInstance(pt.getActualTypeArguments()[0]));
 		assertEquals("java.util.List<? super java.lang.Integer>", pt.getActualTypeArguments()[0].toString());
 
-		Object instance = proxyClazz.getConstructor(Supplier.class).newInstance((Supplier<?>) () -> cr);
+		Object instance = proxyClazz.getConstructor(Object.class).newInstance(cr);
 
 		assertEquals(Collections.emptyList(), ((ContextResolver<List<Integer>>) instance).getContext(String.class));
 
@@ -318,7 +338,7 @@ public class ExtensionProxyTest {
 		assertTrue(TypeVariable.class.isInstance(pt.getActualTypeArguments()[0]));
 		assertEquals("R", pt.getActualTypeArguments()[0].toString());
 
-		Object instance = proxyClazz.getConstructor(Supplier.class).newInstance((Supplier<?>) () -> cr);
+		Object instance = proxyClazz.getConstructor(Object.class).newInstance(cr);
 
 		assertEquals("", ((ContextResolver<?>) instance).getContext(String.class));
 
@@ -342,7 +362,7 @@ public class ExtensionProxyTest {
 		assertEquals(ContextResolver.class, pt.getRawType());
 		assertEquals(Double.class, pt.getActualTypeArguments()[0]);
 
-		Object instance = proxyClazz.getConstructor(Supplier.class).newInstance((Supplier<?>) () -> cr);
+		Object instance = proxyClazz.getConstructor(Object.class).newInstance(cr);
 
 		assertEquals(42.0d, ((ContextResolver<?>) instance).getContext(String.class));
 
@@ -364,7 +384,7 @@ public class ExtensionProxyTest {
 		assertTrue(ParameterizedType.class.isInstance(pt.getActualTypeArguments()[0]));
 		assertEquals("java.util.List<java.lang.Double>", pt.getActualTypeArguments()[0].getTypeName());
 
-		Object instance = proxyClazz.getConstructor(Supplier.class).newInstance((Supplier<?>) () -> cr);
+		Object instance = proxyClazz.getConstructor(Object.class).newInstance(cr);
 
 		assertEquals(Collections.singletonList(17.0d), ((ContextResolver<?>) instance).getContext(String.class));
 
@@ -392,7 +412,7 @@ public class ExtensionProxyTest {
 		assertTrue(ParameterizedType.class.isInstance(pt.getActualTypeArguments()[0]));
 		assertEquals("java.util.List<R>", pt.getActualTypeArguments()[0].toString());
 
-		Object instance = proxyClazz.getConstructor(Supplier.class).newInstance((Supplier<?>) () -> cr);
+		Object instance = proxyClazz.getConstructor(Object.class).newInstance(cr);
 
 		assertEquals("", ((ContextResolver<?>) instance).getContext(String.class));
 
@@ -419,7 +439,7 @@ public class ExtensionProxyTest {
 		assertEquals("java.util.List<java.util.Map<java.lang.String, java.lang.Integer>>",
 				pt.getActualTypeArguments()[0].toString());
 
-		Object instance = proxyClazz.getConstructor(Supplier.class).newInstance((Supplier<?>) () -> cr);
+		Object instance = proxyClazz.getConstructor(Object.class).newInstance(cr);
 
 		assertEquals(Collections.singletonList(Collections.singletonMap("foo", 42)),
 				((ContextResolver<?>) instance).getContext(String.class));
@@ -449,7 +469,7 @@ public class ExtensionProxyTest {
 		Path path = proxyClazz.getAnnotation(Path.class);
 		assertEquals("boo", path.value());
 
-		Object instance = proxyClazz.getConstructor(Supplier.class).newInstance((Supplier<?>) () -> em);
+		Object instance = proxyClazz.getConstructor(Object.class).newInstance(em);
 
 		assertEquals(777, ((ExceptionMapper<IllegalArgumentException>) instance)
 				.toResponse(new IllegalArgumentException()).getStatus());
@@ -482,7 +502,7 @@ public class ExtensionProxyTest {
 		assertEquals(MessageBodyReader.class, pt.getRawType());
 		assertEquals(Integer.class, pt.getActualTypeArguments()[0]);
 
-		Object instance = proxyClazz.getConstructor(Supplier.class).newInstance((Supplier<?>) () -> mi);
+		Object instance = proxyClazz.getConstructor(Object.class).newInstance(mi);
 
 		ByteArrayOutputStream baos = new ByteArrayOutputStream();
 		((MessageBodyWriter) instance).writeTo(42L, Long.class, null, null, null, null, baos);
@@ -527,8 +547,8 @@ public class ExtensionProxyTest {
 		assertArrayEquals(new Type[] {Object.class}, tv.getBounds());
 		
 		
-		Object instance = proxyClazz.getConstructor(Supplier.class)
-				.newInstance((Supplier<?>) () -> mi);
+		Object instance = proxyClazz.getConstructor(Object.class)
+				.newInstance(mi);
 		
 		ByteArrayOutputStream baos = new ByteArrayOutputStream();
 		((MessageBodyWriter) instance).writeTo("ignore me", Object.class, null, null, null, null, baos);
@@ -573,8 +593,8 @@ public class ExtensionProxyTest {
 		assertEquals("R", tv.getName());
 		assertArrayEquals(new Type[] {Number.class}, tv.getBounds());
 		
-		Object instance = proxyClazz.getConstructor(Supplier.class)
-				.newInstance((Supplier<?>) () -> mi);
+		Object instance = proxyClazz.getConstructor(Object.class)
+				.newInstance(mi);
 		
 		ByteArrayOutputStream baos = new ByteArrayOutputStream();
 		((MessageBodyWriter) instance).writeTo("banana", CharSequence.class, null, null, null, null, baos);
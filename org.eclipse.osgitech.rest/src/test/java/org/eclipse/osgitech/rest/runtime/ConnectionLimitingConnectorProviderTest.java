@@ -0,0 +1,187 @@
+/**
+ * Copyright (c) 2012 - 2022 Data In Motion and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Data In Motion - initial API and implementation
+ *     Stefan Bishof - API and implementation
+ *     Tim Ward - implementation
+ */
+package org.eclipse.osgitech.rest.runtime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.JerseyClientBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import jakarta.ws.rs.ProcessingException;
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.core.Response;
+
+/**
+ * Tests the connection limits shared by clients, against a local stub server
+ * @since 1.2
+ */
+public class ConnectionLimitingConnectorProviderTest {
+
+	private HttpServer server;
+	private ExecutorService serverExecutor;
+	private String baseUri;
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger maxInFlight = new AtomicInteger();
+	private final CountDownLatch release = new CountDownLatch(1);
+
+	@BeforeEach
+	public void before() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		serverExecutor = Executors.newCachedThreadPool();
+		server.setExecutor(serverExecutor);
+		server.createContext("/hello", e -> respond(e, "hello"));
+		server.createContext("/held", e -> {
+			maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+			try {
+				release.await(30, TimeUnit.SECONDS);
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+			}
+			inFlight.decrementAndGet();
+			respond(e, "released");
+		});
+		server.start();
+		baseUri = "http://127.0.0.1:" + server.getAddress().getPort();
+	}
+
+	@AfterEach
+	public void after() {
+		release.countDown();
+		server.stop(0);
+		serverExecutor.shutdownNow();
+	}
+
+	@Test
+	public void testConnectionsPerRoute() throws Exception {
+		ConnectionLimitingConnectorProvider provider = new ConnectionLimitingConnectorProvider(10, 2, 0);
+		// Two clients share the limit
+		Client first = client(provider);
+		Client second = client(provider);
+		try {
+			List<Future<String>> responses = new ArrayList<>();
+			for (int i = 0; i < 3; i++) {
+				responses.add(first.target(baseUri).path("held").request().async().get(String.class));
+				responses.add(second.target(baseUri).path("held").request().async().get(String.class));
+			}
+			waitFor(() -> provider.getMetrics().getPending() == 4);
+			ConnectionLimitMetrics metrics = provider.getMetrics();
+			assertEquals(2, metrics.getLeased());
+			assertEquals(1, metrics.getRoutes());
+			assertEquals(0.2, metrics.getUtilization(), 0.001);
+
+			release.countDown();
+			for (Future<String> f : responses) {
+				assertEquals("released", f.get(30, TimeUnit.SECONDS));
+			}
+			assertEquals(2, maxInFlight.get());
+			waitFor(() -> provider.getMetrics().getLeased() == 0);
+			assertEquals(6, provider.getMetrics().getRequests());
+		} finally {
+			first.close();
+			second.close();
+		}
+	}
+
+	@Test
+	public void testWaitTimeout() {
+		ConnectionLimitingConnectorProvider provider = new ConnectionLimitingConnectorProvider(1, 0, 100);
+		Client client = client(provider);
+		try {
+			// The connection stays in use until the entity is consumed
+			Response open = client.target(baseUri).path("hello").request().get();
+			assertEquals(1, provider.getMetrics().getLeased());
+			assertThrows(ProcessingException.class, () -> client.target(baseUri).path("hello").request().get(String.class));
+			assertEquals(1, provider.getMetrics().getTimeouts());
+
+			open.close();
+			assertEquals(0, provider.getMetrics().getLeased());
+			assertEquals("hello", client.target(baseUri).path("hello").request().get(String.class));
+			assertEquals(0, provider.getMetrics().getLeased());
+		} finally {
+			client.close();
+		}
+	}
+
+	/**
+	 * The permit of a response that is neither consumed nor closed is released once it is collected
+	 */
+	@Test
+	public void testAbandonedResponse() throws Exception {
+		ConnectionLimitingConnectorProvider provider = new ConnectionLimitingConnectorProvider(1, 0, 100);
+		Client client = client(provider);
+		try {
+			abandon(client);
+			assertEquals(1, provider.getMetrics().getLeased());
+			waitFor(() -> {
+				System.gc();
+				return provider.getMetrics().getLeased() == 0;
+			});
+			assertEquals(1, provider.getMetrics().getAbandoned());
+
+			assertEquals("hello", client.target(baseUri).path("hello").request().get(String.class));
+			assertEquals(0, provider.getMetrics().getLeased());
+			assertEquals(1, provider.getMetrics().getAbandoned());
+		} finally {
+			client.close();
+		}
+	}
+
+	private void abandon(Client client) {
+		Response response = client.target(baseUri).path("hello").request().get();
+		assertEquals(200, response.getStatus());
+	}
+
+	private Client client(ConnectionLimitingConnectorProvider provider) {
+		return new JerseyClientBuilder().withConfig(new ClientConfig().connectorProvider(provider)).build();
+	}
+
+	private void waitFor(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 30000;
+		while (!condition.getAsBoolean()) {
+			assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting");
+			Thread.sleep(10);
+		}
+	}
+
+	private void respond(HttpExchange exchange, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "text/plain");
+		exchange.sendResponseHeaders(200, bytes.length);
+		try (OutputStream os = exchange.getResponseBody()) {
+			os.write(bytes);
+		}
+	}
+}
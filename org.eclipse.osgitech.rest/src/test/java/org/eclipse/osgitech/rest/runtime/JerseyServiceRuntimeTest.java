@@ -0,0 +1,799 @@
+/**
+ * Copyright (c) 2012 - 2022 Data In Motion and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Data In Motion - initial API and implementation
+ *     Stefan Bishof - API and implementation
+ *     Tim Ward - implementation
+ */
+package org.eclipse.osgitech.rest.runtime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.eclipse.osgitech.rest.provider.JerseyConstants.JERSEY_DISPATCH_MAX_DELAY;
+import static org.eclipse.osgitech.rest.provider.JerseyConstants.JERSEY_DISPATCH_PARALLELISM;
+import static org.eclipse.osgitech.rest.provider.JerseyConstants.JERSEY_DISPATCH_QUIET_PERIOD;
+import static org.eclipse.osgitech.rest.provider.JerseyConstants.JERSEY_PROTOTYPE_POOL_SIZE;
+import static org.eclipse.osgitech.rest.provider.JerseyConstants.JERSEY_RUNTIME_SERVICE_ID;
+import static org.osgi.framework.Constants.OBJECTCLASS;
+import static org.osgi.framework.Constants.SERVICE_CHANGECOUNT;
+import static org.osgi.framework.Constants.SERVICE_ID;
+import static org.osgi.framework.Constants.SCOPE_PROTOTYPE;
+import static org.osgi.framework.Constants.SERVICE_RANKING;
+import static org.osgi.framework.Constants.SERVICE_SCOPE;
+import static org.osgi.service.jakartars.runtime.JakartarsServiceRuntimeConstants.JAKARTA_RS_SERVICE_ENDPOINT;
+import static org.osgi.service.jakartars.whiteboard.JakartarsWhiteboardConstants.JAKARTA_RS_APPLICATION_BASE;
+import static org.osgi.service.jakartars.whiteboard.JakartarsWhiteboardConstants.JAKARTA_RS_APPLICATION_SELECT;
+import static org.osgi.service.jakartars.whiteboard.JakartarsWhiteboardConstants.JAKARTA_RS_EXTENSION;
+import static org.osgi.service.jakartars.whiteboard.JakartarsWhiteboardConstants.JAKARTA_RS_EXTENSION_SELECT;
+import static org.osgi.service.jakartars.whiteboard.JakartarsWhiteboardConstants.JAKARTA_RS_NAME;
+import static org.osgi.service.jakartars.whiteboard.JakartarsWhiteboardConstants.JAKARTA_RS_RESOURCE;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Dictionary;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.eclipse.osgitech.rest.factories.JerseyResourceInstanceFactory;
+import org.eclipse.osgitech.rest.resources.TestExtension;
+import org.eclipse.osgitech.rest.resources.TestResource;
+import org.eclipse.osgitech.rest.runtime.application.JerseyApplication;
+import org.glassfish.jersey.server.ApplicationHandler;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.server.spi.Container;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.Filter;
+import org.osgi.framework.FrameworkUtil;
+import org.osgi.framework.ServiceEvent;
+import org.osgi.framework.ServiceListener;
+import org.osgi.framework.ServiceObjects;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.jakartars.runtime.JakartarsServiceRuntime;
+import org.osgi.service.jakartars.runtime.dto.ApplicationDTO;
+import org.osgi.service.jakartars.runtime.dto.BaseDTO;
+import org.osgi.service.jakartars.runtime.dto.RuntimeDTO;
+
+import jakarta.ws.rs.core.Application;
+import jakarta.ws.rs.ext.MessageBodyReader;
+
+/**
+ * Tests the dispatching of the {@link JerseyServiceRuntime} against a mocked service registry
+ * @since 1.2
+ */
+public class JerseyServiceRuntimeTest {
+
+	private final AtomicLong serviceIds = new AtomicLong(100);
+
+	private final List<Whiteboard> whiteboards = new ArrayList<>();
+
+	private final Map<Long, Map<String, Object>> services = new LinkedHashMap<>();
+
+	@BeforeEach
+	public void before() {
+		services.clear();
+	}
+
+	@AfterEach
+	public void after() {
+		whiteboards.forEach(Whiteboard::stop);
+		whiteboards.clear();
+	}
+
+	/**
+	 * Changes to the services of one application must not reload the containers of others
+	 */
+	@Test
+	public void testOnlyAffectedApplicationsAreReloaded() throws Exception {
+		Whiteboard whiteboard = startWhiteboard();
+
+		long app1 = whiteboard.register(application("app1", "/app1"));
+		long app2 = whiteboard.register(application("app2", "/app2"));
+		whiteboard.register(resource("res1", "(osgi.jakartars.name=app1)"));
+		whiteboard.register(resource("res2", "(osgi.jakartars.name=app2)"));
+		whiteboard.awaitUpdate();
+
+		RecordingContainer c1 = whiteboard.containers.get("/app1");
+		RecordingContainer c2 = whiteboard.containers.get("/app2");
+		assertNotNull(c1);
+		assertNotNull(c2);
+		int c1Reloads = c1.reloads;
+		int c2Reloads = c2.reloads;
+
+		long res3 = whiteboard.register(resource("res3", "(osgi.jakartars.name=app1)"));
+		whiteboard.awaitUpdate();
+		assertTrue(c1.reloads > c1Reloads, "The affected application was not reloaded");
+		assertEquals(c2Reloads, c2.reloads, "An unaffected application was reloaded");
+
+		c1Reloads = c1.reloads;
+		whiteboard.unregister(res3);
+		whiteboard.awaitUpdate();
+		assertTrue(c1.reloads > c1Reloads, "The affected application was not reloaded");
+		assertEquals(c2Reloads, c2.reloads, "An unaffected application was reloaded");
+
+		c1Reloads = c1.reloads;
+		whiteboard.modify(app2, Map.of("foo", "bar"));
+		whiteboard.awaitUpdate();
+		assertEquals(c1Reloads, c1.reloads, "An unaffected application was reloaded");
+		assertTrue(c2.reloads > c2Reloads, "The affected application was not reloaded");
+
+		assertEquals(describe(startFresh().getRuntimeDTO()), describe(whiteboard.getRuntimeDTO()));
+		assertNotNull(whiteboard.containers.get("/app1"));
+		whiteboard.unregister(app1);
+		whiteboard.awaitUpdate();
+		assertEquals(null, whiteboard.containers.get("/app1"));
+	}
+
+	/**
+	 * Changes that do not alter what is deployed in an application must not reload its container
+	 */
+	@Test
+	public void testUnchangedApplicationsAreNotReloaded() throws Exception {
+		Whiteboard whiteboard = startWhiteboard();
+
+		whiteboard.register(application("app1", "/app1"));
+		long res1 = whiteboard.register(resource("res1", "(osgi.jakartars.name=app1)"));
+		whiteboard.awaitUpdate();
+
+		RecordingContainer c1 = whiteboard.containers.get("/app1");
+		assertNotNull(c1);
+		int reloads = c1.reloads;
+		long skipped = whiteboard.metrics().getSkippedReloadCount();
+
+		// A runtime update checks every application
+		whiteboard.update(Map.of("test.whiteboard", Boolean.TRUE, "foo", "bar"));
+		whiteboard.awaitUpdate();
+		assertEquals(reloads, c1.reloads);
+		assertTrue(whiteboard.metrics().getSkippedReloadCount() > skipped);
+
+		// The service properties of the content are part of the deployed content
+		whiteboard.modify(res1, Map.of("foo", "bar"));
+		whiteboard.awaitUpdate();
+		assertTrue(c1.reloads > reloads);
+		reloads = c1.reloads;
+
+		// A ranking change is part of the content
+		whiteboard.modify(res1, Map.of(SERVICE_RANKING, 5));
+		whiteboard.awaitUpdate();
+		assertTrue(c1.reloads > reloads);
+		assertEquals(describe(startFresh().getRuntimeDTO()), describe(whiteboard.getRuntimeDTO()));
+	}
+
+	/**
+	 * Events arriving within the quiet period are coalesced into a single dispatch cycle
+	 */
+	@Test
+	public void testEventsAreCoalesced() throws Exception {
+		Whiteboard whiteboard = startWhiteboard(Map.of(JERSEY_DISPATCH_QUIET_PERIOD, "200",
+				JERSEY_DISPATCH_MAX_DELAY, 5000L));
+		whiteboard.awaitUpdate();
+		DispatchMetrics initial = whiteboard.metrics().getDispatchMetrics();
+		assertEquals(1, initial.getCycles());
+
+		whiteboard.register(application("app1", "/app1"));
+		for (int i = 0; i < 10; i++) {
+			whiteboard.register(resource("res" + i, "(osgi.jakartars.name=app1)"));
+		}
+		whiteboard.awaitUpdate();
+
+		DispatchMetrics metrics = whiteboard.metrics().getDispatchMetrics();
+		assertEquals(2, metrics.getCycles(), metrics.toString());
+		assertEquals(11, metrics.getLastCycleEvents());
+		assertEquals(12, metrics.getEvents());
+		assertTrue(metrics.getReloadTime(TimeUnit.NANOSECONDS) > 0);
+		assertTrue(metrics.getDtoTime(TimeUnit.NANOSECONDS) > 0);
+	}
+
+	/**
+	 * The metrics are registered as a service for the registered runtime, and unregistered with it
+	 */
+	@Test
+	public void testMetricsService() throws Exception {
+		Whiteboard whiteboard = startWhiteboard();
+		whiteboard.awaitUpdate();
+		assertEquals(1, whiteboard.metrics().getDispatchMetrics().getCycles());
+		assertEquals(whiteboard.getRegistrationProperties().get(SERVICE_ID), 
+				whiteboard.metricsProperties.get(JERSEY_RUNTIME_SERVICE_ID));
+		// Shared by all runtimes
+		assertTrue(whiteboard.metrics().getProxyCacheMetrics().getLoadedClasses() > 0);
+
+		whiteboards.remove(whiteboard);
+		whiteboard.stop();
+		assertNull(whiteboard.metrics);
+	}
+
+	/**
+	 * Events that keep arriving must not hold back the update beyond the maximum delay
+	 */
+	@Test
+	public void testMaximumDelay() throws Exception {
+		Whiteboard whiteboard = startWhiteboard(Map.of(JERSEY_DISPATCH_QUIET_PERIOD, 100,
+				JERSEY_DISPATCH_MAX_DELAY, 300));
+		whiteboard.awaitUpdate();
+
+		long end = System.currentTimeMillis() + 1500;
+		int i = 0;
+		while (System.currentTimeMillis() < end) {
+			whiteboard.register(resource("res" + i++, null));
+			Thread.sleep(20);
+		}
+		whiteboard.awaitUpdate();
+
+		DispatchMetrics metrics = whiteboard.metrics().getDispatchMetrics();
+		assertTrue(metrics.getCycles() >= 4, metrics.toString());
+		assertTrue(metrics.getMaxCycleEvents() > 1, metrics.toString());
+		assertEquals(i + 1, metrics.getEvents());
+	}
+
+	/**
+	 * Every step of an incremental update must produce the same runtime DTO as a
+	 * whiteboard that dispatches the same services from scratch
+	 */
+	@Test
+	public void testIncrementalDispatchMatchesFullDispatch() throws Exception {
+		Whiteboard whiteboard = startWhiteboard();
+
+		long app1 = whiteboard.register(application("app1", "/app1"));
+		whiteboard.register(application("app2", "/app2"));
+		long res1 = whiteboard.register(resource("res1", "(osgi.jakartars.name=app1)"));
+		whiteboard.register(resource("res2", "(osgi.jakartars.name=app2)"));
+		whiteboard.register(resource("res3", null));
+		long ext1 = whiteboard.register(extension("ext1", "(osgi.jakartars.name=app1)"));
+		assertSameAsFullDispatch(whiteboard);
+
+		// A resource requiring a missing extension
+		Map<String, Object> props = resource("res4", "(osgi.jakartars.name=app2)");
+		props.put(JAKARTA_RS_EXTENSION_SELECT, "(osgi.jakartars.name=ext2)");
+		long res4 = whiteboard.register(props);
+		assertSameAsFullDispatch(whiteboard);
+
+		// Satisfy the requirement
+		long ext2 = whiteboard.register(extension("ext2", "(osgi.jakartars.name=app2)"));
+		assertSameAsFullDispatch(whiteboard);
+
+		// Move a resource between applications
+		whiteboard.modify(res1, Map.of(JAKARTA_RS_APPLICATION_SELECT, "(osgi.jakartars.name=app2)"));
+		assertSameAsFullDispatch(whiteboard);
+
+		// Duplicate names, shadowed by the higher ranked service
+		Map<String, Object> duplicate = resource("res3", null);
+		duplicate.put(SERVICE_RANKING, 10);
+		whiteboard.register(duplicate);
+		assertSameAsFullDispatch(whiteboard);
+
+		// Shadow an application path
+		Map<String, Object> shadow = application("app3", "/app1");
+		shadow.put(SERVICE_RANKING, 10);
+		long app3 = whiteboard.register(shadow);
+		assertSameAsFullDispatch(whiteboard);
+
+		whiteboard.unregister(app3);
+		whiteboard.unregister(ext2);
+		assertSameAsFullDispatch(whiteboard);
+
+		whiteboard.unregister(app1);
+		whiteboard.unregister(ext1);
+		whiteboard.unregister(res4);
+		assertSameAsFullDispatch(whiteboard);
+	}
+
+	/**
+	 * With parallelism enabled the containers are still created in path order, loaded
+	 * on the dispatch pool, and give the same result as a serial dispatch
+	 */
+	@Test
+	public void testParallelDispatch() throws Exception {
+		// A long quiet period, so that all the applications are created in the same cycle
+		Whiteboard whiteboard = startWhiteboard(Map.of(JERSEY_DISPATCH_PARALLELISM, 4,
+				JERSEY_DISPATCH_QUIET_PERIOD, 500, JERSEY_DISPATCH_MAX_DELAY, 10000));
+		whiteboard.awaitUpdate();
+		for (String name : List.of("app3", "app1", "app4", "app2")) {
+			whiteboard.register(application(name, "/" + name));
+			whiteboard.register(resource("res-" + name, "(osgi.jakartars.name=" + name + ")"));
+		}
+		assertSameAsFullDispatch(whiteboard);
+
+		List<String> created = new ArrayList<>(whiteboard.created);
+		List<String> sorted = new ArrayList<>(created);
+		Collections.sort(sorted);
+		assertEquals(sorted, created);
+		assertTrue(created.containsAll(List.of("/app1", "/app2", "/app3", "/app4")));
+
+		Map<String, Integer> reloads = new HashMap<>();
+		whiteboard.containers.forEach((p, c) -> reloads.put(p, c.reloads));
+		// Affects every application
+		whiteboard.register(resource("res-all", "(osgi.jakartars.name=*)"));
+		assertSameAsFullDispatch(whiteboard);
+		for (String path : List.of("/app1", "/app2", "/app3", "/app4")) {
+			RecordingContainer c = whiteboard.containers.get(path);
+			assertTrue(c.reloads > reloads.get(path), "The application " + path + " was not reloaded");
+			assertTrue(c.reloadThread.startsWith("JerseyServiceRuntime-dispatch-"), c.reloadThread);
+		}
+	}
+
+	/**
+	 * Changing the parallelism during a dispatch keeps the pool of that dispatch until it is finished, 
+	 * so the containers it creates are built right away, and not only by the next cycle
+	 */
+	@Test
+	public void testParallelismChangeDuringDispatch() throws Exception {
+		Map<String, Object> properties = Map.of(JERSEY_DISPATCH_PARALLELISM, 3, 
+				JERSEY_DISPATCH_QUIET_PERIOD, 3000, JERSEY_DISPATCH_MAX_DELAY, 10000);
+		Whiteboard whiteboard = startWhiteboard(Map.of(JERSEY_DISPATCH_PARALLELISM, 2));
+		whiteboard.awaitUpdate();
+		whiteboard.onCreate = path -> {
+			if ("/app2".equals(path)) {
+				Map<String, Object> changed = new HashMap<>(properties);
+				changed.put("test.whiteboard", Boolean.TRUE);
+				whiteboard.update(changed);
+			}
+		};
+		whiteboard.register(application("app1", "/app1"));
+		whiteboard.register(application("app2", "/app2"));
+
+		// Well before the cycle of the update
+		long deadline = System.currentTimeMillis() + 2000;
+		while (!(whiteboard.isLoaded("/app1") && whiteboard.isLoaded("/app2"))) {
+			assertTrue(System.currentTimeMillis() < deadline, "The containers were not built by the dispatch");
+			Thread.sleep(20);
+		}
+		whiteboard.onCreate = path -> {};
+		whiteboard.awaitUpdate(10000);
+		assertTrue(whiteboard.containers.get("/app2").reloadThread.startsWith("JerseyServiceRuntime-dispatch-"));
+	}
+
+	/**
+	 * Content selecting applications by name, through the name index or a general filter,
+	 * is assigned to exactly the matching applications
+	 */
+	@Test
+	public void testApplicationSelectByName() throws Exception {
+		Whiteboard whiteboard = startWhiteboard();
+		whiteboard.register(application("app1", "/app1"));
+		whiteboard.register(application("app2", "/app2"));
+		Map<String, Object> multiName = application("app3", "/app3");
+		whiteboard.register(multiName);
+
+		whiteboard.register(resource("res1", "(osgi.jakartars.name=app2)"));
+		Map<String, Object> res2 = resource("res2", null);
+		res2.put(JAKARTA_RS_APPLICATION_SELECT, new String[] {"(osgi.jakartars.name=app1)", "( osgi.jakartars.name =app3)"});
+		whiteboard.register(res2);
+		whiteboard.register(resource("res3", "(|(osgi.jakartars.name=app1)(osgi.jakartars.name=app2))"));
+		whiteboard.register(resource("res4", "(osgi.jakartars.name=app*)"));
+		whiteboard.register(resource("res5", "(osgi.jakartars.name=missing)"));
+		whiteboard.awaitUpdate();
+
+		RuntimeDTO dto = whiteboard.getRuntimeDTO();
+		assertEquals(List.of("res2", "res3", "res4"), resourceNames(dto, "app1"));
+		assertEquals(List.of("res1", "res3", "res4"), resourceNames(dto, "app2"));
+		assertEquals(List.of("res2", "res4"), resourceNames(dto, "app3"));
+		assertTrue(Arrays.stream(dto.failedResourceDTOs).anyMatch(f -> "res5".equals(f.name)));
+	}
+
+	/**
+	 * A runtime update replaces the registered properties, so a moved endpoint is advertised
+	 */
+	@Test
+	public void testRuntimePropertiesAreUpdated() throws Exception {
+		Whiteboard whiteboard = startWhiteboard(Map.of(JAKARTA_RS_SERVICE_ENDPOINT, new String[] {"http://localhost:8181/"}, 
+				"foo", "bar"));
+		whiteboard.awaitUpdate();
+
+		whiteboard.update(Map.of("test.whiteboard", Boolean.TRUE, 
+				JAKARTA_RS_SERVICE_ENDPOINT, new String[] {"http://localhost:8282/"}));
+		whiteboard.awaitUpdate();
+		Map<String, Object> registered = whiteboard.getRegistrationProperties();
+		assertEquals(List.of("http://localhost:8282/"), List.of((String[]) registered.get(JAKARTA_RS_SERVICE_ENDPOINT)));
+		assertFalse(registered.containsKey("foo"));
+		assertEquals(1L, registered.get(SERVICE_ID));
+	}
+
+	/**
+	 * The pools of the deployed prototype resources are reported by the runtime
+	 */
+	@Test
+	public void testResourcePoolMetrics() throws Exception {
+		Whiteboard whiteboard = startWhiteboard();
+		whiteboard.register(application("app1", "/app1"));
+		whiteboard.register(application("app2", "/app2"));
+		Map<String, Object> pooled = resource("res1", "(osgi.jakartars.name=app1)");
+		pooled.put(SERVICE_SCOPE, SCOPE_PROTOTYPE);
+		pooled.put(JERSEY_PROTOTYPE_POOL_SIZE, 2);
+		whiteboard.register(pooled);
+		Map<String, Object> unpooled = resource("res2", "(osgi.jakartars.name=app2)");
+		unpooled.put(SERVICE_SCOPE, SCOPE_PROTOTYPE);
+		whiteboard.register(unpooled);
+		whiteboard.awaitUpdate();
+
+		List<ResourcePoolMetrics> metrics = whiteboard.metrics().getResourcePoolMetrics();
+		assertEquals(1, metrics.size());
+		assertEquals("app1", metrics.get(0).getApplicationName());
+		assertEquals("res1", metrics.get(0).getResourceName());
+		assertEquals(0, metrics.get(0).getHits() + metrics.get(0).getMisses());
+
+		// Serve two requests with the deployed factory
+		JerseyApplication application = (JerseyApplication) whiteboard.containers.get("/app1").getConfiguration().getApplication();
+		@SuppressWarnings("unchecked")
+		JerseyResourceInstanceFactory<Object> factory = (JerseyResourceInstanceFactory<Object>) application.getPooledResourceFactories().get(0);
+		factory.dispose(factory.provide());
+		Object active = factory.provide();
+
+		ResourcePoolMetrics served = whiteboard.metrics().getResourcePoolMetrics().get(0);
+		assertEquals(1, served.getHits());
+		assertEquals(1, served.getMisses());
+		assertEquals(0.5, served.getHitRate());
+		assertEquals(1, served.getActiveInstances());
+		assertEquals(0, served.getPooledInstances());
+		factory.dispose(active);
+		assertEquals(1, whiteboard.metrics().getResourcePoolMetrics().get(0).getPooledInstances());
+
+		// The metrics of a stopped runtime are empty, the service is unregistered
+		JerseyRuntimeMetrics registered = whiteboard.metrics();
+		whiteboard.stop();
+		assertEquals(List.of(), registered.getResourcePoolMetrics());
+	}
+
+	private List<String> resourceNames(RuntimeDTO dto, String application) {
+		return Arrays.stream(dto.applicationDTOs)
+				.filter(a -> application.equals(a.name))
+				.flatMap(a -> Arrays.stream(a.resourceDTOs))
+				.map(r -> r.name)
+				.sorted()
+				.collect(Collectors.toList());
+	}
+
+	private void assertSameAsFullDispatch(Whiteboard whiteboard) throws Exception {
+		whiteboard.awaitUpdate();
+		assertEquals(describe(startFresh().getRuntimeDTO()), describe(whiteboard.getRuntimeDTO()));
+	}
+
+	private Whiteboard startFresh() throws Exception {
+		Whiteboard fresh = startWhiteboard();
+		fresh.awaitUpdate();
+		return fresh;
+	}
+
+	private Whiteboard startWhiteboard() {
+		return startWhiteboard(Map.of());
+	}
+
+	private Whiteboard startWhiteboard(Map<String, Object> properties) {
+		Whiteboard whiteboard = new Whiteboard();
+		whiteboards.add(whiteboard);
+		Map<String, Object> runtimeProperties = new HashMap<>(properties);
+		runtimeProperties.put("test.whiteboard", Boolean.TRUE);
+		whiteboard.start(runtimeProperties);
+		return whiteboard;
+	}
+
+	private Map<String, Object> application(String name, String base) {
+		Map<String, Object> props = new HashMap<>();
+		props.put(OBJECTCLASS, new String[] {Application.class.getName()});
+		props.put(JAKARTA_RS_NAME, name);
+		props.put(JAKARTA_RS_APPLICATION_BASE, base);
+		return props;
+	}
+
+	private Map<String, Object> resource(String name, String applicationSelect) {
+		Map<String, Object> props = new HashMap<>();
+		props.put(OBJECTCLASS, new String[] {TestResource.class.getName()});
+		props.put(JAKARTA_RS_NAME, name);
+		props.put(JAKARTA_RS_RESOURCE, Boolean.TRUE);
+		if(applicationSelect != null) {
+			props.put(JAKARTA_RS_APPLICATION_SELECT, applicationSelect);
+		}
+		return props;
+	}
+
+	private Map<String, Object> extension(String name, String applicationSelect) {
+		Map<String, Object> props = new HashMap<>();
+		props.put(OBJECTCLASS, new String[] {MessageBodyReader.class.getName()});
+		props.put(JAKARTA_RS_NAME, name);
+		props.put(JAKARTA_RS_EXTENSION, Boolean.TRUE);
+		if(applicationSelect != null) {
+			props.put(JAKARTA_RS_APPLICATION_SELECT, applicationSelect);
+		}
+		return props;
+	}
+
+	/**
+	 * Creates a stable, comparable description of the runtime DTO content
+	 */
+	private static String describe(RuntimeDTO dto) {
+		List<String> lines = new ArrayList<>();
+		if(dto.defaultApplication != null) {
+			lines.add("default " + describe(dto.defaultApplication));
+		}
+		Arrays.stream(dto.applicationDTOs).map(a -> "app " + describe(a)).sorted().forEach(lines::add);
+		Arrays.stream(dto.failedApplicationDTOs)
+			.map(f -> "failedApp " + f.name + " " + f.serviceId + " " + f.failureReason).sorted().forEach(lines::add);
+		Arrays.stream(dto.failedResourceDTOs)
+			.map(f -> "failedRes " + f.name + " " + f.serviceId + " " + f.failureReason).sorted().forEach(lines::add);
+		Arrays.stream(dto.failedExtensionDTOs)
+			.map(f -> "failedExt " + f.name + " " + f.serviceId + " " + f.failureReason).sorted().forEach(lines::add);
+		return String.join("\n", lines);
+	}
+
+	private static String describe(ApplicationDTO dto) {
+		return dto.name + " " + dto.base + " " + dto.serviceId +
+				" resources" + names(dto.resourceDTOs) + " extensions" + names(dto.extensionDTOs) +
+				" methods" + dto.resourceMethods.length;
+	}
+
+	private static String names(BaseDTO[] dtos) {
+		return Arrays.stream(dtos).map(d -> d.name + ":" + d.serviceId).sorted().collect(Collectors.toList()).toString();
+	}
+
+	/**
+	 * A whiteboard runtime running against a mocked bundle context, which shares
+	 * the registered services with all other whiteboards of the test
+	 */
+	private class Whiteboard {
+
+		private final Map<String, RecordingContainer> containers = new ConcurrentHashMap<>();
+		private final List<String> created = new CopyOnWriteArrayList<>();
+		private final Map<ServiceListener, Filter> listeners = new ConcurrentHashMap<>();
+		private final Map<Long, ServiceReference<Object>> references = new HashMap<>();
+		private final Hashtable<String, Object> registrationProperties = new Hashtable<>();
+		private final JerseyServiceRuntime<RecordingContainer> runtime;
+		/** The metrics service registered by the runtime */
+		private volatile JerseyRuntimeMetrics metrics;
+		private volatile Dictionary<String, Object> metricsProperties;
+		private long expectedChangeCount = 1;
+		/** Called while the dispatch creates a container */
+		private volatile Consumer<String> onCreate = path -> {};
+
+		@SuppressWarnings({ "unchecked", "rawtypes" })
+		Whiteboard() {
+			BundleContext context = mock(BundleContext.class);
+			Bundle bundle = mock(Bundle.class);
+			when(context.getBundle()).thenReturn(bundle);
+			try {
+				when(context.createFilter(anyString())).thenAnswer(i -> FrameworkUtil.createFilter(i.getArgument(0)));
+				doAnswer(i -> listeners.put(i.getArgument(0), FrameworkUtil.createFilter(i.getArgument(1))))
+					.when(context).addServiceListener(any(ServiceListener.class), anyString());
+			} catch (Exception e) {
+				fail(e);
+			}
+			when(context.getServiceObjects(any())).thenAnswer(i -> serviceObjects(i.getArgument(0)));
+			when(context.getService(any())).thenAnswer(i -> getFactory(i.getArgument(0)).get());
+
+			ServiceReference reference = mock(ServiceReference.class);
+			when(reference.getBundle()).thenReturn(bundle);
+			when(reference.getProperty(anyString())).thenAnswer(i -> registrationProperties.get(i.getArgument(0)));
+			when(reference.getPropertyKeys()).thenAnswer(i -> registrationProperties.keySet().toArray(String[]::new));
+			when(reference.getProperties()).thenAnswer(i -> new Hashtable<>(registrationProperties));
+			ServiceRegistration registration = mock(ServiceRegistration.class);
+			when(registration.getReference()).thenReturn(reference);
+			doAnswer(i -> {
+				setRegistrationProperties(i.getArgument(0));
+				return null;
+			}).when(registration).setProperties(any());
+			when(context.registerService(any(Class.class), any(JakartarsServiceRuntime.class), any(Dictionary.class)))
+				.thenAnswer(i -> {
+					setRegistrationProperties(i.getArgument(2));
+					return registration;
+				});
+
+			ServiceRegistration metricsRegistration = mock(ServiceRegistration.class);
+			doAnswer(i -> {
+				metrics = null;
+				return null;
+			}).when(metricsRegistration).unregister();
+			when(context.registerService(eq(JerseyRuntimeMetrics.class), any(JerseyRuntimeMetrics.class), any(Dictionary.class)))
+				.thenAnswer(i -> {
+					metricsProperties = i.getArgument(2);
+					metrics = i.getArgument(1);
+					return metricsRegistration;
+				});
+
+			runtime = new JerseyServiceRuntime<>(context, this::createContainer, (p,c) -> containers.remove(p));
+		}
+
+		private void setRegistrationProperties(Dictionary<String, Object> props) {
+			synchronized (registrationProperties) {
+				registrationProperties.clear();
+				Collections.list(props.keys()).forEach(k -> registrationProperties.put(k, props.get(k)));
+				registrationProperties.put(SERVICE_ID, 1L);
+				registrationProperties.notifyAll();
+			}
+		}
+
+		private RecordingContainer createContainer(String path, ResourceConfig config) {
+			RecordingContainer container = new RecordingContainer(config);
+			containers.put(path, container);
+			created.add(path);
+			onCreate.accept(path);
+			return container;
+		}
+
+		boolean isLoaded(String path) {
+			RecordingContainer container = containers.get(path);
+			return container != null && container.reloads > 0;
+		}
+
+		void start(Map<String, Object> runtimeProperties) {
+			runtime.start(runtimeProperties);
+			// A newly started whiteboard sees all the services that are already present
+			services.keySet().forEach(id -> fire(ServiceEvent.REGISTERED, id));
+		}
+
+		void stop() {
+			runtime.teardown(5, TimeUnit.SECONDS);
+		}
+
+		/**
+		 * Returns the metrics service, which is registered right after the runtime
+		 */
+		JerseyRuntimeMetrics metrics() throws InterruptedException {
+			long deadline = System.currentTimeMillis() + 5000;
+			JerseyRuntimeMetrics registered;
+			while ((registered = metrics) == null && System.currentTimeMillis() < deadline) {
+				Thread.sleep(10);
+			}
+			assertNotNull(registered, "The metrics service is not registered");
+			return registered;
+		}
+
+		void update(Map<String, Object> runtimeProperties) {
+			runtime.update(runtimeProperties);
+			expectedChangeCount++;
+		}
+
+		RuntimeDTO getRuntimeDTO() {
+			return runtime.getRuntimeDTO();
+		}
+
+		Map<String, Object> getRegistrationProperties() {
+			synchronized (registrationProperties) {
+				return new HashMap<>(registrationProperties);
+			}
+		}
+
+		long register(Map<String, Object> props) {
+			long id = serviceIds.incrementAndGet();
+			props.put(SERVICE_ID, id);
+			services.put(id, props);
+			fire(ServiceEvent.REGISTERED, id);
+			return id;
+		}
+
+		void modify(long id, Map<String, Object> changes) {
+			services.get(id).putAll(changes);
+			fire(ServiceEvent.MODIFIED, id);
+		}
+
+		void unregister(long id) {
+			fire(ServiceEvent.UNREGISTERING, id);
+			services.remove(id);
+		}
+
+		/**
+		 * All the test services are created fresh from their object class
+		 */
+		private Supplier<?> getFactory(ServiceReference<?> ref) {
+			Object clazz = ((String[]) ref.getProperty(OBJECTCLASS))[0];
+			if(Application.class.getName().equals(clazz)) {
+				return Application::new;
+			} else if (TestResource.class.getName().equals(clazz)) {
+				return TestResource::new;
+			} else {
+				return TestExtension::new;
+			}
+		}
+
+		private ServiceObjects<Object> serviceObjects(ServiceReference<Object> ref) {
+			@SuppressWarnings("unchecked")
+			ServiceObjects<Object> so = mock(ServiceObjects.class);
+			when(so.getService()).thenAnswer(i -> getFactory(ref).get());
+			when(so.getServiceReference()).thenReturn(ref);
+			return so;
+		}
+
+		@SuppressWarnings("unchecked")
+		private void fire(int type, long id) {
+			ServiceReference<Object> ref = references.computeIfAbsent(id, k -> {
+				ServiceReference<Object> r = mock(ServiceReference.class);
+				when(r.getProperty(anyString())).thenAnswer(i -> services.get(k).get(i.getArgument(0)));
+				when(r.getPropertyKeys()).thenAnswer(i -> services.get(k).keySet().toArray(String[]::new));
+				return r;
+			});
+			ServiceEvent event = new ServiceEvent(type, ref);
+			for (Entry<ServiceListener, Filter> e : listeners.entrySet()) {
+				if(e.getValue().match(ref)) {
+					e.getKey().serviceChanged(event);
+				}
+			}
+			expectedChangeCount++;
+		}
+
+		/**
+		 * Wait for the runtime to reflect all the changes made so far
+		 */
+		void awaitUpdate() throws InterruptedException {
+			awaitUpdate(5000);
+		}
+
+		void awaitUpdate(long timeout) throws InterruptedException {
+			long end = System.currentTimeMillis() + timeout;
+			synchronized (registrationProperties) {
+				while(!Long.valueOf(expectedChangeCount).equals(registrationProperties.get(SERVICE_CHANGECOUNT))) {
+					long wait = end - System.currentTimeMillis();
+					if(wait <= 0) {
+						fail("The runtime did not update, expected change count " + expectedChangeCount +
+								" but was " + registrationProperties.get(SERVICE_CHANGECOUNT));
+					}
+					registrationProperties.wait(wait);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A container that only records how often it is reloaded
+	 */
+	static class RecordingContainer implements Container {
+
+		private volatile ResourceConfig config;
+		private volatile int reloads;
+		private volatile String reloadThread;
+
+		RecordingContainer(ResourceConfig config) {
+			this.config = config;
+		}
+
+		@Override
+		public ResourceConfig getConfiguration() {
+			return config;
+		}
+
+		@Override
+		public ApplicationHandler getApplicationHandler() {
+			return null;
+		}
+
+		@Override
+		public void reload() {
+			reloads++;
+		}
+
+		@Override
+		public void reload(ResourceConfig configuration) {
+			config = configuration;
+			reloadThread = Thread.currentThread().getName();
+			reloads++;
+		}
+	}
+}
@@ -0,0 +1,365 @@
+/**
+ * Copyright (c) 2012 - 2022 Data In Motion and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Data In Motion - initial API and implementation
+ *     Stefan Bishof - API and implementation
+ *     Tim Ward - implementation
+ */
+package org.eclipse.osgitech.rest.runtime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.osgitech.rest.runtime.application.JerseyApplication;
+import org.eclipse.osgitech.rest.runtime.application.JerseyExtensionProvider;
+import org.eclipse.osgitech.rest.runtime.application.JerseyResourceProvider;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.server.spi.AbstractContainerLifecycleListener;
+import org.glassfish.jersey.server.spi.Container;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.Constants;
+import org.osgi.framework.ServiceObjects;
+import org.osgi.framework.ServiceReference;
+import org.osgi.framework.wiring.BundleWiring;
+import org.osgi.service.jakartars.whiteboard.JakartarsWhiteboardConstants;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletConfig;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.container.ContainerRequestContext;
+import jakarta.ws.rs.container.ContainerResponseContext;
+import jakarta.ws.rs.container.ContainerResponseFilter;
+import jakarta.ws.rs.core.Application;
+
+/**
+ * Tests the swapping of applications in the {@link WhiteboardServletContainer}
+ * @since 1.2
+ */
+public class WhiteboardServletContainerTest {
+
+	private ExecutorService executor;
+	private WhiteboardServletContainer container;
+
+	@BeforeEach
+	public void before() {
+		executor = Executors.newCachedThreadPool();
+	}
+
+	@AfterEach
+	public void after() {
+		if (container != null) {
+			container.destroy();
+		}
+		executor.shutdownNow();
+	}
+
+	/**
+	 * A reload must not wait for in-flight requests, which complete against the old application
+	 * before it is shut down
+	 */
+	@Test
+	public void testReloadDoesNotBlockRequests() throws Exception {
+		BlockingResource blue = new BlockingResource("blue");
+		ShutdownCounter blueShutdown = new ShutdownCounter();
+		container = new WhiteboardServletContainer(new ResourceConfig().register(blue).register(blueShutdown));
+		container.init(servletConfig());
+
+		blue.block = new CountDownLatch(1);
+		Future<String> inFlight = executor.submit(() -> get(container));
+		assertTrue(blue.entered.await(5, TimeUnit.SECONDS));
+
+		BlockingResource green = new BlockingResource("green");
+		executor.submit(() -> container.reload(new ResourceConfig().register(green))).get(5, TimeUnit.SECONDS);
+
+		assertEquals("green", get(container));
+		assertEquals(0, blueShutdown.count.get(), "The blue application was shut down with a request in flight");
+
+		blue.block.countDown();
+		assertEquals("blue", inFlight.get(5, TimeUnit.SECONDS));
+		assertEquals(1, blueShutdown.count.get());
+	}
+
+	/**
+	 * An application without in-flight requests is shut down by the reload
+	 */
+	@Test
+	public void testIdleApplicationShutdownOnReload() throws Exception {
+		ShutdownCounter blueShutdown = new ShutdownCounter();
+		container = new WhiteboardServletContainer(new ResourceConfig()
+				.register(new BlockingResource("blue")).register(blueShutdown));
+		container.init(servletConfig());
+		assertEquals("blue", get(container));
+
+		container.reload(new ResourceConfig().register(new BlockingResource("green")));
+		assertEquals(1, blueShutdown.count.get());
+		assertEquals("green", get(container));
+
+		container.destroy();
+		container = null;
+	}
+
+	/**
+	 * Starting containers must not leave threads behind
+	 */
+	@Test
+	public void testInitCreatesNoThreads() throws Exception {
+		Set<Thread> before = Thread.getAllStackTraces().keySet();
+		for (int i = 0; i < 20; i++) {
+			WhiteboardServletContainer wsc = new WhiteboardServletContainer(new ResourceConfig()
+					.register(new BlockingResource("app" + i)));
+			wsc.init(servletConfig());
+			assertEquals("app" + i, get(wsc));
+			wsc.destroy();
+		}
+		Set<Thread> created = new HashSet<>(Thread.getAllStackTraces().keySet());
+		created.removeAll(before);
+		created.removeIf(t -> !t.isAlive() || t.isDaemon());
+		assertEquals(Set.of(), created);
+	}
+
+	/**
+	 * A destroyed container can be initialized again with its last configuration
+	 */
+	@Test
+	public void testReinitialize() throws Exception {
+		container = new WhiteboardServletContainer(new ResourceConfig().register(new BlockingResource("blue")));
+		container.init(servletConfig());
+		container.reload(new ResourceConfig().register(new BlockingResource("green")));
+		container.destroy();
+
+		container.init(servletConfig());
+		assertEquals("green", get(container));
+	}
+
+	/**
+	 * The content of a whiteboard application is released when its container shuts down, 
+	 * a re-initialized container must still serve the resources and extensions
+	 */
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testReinitializeWhiteboardApplication() throws Exception {
+		ServiceObjects<Object> resourceObjects = mock(ServiceObjects.class);
+		when(resourceObjects.getService()).thenAnswer(i -> new BlockingResource("blue"));
+		JerseyResourceProvider resource = new JerseyResourceProvider(resourceObjects, 
+				Map.of(JakartarsWhiteboardConstants.JAKARTA_RS_RESOURCE, "true", Constants.SERVICE_ID, 1L));
+		CountingFilter filter = new CountingFilter();
+		ServiceObjects<Object> extensionObjects = mock(ServiceObjects.class);
+		when(extensionObjects.getService()).thenReturn(filter);
+		BundleWiring wiring = mock(BundleWiring.class);
+		when(wiring.getClassLoader()).thenReturn(getClass().getClassLoader());
+		Bundle bundle = mock(Bundle.class);
+		when(bundle.adapt(BundleWiring.class)).thenReturn(wiring);
+		ServiceReference<Object> reference = mock(ServiceReference.class);
+		when(reference.getBundle()).thenReturn(bundle);
+		when(extensionObjects.getServiceReference()).thenReturn(reference);
+		JerseyExtensionProvider extension = new JerseyExtensionProvider(extensionObjects, 
+				Map.of(JakartarsWhiteboardConstants.JAKARTA_RS_EXTENSION, "true", Constants.SERVICE_ID, 2L, 
+						Constants.OBJECTCLASS, new String[] {ContainerResponseFilter.class.getName()}));
+		JerseyApplication application = new JerseyApplication("test", new Application(), Map.of(), 
+				List.of(resource, extension));
+		container = new WhiteboardServletContainer(ResourceConfig.forApplication(application));
+		container.init(servletConfig());
+		assertEquals("blue", get(container));
+		assertEquals(1, filter.count.get());
+		container.destroy();
+
+		container.init(servletConfig());
+		assertEquals("blue", get(container));
+		assertEquals(2, filter.count.get(), "The extension was released by the first shutdown");
+	}
+
+	/**
+	 * A deferred container builds its application on the first reload, whether that
+	 * reload happens before or after the servlet is initialized
+	 */
+	@Test
+	public void testDeferredInit() throws Exception {
+		ResourceConfig config = new ResourceConfig().register(new BlockingResource("blue"));
+		container = WhiteboardServletContainer.createDeferred(() -> new WhiteboardServletContainer(config));
+		container.init(servletConfig());
+		assertNull(container.getApplicationHandler());
+		container.reload(config);
+		assertEquals("blue", get(container));
+		container.destroy();
+
+		ResourceConfig early = new ResourceConfig().register(new BlockingResource("green"));
+		container = WhiteboardServletContainer.createDeferred(() -> new WhiteboardServletContainer(early));
+		container.reload(early);
+		container.init(servletConfig());
+		assertEquals("green", get(container));
+		// The deferral is neither kept by the configuration nor by later containers
+		assertTrue(early.getPropertyNames().isEmpty());
+		WhiteboardServletContainer later = new WhiteboardServletContainer(new ResourceConfig().register(new BlockingResource("red")));
+		later.init(servletConfig());
+		assertEquals("red", get(later));
+		later.destroy();
+	}
+
+	/**
+	 * The configurations belong to the caller, the container deploys copies of them
+	 */
+	@Test
+	public void testConfigurationIsNotModified() throws Exception {
+		ResourceConfig config = new ResourceConfig().register(new BlockingResource("blue"));
+		container = new WhiteboardServletContainer(config);
+		container.init(servletConfig());
+		assertEquals("blue", get(container));
+		assertEquals(1, config.getInstances().size());
+		// Not locked by Jersey
+		config.property("test", "blue");
+
+		Set<Object> singletons = Set.of(new BlockingResource("green"));
+		Application application = new Application() {
+			@Override
+			public Set<Object> getSingletons() {
+				return singletons;
+			}
+		};
+		ResourceConfig wrapping = ResourceConfig.forApplication(application);
+		wrapping.setApplicationName("green");
+		container.reload(wrapping);
+		assertEquals("green", get(container));
+		assertEquals(singletons, wrapping.getInstances());
+		assertSame(application, ((ResourceConfig) container.getConfiguration().getApplication()).getApplication());
+		assertEquals("green", container.getConfiguration().getApplicationName());
+		wrapping.property("test", "green");
+	}
+
+	private ServletConfig servletConfig() {
+		ServletContext context = mock(ServletContext.class);
+		when(context.getInitParameterNames()).thenAnswer(i -> Collections.emptyEnumeration());
+		when(context.getAttributeNames()).thenAnswer(i -> Collections.emptyEnumeration());
+		when(context.getContextPath()).thenReturn("");
+		ServletConfig config = mock(ServletConfig.class);
+		when(config.getServletContext()).thenReturn(context);
+		when(config.getServletName()).thenReturn("test");
+		when(config.getInitParameterNames()).thenAnswer(i -> Collections.emptyEnumeration());
+		return config;
+	}
+
+	private String get(WhiteboardServletContainer container) throws Exception {
+		HttpServletRequest request = mock(HttpServletRequest.class);
+		when(request.getMethod()).thenReturn("GET");
+		when(request.getRequestURL()).thenAnswer(i -> new StringBuffer("http://localhost/test/hello"));
+		when(request.getRequestURI()).thenReturn("/test/hello");
+		when(request.getContextPath()).thenReturn("");
+		when(request.getServletPath()).thenReturn("/test");
+		when(request.getPathInfo()).thenReturn("/hello");
+		when(request.getHeaderNames()).thenAnswer(i -> Collections.emptyEnumeration());
+		when(request.getHeaders(anyString())).thenAnswer(i -> Collections.emptyEnumeration());
+		when(request.getAttributeNames()).thenAnswer(i -> Collections.emptyEnumeration());
+		when(request.getInputStream()).thenReturn(new ServletInputStream() {
+			@Override
+			public int read() throws IOException {
+				return -1;
+			}
+			@Override
+			public boolean isFinished() {
+				return true;
+			}
+			@Override
+			public boolean isReady() {
+				return true;
+			}
+			@Override
+			public void setReadListener(ReadListener readListener) {
+			}
+		});
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		HttpServletResponse response = mock(HttpServletResponse.class);
+		when(response.getOutputStream()).thenReturn(new ServletOutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				baos.write(b);
+			}
+			@Override
+			public boolean isReady() {
+				return true;
+			}
+			@Override
+			public void setWriteListener(WriteListener writeListener) {
+			}
+		});
+
+		container.service(request, response);
+		return baos.toString();
+	}
+
+	@Path("hello")
+	public static class BlockingResource {
+
+		private final String value;
+		private final CountDownLatch entered = new CountDownLatch(1);
+		private volatile CountDownLatch block;
+
+		public BlockingResource(String value) {
+			this.value = value;
+		}
+
+		@GET
+		public String hello() throws InterruptedException {
+			entered.countDown();
+			CountDownLatch latch = block;
+			if (latch != null) {
+				latch.await(10, TimeUnit.SECONDS);
+			}
+			return value;
+		}
+	}
+
+	public static class CountingFilter implements ContainerResponseFilter {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+			count.incrementAndGet();
+		}
+	}
+
+	public static class ShutdownCounter extends AbstractContainerLifecycleListener {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		@Override
+		public void onShutdown(Container container) {
+			count.incrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) 2012 - 2022 Data In Motion and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Data In Motion - initial API and implementation
+ *     Stefan Bishof - API and implementation
+ *     Tim Ward - implementation
+ */
+package org.eclipse.osgitech.rest.runtime.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Dictionary;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.osgitech.rest.provider.JerseyConstants;
+import org.eclipse.osgitech.rest.runtime.ConnectionLimitingConnectorProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.osgi.framework.BundleContext;
+import org.osgi.framework.ServiceFactory;
+import org.osgi.framework.ServiceRegistration;
+import org.osgi.service.jakartars.client.SseEventSourceFactory;
+
+import jakarta.ws.rs.client.ClientBuilder;
+
+/**
+ * Tests the registration of the connection limit of the ClientBuilder service
+ * @since 1.2
+ */
+public class ClientBuilderComponentTest {
+
+	private BundleContext context;
+	private ServiceRegistration<ConnectionLimitingConnectorProvider> limiterRegistration;
+
+	@SuppressWarnings("unchecked")
+	@BeforeEach
+	public void before() {
+		context = mock(BundleContext.class);
+		limiterRegistration = mock(ServiceRegistration.class);
+		when(context.registerService(eq(ClientBuilder.class), any(ServiceFactory.class), any()))
+				.thenReturn(mock(ServiceRegistration.class));
+		when(context.registerService(eq(SseEventSourceFactory.class), any(ServiceFactory.class), any()))
+				.thenReturn(mock(ServiceRegistration.class));
+		when(context.registerService(eq(ConnectionLimitingConnectorProvider.class), any(ConnectionLimitingConnectorProvider.class), any()))
+				.thenReturn(limiterRegistration);
+	}
+
+	@Test
+	public void testNoLimitRegistered() {
+		ClientBuilderComponent component = new ClientBuilderComponent();
+		component.activate(context, Map.of());
+		verify(context, never()).registerService(eq(ConnectionLimitingConnectorProvider.class), any(ConnectionLimitingConnectorProvider.class), any());
+		component.deactivate();
+	}
+
+	@Test
+	public void testLimitRegisteredPerConfiguration() {
+		ClientBuilderComponent component = new ClientBuilderComponent();
+		component.activate(context, Map.of(JerseyConstants.JERSEY_CLIENT_MAX_CONNECTIONS, 10));
+
+		ArgumentCaptor<ConnectionLimitingConnectorProvider> providers = ArgumentCaptor.forClass(ConnectionLimitingConnectorProvider.class);
+		@SuppressWarnings("unchecked")
+		ArgumentCaptor<Dictionary<String, Object>> properties = ArgumentCaptor.forClass(Dictionary.class);
+		verify(context).registerService(eq(ConnectionLimitingConnectorProvider.class), providers.capture(), properties.capture());
+		assertEquals(10, providers.getValue().getMetrics().getMaxConnections());
+		assertEquals(10, properties.getValue().get(JerseyConstants.JERSEY_CLIENT_MAX_CONNECTIONS));
+		assertEquals(0, properties.getValue().get(JerseyConstants.JERSEY_CLIENT_MAX_CONNECTIONS_PER_ROUTE));
+		assertEquals(ConnectionLimitingConnectorProvider.DEFAULT_TIMEOUT, properties.getValue().get(JerseyConstants.JERSEY_CLIENT_ACQUIRE_TIMEOUT));
+
+		// A new configuration replaces the limit of the new clients
+		component.modified(Map.of(JerseyConstants.JERSEY_CLIENT_MAX_CONNECTIONS_PER_ROUTE, 2,
+				JerseyConstants.JERSEY_CLIENT_ACQUIRE_TIMEOUT, 500));
+		verify(limiterRegistration).unregister();
+		verify(context, times(2)).registerService(eq(ConnectionLimitingConnectorProvider.class), providers.capture(), properties.capture());
+		List<ConnectionLimitingConnectorProvider> registered = providers.getAllValues();
+		assertNotSame(registered.get(0), registered.get(2));
+		assertEquals(2, registered.get(2).getMetrics().getMaxConnectionsPerRoute());
+		assertEquals(500L, properties.getValue().get(JerseyConstants.JERSEY_CLIENT_ACQUIRE_TIMEOUT));
+
+		component.deactivate();
+		verify(limiterRegistration, times(2)).unregister();
+	}
+}
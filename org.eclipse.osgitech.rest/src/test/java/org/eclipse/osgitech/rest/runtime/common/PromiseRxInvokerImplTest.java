@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2012 - 2022 Data In Motion and others.
+ * All rights reserved.
+ *
+ * This program and the accompanying materials are made available under the terms of the
+ * Eclipse Public License v2.0 which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v20.html
+ *
+ * Contributors:
+ *     Data In Motion - initial API and implementation
+ *     Stefan Bishof - API and implementation
+ *     Tim Ward - implementation
+ */
+package org.eclipse.osgitech.rest.runtime.common;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.jersey.client.JerseyClientBuilder;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.osgi.service.jakartars.client.PromiseRxInvoker;
+import org.osgi.util.promise.Promise;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import jakarta.ws.rs.NotFoundException;
+import jakarta.ws.rs.client.Client;
+import jakarta.ws.rs.client.Entity;
+import jakarta.ws.rs.core.Response;
+
+/**
+ * Tests the promise based client invoker against a local stub server
+ * @since 1.2
+ */
+public class PromiseRxInvokerImplTest {
+
+	private static final int CONCURRENT_CALLS = 50;
+
+	private HttpServer server;
+	private ExecutorService serverExecutor;
+	private Client client;
+	private String baseUri;
+	private final CountDownLatch arrived = new CountDownLatch(CONCURRENT_CALLS);
+
+	@BeforeEach
+	public void before() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		serverExecutor = Executors.newCachedThreadPool();
+		server.setExecutor(serverExecutor);
+		server.createContext("/hello", e -> respond(e, 200, "hello " + e.getRequestMethod()));
+		server.createContext("/missing", e -> respond(e, 404, "missing"));
+		server.createContext("/held", e -> {
+			// Answer only once all calls are in flight
+			arrived.countDown();
+			try {
+				arrived.await(30, TimeUnit.SECONDS);
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+			}
+			respond(e, 200, "released");
+		});
+		server.start();
+		baseUri = "http://127.0.0.1:" + server.getAddress().getPort();
+		client = new JerseyClientBuilder().register(RxInvokerProviderImpl.class).build();
+	}
+
+	@AfterEach
+	public void after() {
+		client.close();
+		server.stop(0);
+		serverExecutor.shutdownNow();
+	}
+
+	@Test
+	public void testResponseTypes() throws Exception {
+		PromiseRxInvoker invoker = client.target(baseUri).path("hello").request().rx(PromiseRxInvoker.class);
+		assertEquals("hello GET", invoker.get(String.class).getValue());
+		assertEquals("hello POST", invoker.post(Entity.text("body"), String.class).getValue());
+
+		Response response = invoker.method("PUT", Entity.text("body")).getValue();
+		assertEquals(200, response.getStatus());
+		assertEquals("hello PUT", response.readEntity(String.class));
+	}
+
+	@Test
+	public void testErrorStatus() throws Exception {
+		PromiseRxInvoker invoker = client.target(baseUri).path("missing").request().rx(PromiseRxInvoker.class);
+
+		// The raw response is returned whatever the status
+		Response response = invoker.get().getValue();
+		assertEquals(404, response.getStatus());
+		response.close();
+
+		// As for the synchronous invoker, an entity type fails with the exception of the status
+		Throwable failure = invoker.get(String.class).getFailure();
+		assertTrue(failure instanceof NotFoundException, () -> String.valueOf(failure));
+	}
+
+	@Test
+	public void testCallsDoNotBlockTheCaller() throws Exception {
+		// Without an executor the calls used to run inline. The stub server only answers
+		// once all the calls have arrived, so each call must return before its response
+		List<Promise<String>> promises = new ArrayList<>();
+		for (int i = 0; i < CONCURRENT_CALLS; i++) {
+			promises.add(client.target(baseUri).path("held").request()
+					.rx(PromiseRxInvoker.class).get(String.class));
+		}
+		assertTrue(arrived.await(30, TimeUnit.SECONDS));
+		for (Promise<String> p : promises) {
+			assertEquals("released", p.timeout(30000).getValue());
+		}
+	}
+
+	private void respond(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "text/plain");
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream os = exchange.getResponseBody()) {
+			os.write(bytes);
+		}
+	}
+}